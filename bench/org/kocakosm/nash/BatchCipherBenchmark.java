@@ -0,0 +1,90 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link BatchCipher} with as many {@link NashCipher}s, each
+ * operation processing one chunk per session.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchCipherBenchmark
+{
+	@Param({"64", "256", "1024"})
+	private int keySize;
+
+	@Param({"1", "16", "64"})
+	private int sessions;
+
+	@Param({"64", "4096"})
+	private int chunkSize;
+
+	private BatchCipher batch;
+	private NashCipher[] ciphers;
+	private byte[][] input;
+	private byte[][] output;
+
+	@Setup
+	public void setUp()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(keySize));
+		batch = new BatchCipher(key, Mode.ENCRYPTION);
+		ciphers = new NashCipher[sessions];
+		input = new byte[sessions][chunkSize];
+		output = new byte[sessions][chunkSize];
+		Random prng = new Random();
+		for (int k = 0; k < sessions; k++) {
+			IV iv = IV.create(keySize);
+			batch.open(k, iv);
+			ciphers[k] = new NashCipher(key, iv, Mode.ENCRYPTION);
+			prng.nextBytes(input[k]);
+		}
+	}
+
+	@Benchmark
+	public byte[][] batch()
+	{
+		batch.process(input, output);
+		return output;
+	}
+
+	@Benchmark
+	public byte[][] ciphers()
+	{
+		for (int k = 0; k < sessions; k++) {
+			ciphers[k].process(input[k], 0, chunkSize, output[k], 0);
+		}
+		return output;
+	}
+}
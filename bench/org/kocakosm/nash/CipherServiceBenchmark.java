@@ -0,0 +1,104 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.CipherService.Session;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Processing of a round of small chunks for many sessions, either through
+ * a {@link CipherService} or serially on the calling thread.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CipherServiceBenchmark
+{
+	@Param({"1000", "10000"})
+	private int sessions;
+
+	@Param({"2", "4"})
+	private int stripes;
+
+	private CipherService service;
+	private Session[] opened;
+	private NashCipher[] ciphers;
+	private byte[][] chunks;
+	private AtomicLong processed;
+	private long submitted;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		service = new CipherService(stripes, 16);
+		opened = new Session[sessions];
+		ciphers = new NashCipher[sessions];
+		chunks = new byte[sessions][256];
+		processed = new AtomicLong();
+		for (int i = 0; i < sessions; i++) {
+			IV iv = IV.create(64);
+			opened[i] = service.open(key, iv, NashCipher.Mode.ENCRYPTION,
+				(data, off, len) -> processed.incrementAndGet());
+			ciphers[i] = new NashCipher(key, iv, NashCipher.Mode.ENCRYPTION);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		service.close();
+	}
+
+	@Benchmark
+	public int processWithService() throws InterruptedException
+	{
+		for (int i = 0; i < sessions; i++) {
+			opened[i].submit(chunks[i], 0, chunks[i].length);
+		}
+		submitted += sessions;
+		while (processed.get() < submitted) {
+			Thread.yield();
+		}
+		return sessions;
+	}
+
+	@Benchmark
+	public int processSerially()
+	{
+		for (int i = 0; i < sessions; i++) {
+			ciphers[i].processInPlace(chunks[i], 0, chunks[i].length);
+		}
+		return sessions;
+	}
+}
@@ -0,0 +1,94 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Key}'s binary encoding versus Java serialization benchmarks. The
+ * sizes of both forms are printed during setup.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodingBenchmark
+{
+	@Param({"256", "4096", "65536"})
+	private int keySize;
+
+	private Key key;
+	private byte[] encoded;
+	private byte[] serialized;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		key = Key.create(keySize);
+		encoded = key.toBytes();
+		serialized = serialize();
+		System.out.printf("%nEncoded: %d bytes, serialized: %d bytes%n",
+			encoded.length, serialized.length);
+	}
+
+	@Benchmark
+	public byte[] toBytes()
+	{
+		return key.toBytes();
+	}
+
+	@Benchmark
+	public Key fromBytes()
+	{
+		return Key.fromBytes(encoded);
+	}
+
+	@Benchmark
+	public byte[] serialize() throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(key);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Benchmark
+	public Key deserialize() throws IOException, ClassNotFoundException
+	{
+		try (ObjectInputStream in = new ObjectInputStream(
+			new ByteArrayInputStream(serialized))) {
+			return (Key) in.readObject();
+		}
+	}
+}
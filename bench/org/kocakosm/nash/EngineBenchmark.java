@@ -0,0 +1,86 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the engines that may run keys too large for table engines, to
+ * back {@link VectorSupport#MIN_KEY_SIZE}. The vector engine needs Java 17
+ * and {@code --add-modules jdk.incubator.vector}; the specialized engine
+ * falls back to the packed one for keys too large to be specialized.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class EngineBenchmark
+{
+	@Param({"19", "24", "32", "64", "256", "1024", "4096"})
+	private int keySize;
+
+	@Param({"packed", "specialized", "vector"})
+	private String engine;
+
+	@Param({"ENCRYPTION", "DECRYPTION"})
+	private Mode mode;
+
+	private Engine instance;
+	private byte[] message;
+
+	@Setup
+	public void setUp()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(keySize));
+		if (engine.equals("specialized")) {
+			key = key.specialize();
+		}
+		IV iv = IV.create(keySize);
+		if (engine.equals("vector")) {
+			instance = VectorSupport.create(key, iv, mode);
+			if (instance == null) {
+				throw new IllegalStateException("Vector API unavailable");
+			}
+		} else if (key.isSpecialized()) {
+			instance = new SpecializedEngine(key, iv, mode);
+		} else {
+			instance = new PackedEngine(key, iv, mode);
+		}
+		message = new byte[1024];
+		new Random().nextBytes(message);
+	}
+
+	@Benchmark
+	public byte[] process()
+	{
+		instance.process(message, 0, message.length, message, 0);
+		return message;
+	}
+}
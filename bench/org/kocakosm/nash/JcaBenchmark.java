@@ -0,0 +1,87 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Baseline throughput of the JCA's stream ciphers on the running JVM, to be
+ * compared with {@link NashCipherBenchmark}'s results. ChaCha20 requires Java
+ * 11 or later.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JcaBenchmark
+{
+	@Param({"AES/CTR/NoPadding", "ChaCha20"})
+	private String transformation;
+
+	@Param({"1", "1024", "1048576", "67108864"})
+	private int messageSize;
+
+	private Cipher cipher;
+	private byte[] message;
+	private byte[] output;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws Exception
+	{
+		SecureRandom prng = new SecureRandom();
+		byte[] key = new byte[32];
+		prng.nextBytes(key);
+		cipher = Cipher.getInstance(transformation);
+		if (transformation.startsWith("AES")) {
+			byte[] iv = new byte[16];
+			prng.nextBytes(iv);
+			cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"),
+				new IvParameterSpec(iv));
+		} else {
+			cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key,
+				transformation));
+		}
+		message = new byte[messageSize];
+		new Random().nextBytes(message);
+		output = new byte[messageSize];
+	}
+
+	@Benchmark
+	public byte[] process() throws Exception
+	{
+		cipher.update(message, 0, messageSize, output, 0);
+		return output;
+	}
+}
@@ -0,0 +1,94 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Key}, {@link CompiledKey} and {@link IV} generation benchmarks,
+ * and {@link KeyCache} lookups.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyBenchmark
+{
+	@Param({"16", "256", "4096", "65536"})
+	private int keySize;
+
+	private Key key;
+	private SecureRandom random;
+	private KeyCache cache;
+
+	@Setup
+	public void setUp() throws NoSuchAlgorithmException
+	{
+		key = Key.create(keySize);
+		random = SecureRandom.getInstance("SHA1PRNG");
+		cache = new KeyCache(1L << 26);
+	}
+
+	@Benchmark
+	public Key createKey()
+	{
+		return Key.create(keySize);
+	}
+
+	@Benchmark
+	public IV createIV()
+	{
+		return IV.create(keySize);
+	}
+
+	@Benchmark
+	public Key createKeyWithGenerator()
+	{
+		return Key.create(keySize, random);
+	}
+
+	@Benchmark
+	public IV createIVWithGenerator()
+	{
+		return IV.create(keySize, random);
+	}
+
+	@Benchmark
+	public CompiledKey compileKey()
+	{
+		return CompiledKey.compile(key);
+	}
+
+	@Benchmark
+	public CompiledKey getCachedKey()
+	{
+		return cache.get(key);
+	}
+}
@@ -0,0 +1,79 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link NashCipher}'s throughput benchmarks. The full parameter matrix takes
+ * very long to run with large keys and messages, use JMH's {@code -p} option
+ * to select the combinations of interest.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NashCipherBenchmark
+{
+	@Param({"16", "256", "4096", "65536"})
+	private int keySize;
+
+	@Param({"1", "1024", "1048576", "67108864"})
+	private int messageSize;
+
+	@Param({"ENCRYPTION", "DECRYPTION"})
+	private Mode mode;
+
+	private NashCipher cipher;
+	private byte[] message;
+	private byte[] output;
+
+	@Setup
+	public void setUp()
+	{
+		cipher = new NashCipher(Key.create(keySize), IV.create(keySize), mode);
+		message = new byte[messageSize];
+		new Random().nextBytes(message);
+		output = new byte[messageSize];
+	}
+
+	@Benchmark
+	public byte[] process()
+	{
+		cipher.process(message, 0, messageSize, output, 0);
+		return output;
+	}
+
+	@Benchmark
+	public byte[] processAllocating()
+	{
+		return cipher.process(message);
+	}
+}
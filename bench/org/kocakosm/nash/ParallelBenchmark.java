@@ -0,0 +1,102 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares serial processing with {@link ChunkedCipher} and
+ * {@link ParallelDecryptor}, for a varying number of threads.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelBenchmark
+{
+	@Param({"16", "256"})
+	private int keySize;
+
+	@Param({"67108864"})
+	private int messageSize;
+
+	@Param({"1", "2", "4", "8"})
+	private int threads;
+
+	private CompiledKey key;
+	private IV iv;
+	private ForkJoinPool pool;
+	private ChunkedCipher chunked;
+	private ParallelDecryptor decryptor;
+	private byte[] message;
+	private byte[] output;
+
+	@Setup
+	public void setUp()
+	{
+		key = CompiledKey.compile(Key.create(keySize));
+		iv = IV.create(keySize);
+		pool = new ForkJoinPool(threads);
+		chunked = new ChunkedCipher(key, pool);
+		decryptor = new ParallelDecryptor(key, pool);
+		message = new byte[messageSize];
+		new Random().nextBytes(message);
+		output = new byte[messageSize];
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public byte[] serialEncryption()
+	{
+		new NashCipher(key, iv, Mode.ENCRYPTION).process(message, 0,
+			messageSize, output, 0);
+		return output;
+	}
+
+	@Benchmark
+	public byte[] chunkedEncryption()
+	{
+		return chunked.encrypt(iv, message);
+	}
+
+	@Benchmark
+	public byte[] parallelDecryption()
+	{
+		decryptor.decrypt(iv, message, 0, messageSize, output, 0);
+		return output;
+	}
+}
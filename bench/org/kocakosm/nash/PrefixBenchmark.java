@@ -0,0 +1,103 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Snapshot;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Processing of messages sharing a common prefix: from scratch, by forking
+ * a {@link Snapshot} and through a {@link PrefixCache}.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrefixBenchmark
+{
+	@Param({"64", "1024"})
+	private int keySize;
+
+	@Param({"1024", "65536"})
+	private int prefixSize;
+
+	private CompiledKey key;
+	private IV iv;
+	private byte[] prefix;
+	private byte[] suffix;
+	private byte[] out;
+	private Snapshot snapshot;
+	private PrefixCache cache;
+
+	@Setup
+	public void setUp()
+	{
+		key = CompiledKey.compile(Key.create(keySize));
+		iv = IV.create(keySize);
+		Random random = new Random();
+		prefix = new byte[prefixSize];
+		suffix = new byte[256];
+		random.nextBytes(prefix);
+		random.nextBytes(suffix);
+		out = new byte[prefixSize + suffix.length];
+		NashCipher cipher = new NashCipher(key, iv,
+			NashCipher.Mode.ENCRYPTION);
+		cipher.process(prefix);
+		snapshot = cipher.snapshot();
+		cache = new PrefixCache(16);
+	}
+
+	@Benchmark
+	public byte[] processFromScratch()
+	{
+		NashCipher cipher = new NashCipher(key, iv,
+			NashCipher.Mode.ENCRYPTION);
+		cipher.process(prefix, 0, prefix.length, out, 0);
+		cipher.process(suffix, 0, suffix.length, out, prefix.length);
+		return out;
+	}
+
+	@Benchmark
+	public byte[] forkSnapshot()
+	{
+		NashCipher cipher = snapshot.fork();
+		cipher.process(suffix, 0, suffix.length, out, prefix.length);
+		return out;
+	}
+
+	@Benchmark
+	public byte[] forkFromCache()
+	{
+		NashCipher cipher = cache.fork(key, iv, NashCipher.Mode.ENCRYPTION,
+			prefix, out, 0);
+		cipher.process(suffix, 0, suffix.length, out, prefix.length);
+		return out;
+	}
+}
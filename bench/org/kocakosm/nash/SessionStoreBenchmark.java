@@ -0,0 +1,86 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Processing of small messages for randomly picked sessions, kept either as
+ * {@link NashCipher}s or in a {@link SessionStore}.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionStoreBenchmark
+{
+	@Param({"64", "256"})
+	private int keySize;
+
+	@Param({"100000"})
+	private int sessions;
+
+	private NashCipher[] ciphers;
+	private SessionStore store;
+	private long[] ids;
+	private byte[] message;
+	private Random random;
+
+	@Setup
+	public void setUp()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(keySize));
+		ciphers = new NashCipher[sessions];
+		store = new SessionStore(key, NashCipher.Mode.ENCRYPTION);
+		ids = new long[sessions];
+		for (int i = 0; i < sessions; i++) {
+			IV iv = IV.create(keySize);
+			ciphers[i] = new NashCipher(key, iv, NashCipher.Mode.ENCRYPTION);
+			ids[i] = store.open(iv);
+		}
+		message = new byte[64];
+		random = new Random();
+	}
+
+	@Benchmark
+	public byte[] processWithCiphers()
+	{
+		NashCipher cipher = ciphers[random.nextInt(sessions)];
+		cipher.processInPlace(message, 0, message.length);
+		return message;
+	}
+
+	@Benchmark
+	public byte[] processWithStore()
+	{
+		long id = ids[random.nextInt(sessions)];
+		store.process(id, message, 0, message.length, message, 0);
+		return message;
+	}
+}
@@ -0,0 +1,86 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cold start benchmarks: each fork measures a single first call, so that
+ * the random generator's creation is included when it happens. Decrypting
+ * with an existing key must not create it.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark
+{
+	@Param({"NativePRNGNonBlocking", "NativePRNG", "SHA1PRNG"})
+	private String algorithm;
+
+	private byte[] serialized;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		System.setProperty(Random.PROPERTY, algorithm);
+		SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+		random.setSeed(42L);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(Key.create(256, random));
+			out.writeObject(IV.create(256, random));
+		}
+		serialized = bytes.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] coldDecryption() throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream in = new ObjectInputStream(
+			new ByteArrayInputStream(serialized));
+		Key key = (Key) in.readObject();
+		IV iv = (IV) in.readObject();
+		NashCipher cipher = new NashCipher(key, iv,
+			NashCipher.Mode.DECRYPTION);
+		return cipher.process(new byte[1024]);
+	}
+
+	@Benchmark
+	public IV coldGeneration()
+	{
+		Key.create(256);
+		return IV.create(256);
+	}
+}
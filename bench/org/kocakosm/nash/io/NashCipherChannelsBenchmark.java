@@ -0,0 +1,193 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link NashCipherReadableChannel} and {@link NashCipherWritableChannel}
+ * benchmarks, compared to the cipher streams wrapped into channel adapters.
+ * Each operation moves the whole message through a new channel, using heap
+ * or direct buffers.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NashCipherChannelsBenchmark
+{
+	private static final WritableByteChannel NULL = new WritableByteChannel()
+	{
+		@Override
+		public boolean isOpen()
+		{
+			return true;
+		}
+
+		@Override
+		public void close()
+		{
+			/* ... */
+		}
+
+		@Override
+		public int write(ByteBuffer src)
+		{
+			int n = src.remaining();
+			src.position(src.limit());
+			return n;
+		}
+	};
+
+	@Param({"16", "256"})
+	private int keySize;
+
+	@Param({"1048576"})
+	private int messageSize;
+
+	@Param({"false", "true"})
+	private boolean direct;
+
+	private CompiledKey key;
+	private IV iv;
+	private ByteBuffer message;
+	private ByteBuffer buffer;
+
+	@Setup
+	public void setUp()
+	{
+		key = CompiledKey.compile(Key.create(keySize));
+		iv = IV.create(keySize);
+		byte[] data = new byte[messageSize];
+		new Random().nextBytes(data);
+		message = allocate(messageSize);
+		message.put(data).flip();
+		buffer = allocate(8192);
+	}
+
+	@Benchmark
+	public int readChannel() throws IOException
+	{
+		return read(new NashCipherReadableChannel(key, iv, source()));
+	}
+
+	@Benchmark
+	public int readAdaptedStream() throws IOException
+	{
+		InputStream in = Channels.newInputStream(source());
+		return read(Channels.newChannel(
+			new UnsynchronizedNashCipherInputStream(key, iv, in)));
+	}
+
+	@Benchmark
+	public void writeChannel() throws IOException
+	{
+		write(new NashCipherWritableChannel(key, iv, NULL));
+	}
+
+	@Benchmark
+	public void writeAdaptedStream() throws IOException
+	{
+		OutputStream out = Channels.newOutputStream(NULL);
+		write(Channels.newChannel(
+			new UnsynchronizedNashCipherOutputStream(key, iv, out)));
+	}
+
+	private int read(ReadableByteChannel in) throws IOException
+	{
+		int sum = 0;
+		buffer.clear();
+		for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+			sum += n;
+			buffer.clear();
+		}
+		return sum;
+	}
+
+	private void write(WritableByteChannel out) throws IOException
+	{
+		ByteBuffer src = message.duplicate();
+		while (src.hasRemaining()) {
+			ByteBuffer chunk = src.duplicate();
+			chunk.limit(Math.min(src.limit(), src.position() + 8192));
+			src.position(src.position() + out.write(chunk));
+		}
+		out.close();
+	}
+
+	private ReadableByteChannel source()
+	{
+		ByteBuffer src = message.duplicate();
+		return new ReadableByteChannel()
+		{
+			@Override
+			public boolean isOpen()
+			{
+				return true;
+			}
+
+			@Override
+			public void close()
+			{
+				/* ... */
+			}
+
+			@Override
+			public int read(ByteBuffer dst)
+			{
+				if (!src.hasRemaining()) {
+					return -1;
+				}
+				int n = Math.min(src.remaining(), dst.remaining());
+				ByteBuffer chunk = src.duplicate();
+				chunk.limit(chunk.position() + n);
+				dst.put(chunk);
+				src.position(src.position() + n);
+				return n;
+			}
+		};
+	}
+
+	private ByteBuffer allocate(int capacity)
+	{
+		return direct ? ByteBuffer.allocateDirect(capacity)
+			: ByteBuffer.allocate(capacity);
+	}
+}
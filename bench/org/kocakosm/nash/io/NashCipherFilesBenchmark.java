@@ -0,0 +1,107 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares file encryption through {@link NashCipherOutputStream} with
+ * {@link NashCipherFiles}' memory-mapped processing.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NashCipherFilesBenchmark
+{
+	@Param({"16"})
+	private int keySize;
+
+	@Param({"67108864"})
+	private int fileSize;
+
+	private CompiledKey key;
+	private IV iv;
+	private Path source;
+	private Path target;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		key = CompiledKey.compile(Key.create(keySize));
+		iv = IV.create(keySize);
+		byte[] data = new byte[fileSize];
+		new Random().nextBytes(data);
+		source = Files.createTempFile("nash", ".src");
+		target = Files.createTempFile("nash", ".dst");
+		Files.write(source, data);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		Files.delete(source);
+		Files.delete(target);
+	}
+
+	@Benchmark
+	public void stream() throws IOException
+	{
+		try (InputStream in = Files.newInputStream(source);
+			OutputStream out = new NashCipherOutputStream(key, iv,
+				Files.newOutputStream(target))) {
+			byte[] buf = new byte[8192];
+			for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+				out.write(buf, 0, n);
+			}
+		}
+	}
+
+	@Benchmark
+	public long mapped() throws IOException
+	{
+		return NashCipherFiles.encrypt(key, iv, source, target);
+	}
+
+	@Benchmark
+	public long mappedInPlace() throws IOException
+	{
+		return NashCipherFiles.encrypt(key, iv, source);
+	}
+}
@@ -0,0 +1,94 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link NashCipherSeekableChannel} benchmarks: cost of reading a small
+ * record at a random position of a large encrypted file.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NashCipherSeekableChannelBenchmark
+{
+	@Param({"16", "256", "4096"})
+	private int keySize;
+
+	@Param({"67108864"})
+	private int fileSize;
+
+	private final Random prng = new Random();
+	private final ByteBuffer record = ByteBuffer.allocate(128);
+	private Path file;
+	private NashCipherSeekableChannel channel;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(keySize));
+		IV iv = IV.create(keySize);
+		byte[] data = new byte[fileSize];
+		prng.nextBytes(data);
+		file = Files.createTempFile("nash", ".bench");
+		Files.write(file, data);
+		FileChannel encrypted = FileChannel.open(file,
+			StandardOpenOption.READ);
+		channel = new NashCipherSeekableChannel(key, iv, encrypted);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		channel.close();
+		Files.delete(file);
+	}
+
+	@Benchmark
+	public ByteBuffer randomRead() throws IOException
+	{
+		record.clear();
+		channel.position(prng.nextInt(fileSize - record.capacity()));
+		channel.read(record);
+		return record;
+	}
+}
@@ -0,0 +1,145 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link NashCipherInputStream} and {@link NashCipherOutputStream}
+ * benchmarks, comparing single-byte and bulk I/O, with and without
+ * synchronization. Each operation moves the whole message through a new
+ * stream. The {@code transferTo} benchmark uses {@code chunkSize} as the input
+ * stream's buffer size.
+ *
+ * @author Osman Koçak
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NashCipherStreamsBenchmark
+{
+	private static final OutputStream NULL = new OutputStream()
+	{
+		@Override
+		public void write(int b)
+		{
+			/* ... */
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+		{
+			/* ... */
+		}
+	};
+
+	@Param({"16", "256", "4096"})
+	private int keySize;
+
+	@Param({"1024", "1048576"})
+	private int messageSize;
+
+	@Param({"1", "8192"})
+	private int chunkSize;
+
+	@Param({"true", "false"})
+	private boolean synchronize;
+
+	private CompiledKey key;
+	private IV iv;
+	private byte[] message;
+	private byte[] buffer;
+
+	@Setup
+	public void setUp()
+	{
+		key = CompiledKey.compile(Key.create(keySize));
+		iv = IV.create(keySize);
+		message = new byte[messageSize];
+		new Random().nextBytes(message);
+		buffer = new byte[chunkSize];
+	}
+
+	@Benchmark
+	public void write() throws IOException
+	{
+		OutputStream out = synchronize
+			? new NashCipherOutputStream(key, iv, NULL)
+			: new UnsynchronizedNashCipherOutputStream(key, iv, NULL);
+		if (chunkSize == 1) {
+			for (byte b : message) {
+				out.write(b);
+			}
+		} else {
+			for (int i = 0; i < messageSize; i += chunkSize) {
+				out.write(message, i, Math.min(chunkSize, messageSize - i));
+			}
+		}
+		out.flush();
+	}
+
+	@Benchmark
+	public int read() throws IOException
+	{
+		InputStream encrypted = new ByteArrayInputStream(message);
+		InputStream in = synchronize
+			? new NashCipherInputStream(key, iv, encrypted)
+			: new UnsynchronizedNashCipherInputStream(key, iv, encrypted);
+		int sum = 0;
+		if (chunkSize == 1) {
+			for (int b = in.read(); b >= 0; b = in.read()) {
+				sum += b;
+			}
+		} else {
+			for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+				sum += n;
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long transferTo() throws IOException
+	{
+		InputStream encrypted = new ByteArrayInputStream(message);
+		if (synchronize) {
+			return new NashCipherInputStream(key, iv, encrypted, chunkSize)
+				.transferTo(NULL);
+		}
+		return new UnsynchronizedNashCipherInputStream(key, iv, encrypted,
+			chunkSize).transferTo(NULL);
+	}
+}
@@ -0,0 +1,175 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.nio.ByteBuffer;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Permuter engine using the Vector API: the state holds one bit per
+ * {@code int} so that each permutation step is made of vector gathers and
+ * XORs. Gathers work on whole lanes, hence that layout, which makes the
+ * state and the key's bits take 32 times the memory they take in a
+ * {@link PackedEngine} (16 bytes per key bit instead of half a byte, that is
+ * 64 KiB for a 4096 bits key).
+ *
+ * <p>In decryption mode, all the steps' colors are known in advance, so
+ * each output bit could be computed on its own, in its own lane, by walking
+ * back the chain of sources of the state's last bit until it reaches bit 0
+ * or the initial state. That isn't done: those chains are about a quarter
+ * of the key's size long on average and the longest of 8 lanes about 60% of
+ * it, each link costing three dependent gathers, and a prototype doing so
+ * was measured 10 times slower than stepping (for 64 to 4096 bits keys, on
+ * 256 bits vectors).
+ *
+ * <p>This class requires Java 17 and the {@code jdk.incubator.vector} module;
+ * it is only loaded through {@link VectorSupport}. Instances of this class
+ * are not thread-safe.
+ *
+ * @author Osman Koçak
+ */
+final class VectorEngine implements Engine
+{
+	private static final VectorSpecies<Integer> SPECIES =
+		IntVector.SPECIES_256;
+
+	private final int size;
+	private final int length;
+	private final boolean decryption;
+	private final int[] redSources;
+	private final int[] blueSources;
+	private final int[] redBits;
+	private final int[] blueBits;
+	private int[] state;
+	private int[] next;
+
+	/**
+	 * Creates a new {@code VectorEngine}.
+	 *
+	 * @param key the compiled secret key.
+	 * @param iv the initialization vector.
+	 * @param mode the operation mode.
+	 */
+	VectorEngine(CompiledKey key, IV iv, Mode mode)
+	{
+		this.size = key.getSize();
+		this.length = SPECIES.loopBound(size + SPECIES.length() - 1);
+		this.decryption = mode == Mode.DECRYPTION;
+		this.redSources = pad(key.redSources(), length);
+		this.blueSources = pad(key.blueSources(), length);
+		this.redBits = unpack(key.redBits(), size, length);
+		this.blueBits = unpack(key.blueBits(), size, length);
+		this.state = new int[length];
+		this.next = new int[length];
+		reset(iv);
+	}
+
+	@Override
+	public void reset(IV iv)
+	{
+		boolean[] bits = iv.getBits();
+		for (int i = 0; i < size; i++) {
+			state[i] = bits[i] ? 1 : 0;
+		}
+	}
+
+	@Override
+	public boolean[] state()
+	{
+		boolean[] bits = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			bits[i] = state[i] != 0;
+		}
+		return bits;
+	}
+
+	@Override
+	public void load(ByteBuffer buffer, int index)
+	{
+		for (int start = 0; start < size; start += 64) {
+			long word = buffer.getLong(index + (start >>> 3));
+			for (int i = start; i < Math.min(size, start + 64); i++) {
+				state[i] = (int) (word >>> i) & 1;
+			}
+		}
+	}
+
+	@Override
+	public void store(ByteBuffer buffer, int index)
+	{
+		for (int start = 0; start < size; start += 64) {
+			long word = 0L;
+			for (int i = Math.min(size, start + 64) - 1; i >= start; i--) {
+				word = (word << 1) | state[i];
+			}
+			buffer.putLong(index + (start >>> 3), word);
+		}
+	}
+
+	@Override
+	public void process(byte[] in, int inOff, int len, byte[] out, int outOff)
+	{
+		for (int k = 0; k < len; k++) {
+			out[outOff + k] = (byte) process(in[inOff + k]);
+		}
+	}
+
+	@Override
+	public int process(int b)
+	{
+		int val = 0;
+		for (int j = 0; j < 8; j++) {
+			int in = (b >>> j) & 1;
+			int out = in ^ state[size - 1];
+			val |= out << j;
+			step(decryption ? in : out);
+		}
+		return val;
+	}
+
+	private void step(int bit)
+	{
+		int[] sources = bit == 0 ? blueSources : redSources;
+		int[] bits = bit == 0 ? blueBits : redBits;
+		int[] s = state;
+		int[] n = next;
+		for (int i = 0; i < length; i += SPECIES.length()) {
+			IntVector v = IntVector.fromArray(SPECIES, s, 0, sources, i);
+			IntVector c = IntVector.fromArray(SPECIES, bits, i);
+			v.lanewise(VectorOperators.XOR, c).intoArray(n, i);
+		}
+		n[0] = bit;
+		state = n;
+		next = s;
+	}
+
+	private static int[] pad(int[] values, int length)
+	{
+		int[] padded = new int[length];
+		System.arraycopy(values, 0, padded, 0, values.length);
+		return padded;
+	}
+
+	private static int[] unpack(long[] packed, int size, int length)
+	{
+		int[] bits = new int[length];
+		for (int i = 0; i < size; i++) {
+			bits[i] = (int) (packed[i >>> 6] >>> i) & 1;
+		}
+		return bits;
+	}
+}
@@ -0,0 +1,244 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Objects;
+
+/**
+ * Processes up to 64 independent sessions sharing the same key and mode at
+ * once. The permuters' states are bit-sliced: bit {@code i} of every
+ * session's state lives in the same {@code long}, one bit per lane, so that
+ * each pass over the key's tables advances all the sessions. Each session
+ * produces exactly the same output as a {@link NashCipher} created with the
+ * same key, IV and mode. Instances of this class are not thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class BatchCipher
+{
+	/** The number of lanes, that is, the maximum number of sessions. */
+	public static final int LANES = 64;
+
+	private final int size;
+	private final boolean decryption;
+	private final int[] redSources;
+	private final int[] blueSources;
+	private final long[] redMasks;
+	private final long[] blueMasks;
+	private final long[] in = new long[8];
+	private final long[] out = new long[8];
+	private long[] state;
+	private long[] next;
+	private long open;
+
+	/**
+	 * Creates a new {@code BatchCipher}, all of its lanes being closed.
+	 *
+	 * @param key the sessions' compiled secret key.
+	 * @param mode the sessions' operation mode.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 */
+	public BatchCipher(CompiledKey key, Mode mode)
+	{
+		Objects.requireNonNull(mode);
+		this.size = key.getSize();
+		this.decryption = mode == Mode.DECRYPTION;
+		this.redSources = key.redSources();
+		this.blueSources = key.blueSources();
+		this.redMasks = masks(key.redBits(), size);
+		this.blueMasks = masks(key.blueBits(), size);
+		this.state = new long[size];
+		this.next = new long[size];
+	}
+
+	/**
+	 * Opens a session in the given lane, replacing the session it may
+	 * already hold.
+	 *
+	 * @param lane the lane.
+	 * @param iv the session's initialization vector.
+	 *
+	 * @throws NullPointerException if {@code iv} is {@code null}.
+	 * @throws IndexOutOfBoundsException if {@code lane} is not in
+	 *	{@code [0, LANES - 1]}.
+	 * @throws IllegalArgumentException if {@code iv}'s size doesn't match
+	 *	the size of the key.
+	 */
+	public void open(int lane, IV iv)
+	{
+		checkLane(lane);
+		boolean[] bits = iv.getBits();
+		if (bits.length != size) {
+			throw new IllegalArgumentException();
+		}
+		long mask = 1L << lane;
+		for (int i = 0; i < size; i++) {
+			state[i] = bits[i] ? state[i] | mask : state[i] & ~mask;
+		}
+		open |= mask;
+	}
+
+	/**
+	 * Closes the session held by the given lane, if any.
+	 *
+	 * @param lane the lane.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code lane} is not in
+	 *	{@code [0, LANES - 1]}.
+	 */
+	public void close(int lane)
+	{
+		checkLane(lane);
+		open &= ~(1L << lane);
+	}
+
+	/**
+	 * Returns whether the given lane holds a session.
+	 *
+	 * @param lane the lane.
+	 *
+	 * @return whether {@code lane} holds a session.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code lane} is not in
+	 *	{@code [0, LANES - 1]}.
+	 */
+	public boolean isOpen(int lane)
+	{
+		checkLane(lane);
+		return (open & (1L << lane)) != 0L;
+	}
+
+	/**
+	 * Processes a chunk of data for each of the given sessions. The chunk
+	 * of the session held by lane {@code k} is {@code input[k]}, its result
+	 * being stored in {@code output[k]}, starting at index {@code 0}. Lanes
+	 * whose input is {@code null} are left untouched. Chunks may have
+	 * different lengths. An output array may be its input array.
+	 *
+	 * @param input the chunks to process, indexed by lane.
+	 * @param output the output buffers, indexed by lane.
+	 *
+	 * @throws NullPointerException if {@code input} or {@code output} is
+	 *	{@code null}, or if {@code output[k]} is {@code null} while
+	 *	{@code input[k]} isn't.
+	 * @throws IllegalArgumentException if {@code input} has more than
+	 *	{@link #LANES} elements, if {@code output} has fewer elements
+	 *	than {@code input}, if {@code input[k]} is not {@code null} while
+	 *	lane {@code k} is closed, or if {@code output[k]} is shorter than
+	 *	{@code input[k]}.
+	 */
+	public void process(byte[][] input, byte[][] output)
+	{
+		if (input.length > LANES || output.length < input.length) {
+			throw new IllegalArgumentException();
+		}
+		int max = 0;
+		for (int k = 0; k < input.length; k++) {
+			if (input[k] != null) {
+				if ((open & (1L << k)) == 0L
+					|| output[k].length < input[k].length) {
+					throw new IllegalArgumentException();
+				}
+				max = Math.max(max, input[k].length);
+			}
+		}
+		for (int pos = 0; pos < max; pos++) {
+			long active = 0L;
+			for (int k = 0; k < input.length; k++) {
+				if (input[k] != null && pos < input[k].length) {
+					active |= 1L << k;
+				}
+			}
+			transpose(input, pos, active);
+			for (int j = 0; j < 8; j++) {
+				long o = in[j] ^ state[size - 1];
+				out[j] = o;
+				step(decryption ? in[j] : o, active);
+			}
+			untranspose(output, pos, active);
+		}
+	}
+
+	private void step(long fed, long active)
+	{
+		long[] s = state;
+		long[] n = next;
+		long nfed = ~fed;
+		long inactive = ~active;
+		for (int i = 1; i < size; i++) {
+			long red = s[redSources[i]] ^ redMasks[i];
+			long blue = s[blueSources[i]] ^ blueMasks[i];
+			long v = (red & fed) | (blue & nfed);
+			n[i] = (v & active) | (s[i] & inactive);
+		}
+		n[0] = (fed & active) | (s[0] & inactive);
+		state = n;
+		next = s;
+	}
+
+	private void transpose(byte[][] input, int pos, long active)
+	{
+		long b0 = 0L, b1 = 0L, b2 = 0L, b3 = 0L;
+		long b4 = 0L, b5 = 0L, b6 = 0L, b7 = 0L;
+		for (long a = active; a != 0L; a &= a - 1) {
+			int k = Long.numberOfTrailingZeros(a);
+			long b = input[k][pos];
+			b0 |= (b & 1L) << k;
+			b1 |= ((b >>> 1) & 1L) << k;
+			b2 |= ((b >>> 2) & 1L) << k;
+			b3 |= ((b >>> 3) & 1L) << k;
+			b4 |= ((b >>> 4) & 1L) << k;
+			b5 |= ((b >>> 5) & 1L) << k;
+			b6 |= ((b >>> 6) & 1L) << k;
+			b7 |= ((b >>> 7) & 1L) << k;
+		}
+		in[0] = b0;
+		in[1] = b1;
+		in[2] = b2;
+		in[3] = b3;
+		in[4] = b4;
+		in[5] = b5;
+		in[6] = b6;
+		in[7] = b7;
+	}
+
+	private void untranspose(byte[][] output, int pos, long active)
+	{
+		for (long a = active; a != 0L; a &= a - 1) {
+			int k = Long.numberOfTrailingZeros(a);
+			int b = 0;
+			for (int j = 0; j < 8; j++) {
+				b |= (int) ((out[j] >>> k) & 1L) << j;
+			}
+			output[k][pos] = (byte) b;
+		}
+	}
+
+	private static long[] masks(long[] packed, int size)
+	{
+		long[] masks = new long[size];
+		for (int i = 0; i < size; i++) {
+			masks[i] = -((packed[i >>> 6] >>> i) & 1L);
+		}
+		return masks;
+	}
+
+	private static void checkLane(int lane)
+	{
+		if (lane < 0 || lane >= LANES) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+}
@@ -0,0 +1,312 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Encrypts and decrypts framed messages using several threads. Nash's
+ * encryption is inherently serial, since each ciphertext bit is fed back into
+ * the permuter, so this framed mode splits messages into chunks which are
+ * encrypted independently, each one with its own IV, derived from the
+ * message's IV and the chunk's index (see {@link #chunkIV(CompiledKey, IV,
+ * long)}).
+ *
+ * A framed message is a sequence of chunks, each one made of the length of
+ * its ciphertext, as a 4-byte big-endian integer, followed by the ciphertext
+ * itself, and terminated by a zero length. Chunks may have any length
+ * between {@code 1} and {@link #MAX_CHUNK_SIZE}, so framed messages can be
+ * produced incrementally (see
+ * {@link org.kocakosm.nash.io.ChunkedNashCipherOutputStream}). Framed
+ * messages can't be decrypted by a {@link NashCipher}, and vice versa.
+ * Instances of this class are thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class ChunkedCipher
+{
+	/** The default chunk size, in bytes. */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	/** The maximum chunk size, in bytes. */
+	public static final int MAX_CHUNK_SIZE = 1 << 28;
+
+	/** The length of chunk headers, in bytes. */
+	static final int HEADER_LENGTH = 4;
+
+	/**
+	 * Derives the IV of a chunk from the message's IV: the chunk's index,
+	 * as 64 little-endian bits padded with zeros up to the key's size, is
+	 * encrypted with the message's IV, and the first key's size bits of the
+	 * result are the chunk's IV. Each output bit only depends on the input
+	 * bits before it, so these bits only depend on the index's first key's
+	 * size bits, of which they are an invertible function: chunks get
+	 * distinct IVs as long as their indexes are lower than
+	 * {@link #maxChunks(int)}, which is {@code 2^size} for keys of less
+	 * than 63 bits. Beyond, IVs, and thus keystreams, would repeat.
+	 *
+	 * @param key the secret key.
+	 * @param iv the message's IV.
+	 * @param index the chunk's index.
+	 *
+	 * @return the chunk's IV.
+	 *
+	 * @throws NullPointerException if {@code key} or {@code iv} is
+	 *	{@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes, if {@code index} is negative or if it is not
+	 *	lower than {@link #maxChunks(int)}.
+	 */
+	public static IV chunkIV(CompiledKey key, IV iv, long index)
+	{
+		int size = key.getSize();
+		if (index < 0 || index >= maxChunks(size)) {
+			throw new IllegalArgumentException();
+		}
+		byte[] block = new byte[Math.max(8, (size + 7) >>> 3)];
+		for (int i = 0; i < 8; i++) {
+			block[i] = (byte) (index >>> (i << 3));
+		}
+		new NashCipher(key, iv, Mode.ENCRYPTION).processInPlace(block, 0,
+			block.length);
+		boolean[] bits = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			bits[i] = ((block[i >>> 3] >>> (i & 7)) & 1) != 0;
+		}
+		return new IV(bits);
+	}
+
+	/**
+	 * Returns the maximum number of chunks of a message encrypted with a key
+	 * of the given size, that is, {@code 2^size} for keys of less than 63
+	 * bits, and {@link Long#MAX_VALUE} otherwise (see
+	 * {@link #chunkIV(CompiledKey, IV, long)}).
+	 *
+	 * @param size the key's size.
+	 *
+	 * @return the maximum number of chunks of a message.
+	 */
+	public static long maxChunks(int size)
+	{
+		return size < 63 ? 1L << size : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Writes a chunk header.
+	 *
+	 * @param len the chunk's length.
+	 * @param buf the buffer in which to write the header.
+	 * @param off the offset at which to write the header.
+	 *
+	 * @return the offset following the header.
+	 */
+	static int writeHeader(int len, byte[] buf, int off)
+	{
+		buf[off] = (byte) (len >>> 24);
+		buf[off + 1] = (byte) (len >>> 16);
+		buf[off + 2] = (byte) (len >>> 8);
+		buf[off + 3] = (byte) len;
+		return off + HEADER_LENGTH;
+	}
+
+	/**
+	 * Reads a chunk header.
+	 *
+	 * @param buf the buffer from which to read the header.
+	 * @param off the offset of the header.
+	 *
+	 * @return the chunk's length.
+	 */
+	static int readHeader(byte[] buf, int off)
+	{
+		return ((buf[off] & 0xFF) << 24) | ((buf[off + 1] & 0xFF) << 16)
+			| ((buf[off + 2] & 0xFF) << 8) | (buf[off + 3] & 0xFF);
+	}
+
+	private final CompiledKey key;
+	private final ExecutorService executor;
+	private final int chunkSize;
+
+	/**
+	 * Creates a new {@code ChunkedCipher} using 1 MB chunks.
+	 *
+	 * @param key the secret key.
+	 * @param executor the executor in which to run encryption tasks.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 */
+	public ChunkedCipher(CompiledKey key, ExecutorService executor)
+	{
+		this(key, executor, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a new {@code ChunkedCipher}.
+	 *
+	 * @param key the secret key.
+	 * @param executor the executor in which to run encryption tasks.
+	 * @param chunkSize the size of the chunks.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code chunkSize} is not in
+	 *	{@code [1, MAX_CHUNK_SIZE]}.
+	 */
+	public ChunkedCipher(CompiledKey key, ExecutorService executor,
+		int chunkSize)
+	{
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(executor);
+		if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+			throw new IllegalArgumentException();
+		}
+		this.key = key;
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Encrypts the given message into a framed message.
+	 *
+	 * @param iv the message's IV.
+	 * @param plaintext the message to encrypt.
+	 *
+	 * @return the framed message.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code iv}'s size doesn't match
+	 *	the size of the key or if {@code plaintext} has more than
+	 *	{@link #maxChunks(int)} chunks.
+	 */
+	public byte[] encrypt(IV iv, byte[] plaintext)
+	{
+		checkSize(iv);
+		int chunks = (plaintext.length + chunkSize - 1) / chunkSize;
+		checkChunks(chunks);
+		long length = plaintext.length
+			+ (long) HEADER_LENGTH * (chunks + 1);
+		if (length > Integer.MAX_VALUE) {
+			throw new OutOfMemoryError();
+		}
+		byte[] framed = new byte[(int) length];
+		List<Future<?>> futures = new ArrayList<>(chunks);
+		int out = 0;
+		for (int k = 0; k < chunks; k++) {
+			int in = k * chunkSize;
+			int len = Math.min(chunkSize, plaintext.length - in);
+			int off = writeHeader(len, framed, out);
+			long index = k;
+			futures.add(executor.submit(() -> chunkCipher(iv, index,
+				Mode.ENCRYPTION).process(plaintext, in, len, framed, off)));
+			out = off + len;
+		}
+		await(futures);
+		return framed;
+	}
+
+	/**
+	 * Decrypts the given framed message.
+	 *
+	 * @param iv the message's IV.
+	 * @param framed the framed message.
+	 *
+	 * @return the decrypted message.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code iv}'s size doesn't match
+	 *	the size of the key, if {@code framed} is not a valid framed
+	 *	message or if it has more than {@link #maxChunks(int)} chunks.
+	 */
+	public byte[] decrypt(IV iv, byte[] framed)
+	{
+		checkSize(iv);
+		List<int[]> chunks = new ArrayList<>();
+		long total = 0L;
+		int pos = 0;
+		while (true) {
+			if (framed.length - pos < HEADER_LENGTH) {
+				throw new IllegalArgumentException("Truncated message");
+			}
+			int len = readHeader(framed, pos);
+			pos += HEADER_LENGTH;
+			if (len == 0) {
+				break;
+			}
+			if (len < 0 || len > MAX_CHUNK_SIZE || len > framed.length - pos) {
+				throw new IllegalArgumentException("Malformed message");
+			}
+			chunks.add(new int[] {pos, len, (int) total});
+			total += len;
+			pos += len;
+		}
+		if (pos != framed.length) {
+			throw new IllegalArgumentException("Trailing data");
+		}
+		checkChunks(chunks.size());
+		byte[] plaintext = new byte[(int) total];
+		List<Future<?>> futures = new ArrayList<>(chunks.size());
+		for (int k = 0; k < chunks.size(); k++) {
+			int[] chunk = chunks.get(k);
+			long index = k;
+			futures.add(executor.submit(() -> chunkCipher(iv, index,
+				Mode.DECRYPTION).process(framed, chunk[0], chunk[1],
+				plaintext, chunk[2])));
+		}
+		await(futures);
+		return plaintext;
+	}
+
+	private NashCipher chunkCipher(IV iv, long index, Mode mode)
+	{
+		return new NashCipher(key, chunkIV(key, iv, index), mode);
+	}
+
+	private void checkChunks(int chunks)
+	{
+		if (chunks > maxChunks(key.getSize())) {
+			throw new IllegalArgumentException("Too many chunks");
+		}
+	}
+
+	private void checkSize(IV iv)
+	{
+		if (key.getSize() != iv.getSize()) {
+			throw new IllegalArgumentException();
+		}
+	}
+
+	private static void await(List<Future<?>> futures)
+	{
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException ex) {
+			futures.forEach(f -> f.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(ex);
+		} catch (ExecutionException ex) {
+			futures.forEach(f -> f.cancel(true));
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+}
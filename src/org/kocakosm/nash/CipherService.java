@@ -0,0 +1,550 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multiplexes many cipher sessions over a fixed number of worker threads.
+ * Each session is pinned to one of the service's stripes, that is, to one
+ * worker thread, which is the only one to ever touch the session's cipher.
+ * Chunks may be submitted from any thread: they are queued in the session,
+ * which is scheduled on its stripe whenever it has pending chunks. Chunks
+ * are thus processed in submission order, and sessions are never locked:
+ * only the stripes' queues, which hand sessions over to workers, are
+ * synchronized. A scheduled session processes up to {@link #BATCH_SIZE}
+ * chunks in a row, and goes back to the end of its stripe's queue if it
+ * has more, so that busy sessions don't starve the others.
+ *
+ * <p>Chunks are processed in place and then handed over, in order, to the
+ * session's {@link Sink}, on the worker thread. Each session can hold a
+ * bounded number of pending chunks: {@link Session#offer} fails and
+ * {@link Session#submit} blocks when that number is reached, and queue
+ * depths are exposed for monitoring. On Java 21 or later, workers may be
+ * virtual threads (see {@link #withVirtualThreads(int, int)}). Instances of
+ * this class are thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class CipherService implements AutoCloseable
+{
+	/** The maximum number of chunks a session processes in a row. */
+	public static final int BATCH_SIZE = 32;
+
+	private static final ThreadFactory VIRTUAL = findVirtualThreadFactory();
+
+	/**
+	 * Returns whether virtual threads are available, that is, whether this
+	 * is running on Java 21 or later.
+	 *
+	 * @return whether virtual threads are available.
+	 */
+	public static boolean isVirtualThreadsAvailable()
+	{
+		return VIRTUAL != null;
+	}
+
+	/**
+	 * Creates a new {@code CipherService} whose workers are virtual threads.
+	 *
+	 * @param stripes the number of stripes, that is, of workers.
+	 * @param capacity the maximum number of pending chunks per session.
+	 *
+	 * @return the created service.
+	 *
+	 * @throws UnsupportedOperationException if virtual threads are not
+	 *	available.
+	 * @throws IllegalArgumentException if {@code stripes} or
+	 *	{@code capacity} is not positive.
+	 */
+	public static CipherService withVirtualThreads(int stripes, int capacity)
+	{
+		if (VIRTUAL == null) {
+			throw new UnsupportedOperationException();
+		}
+		return new CipherService(stripes, capacity, VIRTUAL);
+	}
+
+	private static ThreadFactory findVirtualThreadFactory()
+	{
+		try {
+			Class<?> type = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Method name = type.getMethod("name", String.class, long.class);
+			builder = name.invoke(builder, "nash-cipher-service-", 0L);
+			return (ThreadFactory) type.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			return null;
+		}
+	}
+
+	private final Stripe[] stripes;
+	private final int capacity;
+	private final AtomicInteger next = new AtomicInteger();
+	private volatile boolean closed;
+
+	/**
+	 * Creates a new {@code CipherService} whose workers are daemon platform
+	 * threads.
+	 *
+	 * @param stripes the number of stripes, that is, of workers.
+	 * @param capacity the maximum number of pending chunks per session.
+	 *
+	 * @throws IllegalArgumentException if {@code stripes} or
+	 *	{@code capacity} is not positive.
+	 */
+	public CipherService(int stripes, int capacity)
+	{
+		this(stripes, capacity, null);
+	}
+
+	/**
+	 * Creates a new {@code CipherService}.
+	 *
+	 * @param stripes the number of stripes, that is, of workers.
+	 * @param capacity the maximum number of pending chunks per session.
+	 * @param factory the factory creating the workers, or {@code null} for
+	 *	daemon platform threads.
+	 *
+	 * @throws IllegalArgumentException if {@code stripes} or
+	 *	{@code capacity} is not positive.
+	 */
+	public CipherService(int stripes, int capacity, ThreadFactory factory)
+	{
+		if (stripes <= 0 || capacity <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.capacity = capacity;
+		this.stripes = new Stripe[stripes];
+		for (int i = 0; i < stripes; i++) {
+			Stripe stripe = new Stripe();
+			Thread worker;
+			if (factory == null) {
+				worker = new Thread(stripe::run, "nash-cipher-service-" + i);
+				worker.setDaemon(true);
+			} else {
+				worker = factory.newThread(stripe::run);
+			}
+			stripe.worker = worker;
+			this.stripes[i] = stripe;
+		}
+		for (Stripe stripe : this.stripes) {
+			stripe.worker.start();
+		}
+	}
+
+	/**
+	 * Opens a new session, pinned to the next stripe in turn.
+	 *
+	 * @param key the session's compiled secret key.
+	 * @param iv the session's initialization vector.
+	 * @param mode the session's operation mode.
+	 * @param sink the consumer of the session's processed chunks.
+	 *
+	 * @return the created session.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 * @throws IllegalStateException if this service is closed.
+	 */
+	public Session open(CompiledKey key, IV iv, Mode mode, Sink sink)
+	{
+		Objects.requireNonNull(sink);
+		NashCipher cipher = new NashCipher(key, iv, mode);
+		if (closed) {
+			throw new IllegalStateException();
+		}
+		int i = Math.floorMod(next.getAndIncrement(), stripes.length);
+		return new Session(stripes[i], cipher, sink, capacity);
+	}
+
+	/**
+	 * Returns the number of stripes, that is, of workers.
+	 *
+	 * @return the number of stripes.
+	 */
+	public int getStripes()
+	{
+		return stripes.length;
+	}
+
+	/**
+	 * Returns the number of chunks queued in all the sessions, and not yet
+	 * being processed.
+	 *
+	 * @return the number of queued chunks.
+	 */
+	public int getQueueDepth()
+	{
+		int depth = 0;
+		for (Stripe stripe : stripes) {
+			depth += stripe.depth.get();
+		}
+		return depth;
+	}
+
+	/**
+	 * Closes this service: no more sessions or chunks are accepted, the
+	 * chunks already submitted are processed, and the workers then stop.
+	 * This method waits for all the workers to have stopped.
+	 */
+	@Override
+	public void close()
+	{
+		if (closed) {
+			return;
+		}
+		closed = true;
+		for (Stripe stripe : stripes) {
+			stripe.queue.add(Stripe.STOP);
+		}
+		boolean interrupted = false;
+		for (Stripe stripe : stripes) {
+			while (stripe.worker.isAlive()) {
+				try {
+					stripe.worker.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Consumer of a session's processed chunks. */
+	@FunctionalInterface
+	public interface Sink
+	{
+		/**
+		 * Receives a processed chunk, on the session's worker thread.
+		 * Chunks are received in submission order. If this method throws
+		 * an exception, the session fails.
+		 *
+		 * @param data the array holding the processed chunk.
+		 * @param off the offset of the chunk.
+		 * @param len the length of the chunk.
+		 */
+		void accept(byte[] data, int off, int len);
+	}
+
+	/**
+	 * A cipher session, whose chunks are processed in order by its
+	 * stripe's worker. Submitted arrays are processed in place: they must
+	 * not be accessed until they have been handed over to the sink. A
+	 * session fails if processing a chunk or handing it over to the sink
+	 * throws an exception, its pending chunks being then dropped.
+	 */
+	public final class Session
+	{
+		private final Stripe stripe;
+		private final NashCipher cipher;
+		private final Sink sink;
+		private final int capacity;
+		private final Semaphore permits;
+		private final Queue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger pending = new AtomicInteger();
+		private final CompletableFuture<Void> done;
+		private final AtomicBoolean closing = new AtomicBoolean();
+		private volatile Throwable failure;
+
+		private Session(Stripe stripe, NashCipher cipher, Sink sink,
+			int capacity)
+		{
+			this.stripe = stripe;
+			this.cipher = cipher;
+			this.sink = sink;
+			this.capacity = capacity;
+			this.permits = new Semaphore(capacity);
+			this.done = new CompletableFuture<>();
+		}
+
+		/**
+		 * Submits a chunk if this session has room for it.
+		 *
+		 * @param data the array holding the chunk.
+		 * @param off the offset of the chunk.
+		 * @param len the length of the chunk.
+		 *
+		 * @return whether the chunk has been accepted, that is, whether
+		 *	this session had fewer pending chunks than its capacity.
+		 *
+		 * @throws NullPointerException if {@code data} is {@code null}.
+		 * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+		 *	is negative or if {@code off + len} is greater than
+		 *	{@code data}'s length.
+		 * @throws IllegalStateException if this session is closed or has
+		 *	failed, or if the service is closed.
+		 */
+		public boolean offer(byte[] data, int off, int len)
+		{
+			checkBounds(data, off, len);
+			checkOpen();
+			if (!permits.tryAcquire()) {
+				return false;
+			}
+			add(new Chunk(data, off, len));
+			return true;
+		}
+
+		/**
+		 * Submits a chunk, waiting for this session to have room for it if
+		 * necessary.
+		 *
+		 * @param data the array holding the chunk.
+		 * @param off the offset of the chunk.
+		 * @param len the length of the chunk.
+		 *
+		 * @throws NullPointerException if {@code data} is {@code null}.
+		 * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+		 *	is negative or if {@code off + len} is greater than
+		 *	{@code data}'s length.
+		 * @throws IllegalStateException if this session is closed or has
+		 *	failed, or if the service is closed.
+		 * @throws InterruptedException if the calling thread is
+		 *	interrupted while waiting.
+		 */
+		public void submit(byte[] data, int off, int len)
+			throws InterruptedException
+		{
+			checkBounds(data, off, len);
+			checkOpen();
+			permits.acquire();
+			add(new Chunk(data, off, len));
+		}
+
+		/**
+		 * Closes this session: no more chunks are accepted, and those
+		 * already submitted are still processed, even if the service has
+		 * been closed.
+		 *
+		 * @return a future completed once all the chunks submitted before
+		 *	have been handed over to the sink, or completed exceptionally
+		 *	with this session's failure.
+		 */
+		public CompletableFuture<Void> close()
+		{
+			if (closing.compareAndSet(false, true)) {
+				end();
+			}
+			return done;
+		}
+
+		/**
+		 * Returns the number of pending chunks in this session, including
+		 * the one being processed, if any.
+		 *
+		 * @return the number of pending chunks.
+		 */
+		public int getQueueDepth()
+		{
+			return capacity - permits.availablePermits();
+		}
+
+		/**
+		 * Returns the maximum number of pending chunks in this session.
+		 *
+		 * @return this session's capacity.
+		 */
+		public int getCapacity()
+		{
+			return capacity;
+		}
+
+		/**
+		 * Returns the exception that made this session fail, if any.
+		 *
+		 * @return this session's failure, or {@code null}.
+		 */
+		public Throwable getFailure()
+		{
+			return failure;
+		}
+
+		private void checkOpen()
+		{
+			if (closing.get() || closed || failure != null) {
+				throw new IllegalStateException(failure);
+			}
+		}
+
+		private void add(Chunk chunk)
+		{
+			if (!enqueue(chunk)) {
+				permits.release();
+				throw new IllegalStateException();
+			}
+		}
+
+		/*
+		 * The stripe's depth is incremented before the service's closed
+		 * flag is checked, so that a stopping worker can't miss the chunk.
+		 */
+		private boolean enqueue(Chunk chunk)
+		{
+			stripe.depth.incrementAndGet();
+			if (closed) {
+				stripe.depth.decrementAndGet();
+				return false;
+			}
+			schedule(chunk);
+			return true;
+		}
+
+		/*
+		 * The end marker is queued even if the service is closed, so that
+		 * the worker completes the future once it has processed the chunks
+		 * before it. The worker may however have stopped just before: it
+		 * only does so after setting its stripe's stopped flag and checking
+		 * that the depth is still 0, so if the marker has been counted too
+		 * late, the flag is seen here, and all the chunks have been
+		 * processed. The marker is then withdrawn and the future completed
+		 * here, unless the worker has taken the marker meanwhile.
+		 */
+		private void end()
+		{
+			Chunk end = new Chunk(null, 0, 0);
+			stripe.depth.incrementAndGet();
+			schedule(end);
+			if (stripe.stopped && chunks.remove(end)) {
+				pending.decrementAndGet();
+				stripe.depth.decrementAndGet();
+				complete();
+			}
+		}
+
+		private void schedule(Chunk chunk)
+		{
+			chunks.add(chunk);
+			if (pending.getAndIncrement() == 0) {
+				stripe.queue.add(this);
+			}
+		}
+
+		/* Only ever called by the stripe's worker. */
+		private void drain()
+		{
+			int n = 0;
+			Chunk chunk;
+			while (n < BATCH_SIZE && (chunk = chunks.poll()) != null) {
+				n++;
+				stripe.depth.decrementAndGet();
+				handle(chunk);
+			}
+			if (pending.addAndGet(-n) > 0) {
+				stripe.queue.add(this);
+			}
+		}
+
+		private void handle(Chunk chunk)
+		{
+			if (chunk.data == null) {
+				complete();
+				return;
+			}
+			try {
+				if (failure == null) {
+					cipher.processInPlace(chunk.data, chunk.off, chunk.len);
+					sink.accept(chunk.data, chunk.off, chunk.len);
+				}
+			} catch (RuntimeException | Error e) {
+				failure = e;
+			} finally {
+				permits.release();
+			}
+		}
+
+		private void complete()
+		{
+			if (failure == null) {
+				done.complete(null);
+			} else {
+				done.completeExceptionally(failure);
+			}
+		}
+	}
+
+	/** A submitted chunk, or a session's end if its data are null. */
+	private static final class Chunk
+	{
+		final byte[] data;
+		final int off;
+		final int len;
+
+		Chunk(byte[] data, int off, int len)
+		{
+			this.data = data;
+			this.off = off;
+			this.len = len;
+		}
+	}
+
+	/**
+	 * A worker and the queue of its scheduled sessions. Once the service is
+	 * closed, the worker keeps running until it has no more pending chunks.
+	 */
+	private static final class Stripe
+	{
+		static final Object STOP = new Object();
+
+		final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+		final AtomicInteger depth = new AtomicInteger();
+		volatile boolean stopped;
+		Thread worker;
+
+		void run()
+		{
+			while (true) {
+				Object next;
+				try {
+					next = queue.take();
+				} catch (InterruptedException e) {
+					continue;
+				}
+				if (next != STOP) {
+					((Session) next).drain();
+				} else if (depth.get() > 0) {
+					queue.add(STOP);
+					Thread.yield();
+				} else {
+					/* See Session.end(). */
+					stopped = true;
+					if (depth.get() == 0) {
+						return;
+					}
+					queue.add(STOP);
+				}
+			}
+		}
+	}
+
+	private static void checkBounds(byte[] bytes, int off, int len)
+	{
+		if (off < 0 || len < 0 || off > bytes.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+}
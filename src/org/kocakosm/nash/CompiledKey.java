@@ -0,0 +1,346 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * Secret key compiled into the tables used by Nash ciphers. Compiling a key
+ * has a cost which is linear in the key's size, so it is best done once per
+ * key, the compiled key being then shared by all the ciphers using that key.
+ * Instances of this class are immutable.
+ *
+ * @author Osman Koçak
+ */
+public final class CompiledKey
+{
+	/*
+	 * Compilations of keys small enough to be run by table engines, whose
+	 * tables are the only costly part of a compiled key.
+	 */
+	private static final KeyCache SMALL_KEYS = new KeyCache(64L << 20);
+
+	/**
+	 * Compiles the given key. Keys of at most 18 bits are run with
+	 * transition tables of up to 4 MB, which take milliseconds to build: to
+	 * avoid rebuilding them each time such a key is compiled, as the
+	 * constructors taking a plain {@link Key} do, their compilations share
+	 * them through an internal cache, bounded to 64 MB. Use a
+	 * {@link KeyCache} to control how long compiled keys are retained.
+	 *
+	 * @param key the key to compile.
+	 *
+	 * @return the compiled key.
+	 *
+	 * @throws NullPointerException if {@code key} is {@code null}.
+	 */
+	public static CompiledKey compile(Key key)
+	{
+		if (key.getSize() > TableEngine.MAX_KEY_SIZE) {
+			return new CompiledKey(key);
+		}
+		CompiledKey shared = SMALL_KEYS.get(key);
+		if (shared.key == key) {
+			return shared;
+		}
+		return new CompiledKey(shared, key, null, null);
+	}
+
+	/**
+	 * Compiles the given key, without sharing anything with other
+	 * compilations, unlike {@link #compile(Key)}.
+	 *
+	 * @param key the key to compile.
+	 *
+	 * @return the compiled key.
+	 *
+	 * @throws NullPointerException if {@code key} is {@code null}.
+	 */
+	static CompiledKey create(Key key)
+	{
+		return new CompiledKey(Objects.requireNonNull(key));
+	}
+
+	private final Key key;
+	private final int[] redSources;
+	private final int[] blueSources;
+	private final long[] redBits;
+	private final long[] blueBits;
+	private final BiConsumer<long[], long[]> redStep;
+	private final BiConsumer<long[], long[]> blueStep;
+	private final AtomicReferenceArray<int[]> tables;
+	private volatile int horizon = Integer.MIN_VALUE;
+
+	private CompiledKey(Key key)
+	{
+		int size = key.getSize();
+		this.key = key;
+		this.redSources = new int[size];
+		this.blueSources = new int[size];
+		this.redBits = new long[words(size)];
+		this.blueBits = new long[words(size)];
+		resolve(key.getRedPermutations(), key.getRedBits(), redSources,
+			redBits);
+		resolve(key.getBluePermutations(), key.getBlueBits(), blueSources,
+			blueBits);
+		this.redStep = null;
+		this.blueStep = null;
+		this.tables = new AtomicReferenceArray<>(Mode.values().length);
+	}
+
+	/* Copies of a compiled key share its tables. */
+	private CompiledKey(CompiledKey compiled, Key key,
+		BiConsumer<long[], long[]> red, BiConsumer<long[], long[]> blue)
+	{
+		this.key = key;
+		this.redSources = compiled.redSources;
+		this.blueSources = compiled.blueSources;
+		this.redBits = compiled.redBits;
+		this.blueBits = compiled.blueBits;
+		this.redStep = red;
+		this.blueStep = blue;
+		this.tables = compiled.tables;
+	}
+
+	/**
+	 * Returns a version of this compiled key whose permutation steps have
+	 * been translated into code specific to this key, that the JIT can fully
+	 * optimize. Specialization takes a few milliseconds, which is only worth
+	 * it for long-lived keys. It is not available for keys of more than a
+	 * few hundred bits, whose generated code would be too large to be
+	 * JIT-compiled; in that case this key is returned as is.
+	 *
+	 * @return the specialized compiled key.
+	 */
+	public CompiledKey specialize()
+	{
+		if (isSpecialized()) {
+			return this;
+		}
+		int size = getSize();
+		BiConsumer<long[], long[]> red = StepCompiler.compile(size,
+			redSources, redBits);
+		BiConsumer<long[], long[]> blue = StepCompiler.compile(size,
+			blueSources, blueBits);
+		if (red == null || blue == null) {
+			return this;
+		}
+		return new CompiledKey(this, key, red, blue);
+	}
+
+	/**
+	 * Returns whether this compiled key's permutation steps have been
+	 * specialized.
+	 *
+	 * @return whether this compiled key has been specialized.
+	 *
+	 * @see #specialize()
+	 */
+	public boolean isSpecialized()
+	{
+		return redStep != null;
+	}
+
+	/**
+	 * Returns the key this compiled key has been built from.
+	 *
+	 * @return the source key.
+	 */
+	public Key getKey()
+	{
+		return key;
+	}
+
+	/**
+	 * Returns the size of the key (actually, the permuter's size).
+	 *
+	 * @return the size of the key (actually, the permuter's size).
+	 */
+	public int getSize()
+	{
+		return redSources.length;
+	}
+
+	/**
+	 * Returns the red gather table, that is, for each bit of the permuter,
+	 * the index of the bit of the previous state it is computed from. The
+	 * returned array is shared and must not be modified.
+	 *
+	 * @return the red gather table.
+	 */
+	int[] redSources()
+	{
+		return redSources;
+	}
+
+	/**
+	 * Returns the blue gather table. The returned array is shared and must
+	 * not be modified.
+	 *
+	 * @return the blue gather table.
+	 */
+	int[] blueSources()
+	{
+		return blueSources;
+	}
+
+	/**
+	 * Returns the packed red complementation table, with chained
+	 * complements already applied. The returned array is shared and must
+	 * not be modified.
+	 *
+	 * @return the packed red complementation table.
+	 */
+	long[] redBits()
+	{
+		return redBits;
+	}
+
+	/**
+	 * Returns the packed blue complementation table. The returned array is
+	 * shared and must not be modified.
+	 *
+	 * @return the packed blue complementation table.
+	 */
+	long[] blueBits()
+	{
+		return blueBits;
+	}
+
+	/**
+	 * Returns this key's resynchronization horizon, that is, the number of
+	 * ciphertext bits after which a decryption cipher's state no longer
+	 * depends on its initial state, whatever the ciphertext. Decryption can
+	 * thus start anywhere in a message, provided the cipher has first been
+	 * fed that many bits of the preceding ciphertext. Some keys, notably
+	 * those whose permutations have fixed points, have no such horizon: on
+	 * some ciphertexts, part of the state never gets overwritten.
+	 *
+	 * @return this key's resynchronization horizon, in bits, or {@code -1}
+	 *	if this key has none.
+	 */
+	public int getResynchronizationHorizon()
+	{
+		int h = horizon;
+		if (h == Integer.MIN_VALUE) {
+			h = DependencyTracker.horizon(this);
+			horizon = h;
+		}
+		return h;
+	}
+
+	/**
+	 * Returns the generated red permutation step, if this key has been
+	 * specialized.
+	 *
+	 * @return the red permutation step, or {@code null}.
+	 */
+	BiConsumer<long[], long[]> redStep()
+	{
+		return redStep;
+	}
+
+	/**
+	 * Returns the generated blue permutation step, if this key has been
+	 * specialized.
+	 *
+	 * @return the blue permutation step, or {@code null}.
+	 */
+	BiConsumer<long[], long[]> blueStep()
+	{
+		return blueStep;
+	}
+
+	/**
+	 * Returns the transition table of this key for the given mode, building
+	 * it on first use. Tables are shared with this key's specialized
+	 * version, and with the other compilations of its key that went through
+	 * {@link #compile(Key)}'s cache. This key's size must not exceed
+	 * {@link TableEngine#MAX_KEY_SIZE}. The returned array is shared and
+	 * must not be modified.
+	 *
+	 * @param mode the operation mode.
+	 *
+	 * @return the transition table for {@code mode}.
+	 */
+	int[] table(Mode mode)
+	{
+		int i = mode.ordinal();
+		int[] table = tables.get(i);
+		if (table == null) {
+			tables.compareAndSet(i, null, TableEngine.build(this, mode));
+			table = tables.get(i);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the memory retained by this compiled key, in bytes: its
+	 * sources and complement bits plus, if its size doesn't exceed
+	 * {@link TableEngine#MAX_KEY_SIZE}, its two transition tables, counted
+	 * even before they are built. Object headers are ignored.
+	 *
+	 * @return this compiled key's footprint, in bytes.
+	 */
+	long footprint()
+	{
+		int size = getSize();
+		long bytes = 2L * (Integer.BYTES * size + Long.BYTES * words(size));
+		if (size <= TableEngine.MAX_KEY_SIZE) {
+			bytes += (2L * Integer.BYTES) << (size + TableEngine.width(size));
+		}
+		return bytes;
+	}
+
+	/*
+	 * The permuter's update, state[i] = state[p[i]] ^ bits[i], is done in
+	 * place from i = 1 to i = n - 1, so an entry may read a value that has
+	 * already been updated during the same step. Such chains are resolved
+	 * here, once, so that each new bit can be gathered from the previous
+	 * state only.
+	 */
+	private static void resolve(int[] permutations, boolean[] bits,
+		int[] sources, long[] packed)
+	{
+		boolean[] complements = new boolean[bits.length];
+		for (int i = 1; i < permutations.length; i++) {
+			int p = permutations[i];
+			if (p > 0 && p < i) {
+				sources[i] = sources[p];
+				complements[i] = complements[p] ^ bits[i];
+			} else {
+				sources[i] = p;
+				complements[i] = bits[i];
+			}
+			if (complements[i]) {
+				packed[i >>> 6] |= 1L << i;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of {@code long} words needed to hold the given
+	 * number of bits.
+	 *
+	 * @param bits a number of bits.
+	 *
+	 * @return the number of words needed to hold {@code bits} bits.
+	 */
+	static int words(int bits)
+	{
+		return (bits + 63) >>> 6;
+	}
+}
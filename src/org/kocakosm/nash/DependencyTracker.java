@@ -0,0 +1,167 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+/**
+ * Tracks which bits of a decryption permuter's state still depend on the
+ * state it had when tracking started. In decryption mode, the permuter is fed
+ * with ciphertext bits only, so once no bit depends on the initial state
+ * anymore, the state is fully determined by the ciphertext seen since then,
+ * whatever the initial state was. Instances of this class are not
+ * thread-safe.
+ *
+ * @author Osman Koçak
+ */
+final class DependencyTracker
+{
+	/**
+	 * Computes the given key's resynchronization horizon.
+	 *
+	 * @param key the compiled key.
+	 *
+	 * @return the key's resynchronization horizon, or {@code -1} if the key
+	 *	has none.
+	 *
+	 * @see CompiledKey#getResynchronizationHorizon()
+	 */
+	static int horizon(CompiledKey key)
+	{
+		/*
+		 * Bit i depends on bits red[i] and blue[i] of the previous state,
+		 * bit 0 on nothing. The worst case number of steps during which
+		 * bit i may still depend on the initial state is the length of
+		 * the longest path starting at i in that dependency graph, which
+		 * is unbounded if a cycle is reachable from i.
+		 */
+		int[] red = key.redSources();
+		int[] blue = key.blueSources();
+		int size = red.length;
+		int[] lengths = new int[size];
+		byte[] marks = new byte[size];
+		int[] stack = new int[size];
+		int max = 0;
+		marks[0] = 2;
+		for (int root = 1; root < size; root++) {
+			if (marks[root] != 0) {
+				continue;
+			}
+			int top = 0;
+			stack[top] = root;
+			marks[root] = 1;
+			while (top >= 0) {
+				int i = stack[top];
+				int r = red[i];
+				int b = blue[i];
+				if (marks[r] == 1 || marks[b] == 1) {
+					return -1;
+				}
+				if (marks[r] == 0) {
+					marks[r] = 1;
+					stack[++top] = r;
+				} else if (marks[b] == 0) {
+					marks[b] = 1;
+					stack[++top] = b;
+				} else {
+					lengths[i] = 1 + Math.max(lengths[r], lengths[b]);
+					max = Math.max(max, lengths[i]);
+					marks[i] = 2;
+					top--;
+				}
+			}
+		}
+		return max + 1;
+	}
+
+	private final int size;
+	private final int[] redSources;
+	private final int[] blueSources;
+	private long[] dependencies;
+	private long[] next;
+	private boolean synced;
+
+	/**
+	 * Creates a new {@code DependencyTracker}, all the bits of the state
+	 * being initially considered as dependent.
+	 *
+	 * @param key the compiled secret key.
+	 */
+	DependencyTracker(CompiledKey key)
+	{
+		this.size = key.getSize();
+		this.redSources = key.redSources();
+		this.blueSources = key.blueSources();
+		this.dependencies = new long[CompiledKey.words(size)];
+		this.next = new long[dependencies.length];
+		for (int i = 0; i < size; i++) {
+			dependencies[i >>> 6] |= 1L << i;
+		}
+	}
+
+	/**
+	 * Updates the dependencies after the given ciphertext bytes have been
+	 * fed to the permuter.
+	 *
+	 * @param ciphertext the ciphertext.
+	 * @param off the offset of the fed bytes.
+	 * @param len the number of fed bytes.
+	 *
+	 * @return whether the state no longer depends on its initial value.
+	 */
+	boolean update(byte[] ciphertext, int off, int len)
+	{
+		for (int k = off; k < off + len && !synced; k++) {
+			for (int j = 0; j < 8; j++) {
+				step((ciphertext[k] >>> j) & 1);
+			}
+			synced = isEmpty();
+		}
+		return synced;
+	}
+
+	/**
+	 * Returns whether the state no longer depends on its initial value.
+	 *
+	 * @return whether the state no longer depends on its initial value.
+	 */
+	boolean isSynchronized()
+	{
+		return synced;
+	}
+
+	private void step(int bit)
+	{
+		int[] sources = bit == 0 ? blueSources : redSources;
+		long[] d = dependencies;
+		for (int w = 0; w < next.length; w++) {
+			int start = w << 6;
+			long acc = 0L;
+			for (int i = Math.min(size, start + 64) - 1; i >= start; i--) {
+				int src = sources[i];
+				acc = (acc << 1) | ((d[src >>> 6] >>> src) & 1L);
+			}
+			next[w] = acc;
+		}
+		next[0] &= ~1L;
+		dependencies = next;
+		next = d;
+	}
+
+	private boolean isEmpty()
+	{
+		for (long word : dependencies) {
+			if (word != 0L) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,289 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compact binary encoding of keys and IVs. An encoded value starts with a
+ * header made of the format's version, the value's type ({@code 'K'} or
+ * {@code 'I'}) and its size, as a 4-byte big-endian integer. Bit tables
+ * follow, packed 8 bits per byte, least significant bit first, and then,
+ * for keys, the permutation tables, packed the same way with
+ * {@code ceil(log2(size))} bits per entry. Each table starts on a byte
+ * boundary, padding bits being zeros, so that the encoding is canonical.
+ *
+ * @author Osman Koçak
+ */
+final class Encoding
+{
+	/** The current version of the format. */
+	static final byte VERSION = 1;
+
+	/** The type of encoded keys. */
+	static final byte KEY = 'K';
+
+	/** The type of encoded IVs. */
+	static final byte IV = 'I';
+
+	/** The length of the header, in bytes. */
+	static final int HEADER_LENGTH = 6;
+
+	/**
+	 * Returns the number of bytes needed to encode the given number of bits.
+	 *
+	 * @param n a number of bits.
+	 *
+	 * @return the number of bytes needed to encode {@code n} bits.
+	 */
+	static long bitsLength(int n)
+	{
+		return (n + 7L) >>> 3;
+	}
+
+	/**
+	 * Returns the number of bytes needed to encode a permutation table.
+	 *
+	 * @param n the size of the table.
+	 *
+	 * @return the number of bytes needed to encode the table.
+	 */
+	static long permutationsLength(int n)
+	{
+		return ((long) n * width(n) + 7L) >>> 3;
+	}
+
+	/**
+	 * Returns a view of the given buffer positioned at its position, whose
+	 * byte order is big-endian, and checks that it has enough room.
+	 *
+	 * @param buffer the buffer to write to.
+	 * @param length the number of bytes to write.
+	 *
+	 * @return a big-endian view of {@code buffer}.
+	 *
+	 * @throws BufferOverflowException if {@code buffer} has less than
+	 *	{@code length} bytes remaining.
+	 */
+	static ByteBuffer output(ByteBuffer buffer, long length)
+	{
+		if (buffer.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+		return buffer.duplicate();
+	}
+
+	/**
+	 * Writes a header.
+	 *
+	 * @param out the buffer to write to.
+	 * @param type the type of the encoded value.
+	 * @param size the size of the encoded value.
+	 */
+	static void writeHeader(ByteBuffer out, byte type, int size)
+	{
+		out.put(VERSION).put(type).putInt(size);
+	}
+
+	/**
+	 * Reads and checks a header.
+	 *
+	 * @param in the buffer to read from, which must be big-endian.
+	 * @param type the expected type.
+	 *
+	 * @return the size of the encoded value.
+	 *
+	 * @throws IllegalArgumentException if the header is truncated or
+	 *	invalid.
+	 */
+	static int readHeader(ByteBuffer in, byte type)
+	{
+		if (in.remaining() < HEADER_LENGTH) {
+			throw new IllegalArgumentException("Truncated header");
+		}
+		if (in.get() != VERSION) {
+			throw new IllegalArgumentException("Unsupported version");
+		}
+		if (in.get() != type) {
+			throw new IllegalArgumentException("Unexpected type");
+		}
+		int size = in.getInt();
+		if (size <= 0) {
+			throw new IllegalArgumentException("Invalid size");
+		}
+		return size;
+	}
+
+	/**
+	 * Checks that the given buffer holds enough bytes.
+	 *
+	 * @param in the buffer to read from.
+	 * @param length the expected number of bytes.
+	 *
+	 * @throws IllegalArgumentException if {@code in} has less than
+	 *	{@code length} bytes remaining.
+	 */
+	static void checkRemaining(ByteBuffer in, long length)
+	{
+		if (in.remaining() < length) {
+			throw new IllegalArgumentException("Truncated value");
+		}
+	}
+
+	/**
+	 * Writes a bit table.
+	 *
+	 * @param out the buffer to write to.
+	 * @param bits the bits to write.
+	 */
+	static void writeBits(ByteBuffer out, boolean[] bits)
+	{
+		byte[] packed = new byte[(int) bitsLength(bits.length)];
+		for (int i = 0; i < bits.length; i++) {
+			if (bits[i]) {
+				packed[i >>> 3] |= 1 << (i & 7);
+			}
+		}
+		out.put(packed);
+	}
+
+	/**
+	 * Reads a bit table.
+	 *
+	 * @param in the buffer to read from.
+	 * @param n the number of bits to read.
+	 *
+	 * @return the read bits.
+	 *
+	 * @throws IllegalArgumentException if the padding bits are not zeros.
+	 */
+	static boolean[] readBits(ByteBuffer in, int n)
+	{
+		byte[] packed = new byte[(int) bitsLength(n)];
+		in.get(packed);
+		if ((packed[packed.length - 1] & 0xFF) >>> (((n - 1) & 7) + 1) != 0) {
+			throw new IllegalArgumentException("Invalid padding");
+		}
+		boolean[] bits = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			bits[i] = ((packed[i >>> 3] >>> (i & 7)) & 1) != 0;
+		}
+		return bits;
+	}
+
+	/**
+	 * Writes a permutation table.
+	 *
+	 * @param out the buffer to write to.
+	 * @param permutations the permutation table to write.
+	 */
+	static void writePermutations(ByteBuffer out, int[] permutations)
+	{
+		int width = width(permutations.length);
+		long acc = 0L;
+		int bits = 0;
+		for (int p : permutations) {
+			acc |= (long) p << bits;
+			bits += width;
+			while (bits >= 8) {
+				out.put((byte) acc);
+				acc >>>= 8;
+				bits -= 8;
+			}
+		}
+		if (bits > 0) {
+			out.put((byte) acc);
+		}
+	}
+
+	/**
+	 * Reads and checks a permutation table, which must have been generated
+	 * the way {@link Key#create(int)} does, that is, contain {@code 0}
+	 * twice, every value from {@code 1} to {@code n - 2} once, and not
+	 * {@code n - 1} (a single {@code 0} if {@code n} is {@code 1}). Padding
+	 * bits must be zeros.
+	 *
+	 * @param in the buffer to read from.
+	 * @param n the size of the table.
+	 *
+	 * @return the read permutation table.
+	 *
+	 * @throws IllegalArgumentException if the table is invalid.
+	 */
+	static int[] readPermutations(ByteBuffer in, int n)
+	{
+		int width = width(n);
+		int mask = (1 << width) - 1;
+		ByteBuffer le = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int pos = in.position();
+		int end = pos + (int) permutationsLength(n);
+		int[] permutations = new int[n];
+		long[] seen = new long[(n + 63) >>> 6];
+		long duplicates = 0L;
+		int zeros = 0;
+		long acc = 0L;
+		int bits = 0;
+		for (int i = 0; i < n; i++) {
+			if (bits < width) {
+				if (end - pos >= 4) {
+					acc |= (le.getInt(pos) & 0xFFFFFFFFL) << bits;
+					pos += 4;
+					bits += 32;
+				} else {
+					while (bits < width) {
+						acc |= (le.get(pos++) & 0xFFL) << bits;
+						bits += 8;
+					}
+				}
+			}
+			int p = (int) acc & mask;
+			acc >>>= width;
+			bits -= width;
+			if (p == 0) {
+				zeros++;
+			} else if (p >= n - 1) {
+				throw new IllegalArgumentException("Invalid permutations");
+			}
+			long m = p == 0 ? 0L : 1L << p;
+			duplicates |= seen[p >>> 6] & m;
+			seen[p >>> 6] |= m;
+			permutations[i] = p;
+		}
+		if (duplicates != 0L || zeros != Math.min(n, 2)) {
+			throw new IllegalArgumentException("Invalid permutations");
+		}
+		if (pos != end || acc != 0L) {
+			throw new IllegalArgumentException("Invalid padding");
+		}
+		in.position(end);
+		return permutations;
+	}
+
+	/**
+	 * Returns the number of bits used per permutation table entry.
+	 *
+	 * @param n the size of the table.
+	 *
+	 * @return {@code ceil(log2(n))}.
+	 */
+	private static int width(int n)
+	{
+		return 32 - Integer.numberOfLeadingZeros(n - 1);
+	}
+
+	private Encoding()
+	{
+		/* ... */
+	}
+}
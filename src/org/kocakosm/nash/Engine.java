@@ -0,0 +1,112 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Nash cipher's engine, that is, the permuter's state and the code updating
+ * it. Implementations are not thread-safe.
+ *
+ * @author Osman Koçak
+ */
+interface Engine
+{
+	/**
+	 * Creates the most appropriate engine for the given key: a table engine
+	 * for small keys, otherwise a specialized engine if the key has been
+	 * specialized, otherwise the Vector API engine if it is available and
+	 * the key has at least {@link VectorSupport#MIN_KEY_SIZE} bits, and a
+	 * packed engine if it isn't.
+	 *
+	 * @param key the compiled secret key.
+	 * @param iv the initialization vector.
+	 * @param mode the operation mode.
+	 *
+	 * @return the created engine.
+	 */
+	static Engine create(CompiledKey key, IV iv, Mode mode)
+	{
+		if (key.getSize() <= TableEngine.MAX_KEY_SIZE) {
+			return new TableEngine(key, iv, mode);
+		}
+		if (key.isSpecialized()) {
+			return new SpecializedEngine(key, iv, mode);
+		}
+		if (key.getSize() >= VectorSupport.MIN_KEY_SIZE) {
+			Engine vector = VectorSupport.create(key, iv, mode);
+			if (vector != null) {
+				return vector;
+			}
+		}
+		return new PackedEngine(key, iv, mode);
+	}
+
+	/**
+	 * Resets the engine's state to the given initialization vector.
+	 *
+	 * @param iv the initialization vector.
+	 */
+	void reset(IV iv);
+
+	/**
+	 * Returns the engine's current state, that is, the permuter's bits, in
+	 * the same order as {@link IV#getBits()}: resetting an engine to an IV
+	 * made of these bits restores this state.
+	 *
+	 * @return the permuter's bits.
+	 */
+	boolean[] state();
+
+	/**
+	 * Sets the engine's state to the packed state stored in the given buffer
+	 * at the given index: {@link CompiledKey#words(int)} {@code long}s, in
+	 * the buffer's byte order, bit {@code i} of the state being bit
+	 * {@code i & 63} of word {@code i >>> 6}. Unused bits must be zero.
+	 *
+	 * @param buffer the buffer holding the packed state.
+	 * @param index the index of the packed state in {@code buffer}.
+	 */
+	void load(ByteBuffer buffer, int index);
+
+	/**
+	 * Stores the engine's state into the given buffer at the given index,
+	 * packed as described in {@link #load(ByteBuffer, int)}.
+	 *
+	 * @param buffer the buffer in which to store the packed state.
+	 * @param index the index at which to store the packed state.
+	 */
+	void store(ByteBuffer buffer, int index);
+
+	/**
+	 * Processes a single byte.
+	 *
+	 * @param b the byte to process.
+	 *
+	 * @return the processed byte, as an {@code int} in {@code [0, 255]}.
+	 */
+	int process(int b);
+
+	/**
+	 * Processes {@code len} bytes from {@code in}, starting at {@code inOff},
+	 * and writes the result in {@code out}, starting at {@code outOff}.
+	 *
+	 * @param in the input buffer.
+	 * @param inOff the input offset.
+	 * @param len the number of bytes to process.
+	 * @param out the output buffer.
+	 * @param outOff the output offset.
+	 */
+	void process(byte[] in, int inOff, int len, byte[] out, int outOff);
+}
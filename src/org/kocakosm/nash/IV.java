@@ -12,7 +12,10 @@
 package org.kocakosm.nash;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Initialization vector. Instances of this class are immutable.
@@ -37,14 +40,84 @@ public final class IV implements Serializable
 		if (size <= 0) {
 			throw new IllegalArgumentException();
 		}
-		return new IV(size);
+		return new IV(Random.nextBits(Random.generator(), size));
+	}
+
+	/**
+	 * Creates a new random IV, drawing its randomness from the given
+	 * generator (a DRBG instance, for example).
+	 *
+	 * @param size the size of the IV.
+	 * @param random the random generator to use.
+	 *
+	 * @return the created IV.
+	 *
+	 * @throws NullPointerException if {@code random} is {@code null}.
+	 * @throws IllegalArgumentException if {@code size <= 0}.
+	 */
+	public static IV create(int size, SecureRandom random)
+	{
+		Objects.requireNonNull(random);
+		if (size <= 0) {
+			throw new IllegalArgumentException();
+		}
+		return new IV(Random.nextBits(random, size));
+	}
+
+	/**
+	 * Decodes an IV encoded with {@link #toBytes()}.
+	 *
+	 * @param bytes the encoded IV.
+	 *
+	 * @return the decoded IV.
+	 *
+	 * @throws NullPointerException if {@code bytes} is {@code null}.
+	 * @throws IllegalArgumentException if {@code bytes} is not a valid
+	 *	encoded IV.
+	 */
+	public static IV fromBytes(byte[] bytes)
+	{
+		ByteBuffer in = ByteBuffer.wrap(bytes);
+		IV iv = read(in);
+		if (in.hasRemaining()) {
+			throw new IllegalArgumentException("Trailing bytes");
+		}
+		return iv;
+	}
+
+	/**
+	 * Reads an IV encoded with {@link #write(ByteBuffer)} from the given
+	 * buffer, whose position is advanced past the encoded IV. The buffer is
+	 * left untouched if the IV can't be decoded.
+	 *
+	 * @param buffer the buffer to read from.
+	 *
+	 * @return the decoded IV.
+	 *
+	 * @throws NullPointerException if {@code buffer} is {@code null}.
+	 * @throws IllegalArgumentException if {@code buffer} doesn't start with
+	 *	a valid encoded IV.
+	 */
+	public static IV read(ByteBuffer buffer)
+	{
+		ByteBuffer in = buffer.duplicate();
+		int size = Encoding.readHeader(in, Encoding.IV);
+		Encoding.checkRemaining(in, Encoding.bitsLength(size));
+		IV iv = new IV(Encoding.readBits(in, size));
+		buffer.position(in.position());
+		return iv;
 	}
 
 	private final boolean[] bits;
 
-	private IV(int size)
+	/**
+	 * Creates a new IV with the given value, which is not copied.
+	 *
+	 * @param bits the IV's value.
+	 */
+	IV(boolean[] bits)
 	{
-		this.bits = Random.nextBits(size);
+		this.bits = bits;
 	}
 
 	/**
@@ -67,6 +140,50 @@ public final class IV implements Serializable
 		return Arrays.copyOf(bits, bits.length);
 	}
 
+	/**
+	 * Returns the length of this IV's binary encoding.
+	 *
+	 * @return the length of this IV's encoding, in bytes.
+	 */
+	public int getEncodedLength()
+	{
+		return (int) (Encoding.HEADER_LENGTH + Encoding.bitsLength(bits.length));
+	}
+
+	/**
+	 * Returns this IV's compact binary encoding, which can be decoded with
+	 * {@link #fromBytes(byte[])}. It takes one bit per bit of the IV, plus
+	 * a few bytes of header.
+	 *
+	 * @return this IV's binary encoding.
+	 */
+	public byte[] toBytes()
+	{
+		byte[] bytes = new byte[getEncodedLength()];
+		write(ByteBuffer.wrap(bytes));
+		return bytes;
+	}
+
+	/**
+	 * Writes this IV's binary encoding into the given buffer, whose
+	 * position is advanced by {@link #getEncodedLength()} bytes.
+	 *
+	 * @param buffer the buffer to write to.
+	 *
+	 * @throws NullPointerException if {@code buffer} is {@code null}.
+	 * @throws java.nio.BufferOverflowException if {@code buffer} doesn't
+	 *	have enough room, in which case nothing is written.
+	 * @throws java.nio.ReadOnlyBufferException if {@code buffer} is
+	 *	read-only.
+	 */
+	public void write(ByteBuffer buffer)
+	{
+		ByteBuffer out = Encoding.output(buffer, getEncodedLength());
+		Encoding.writeHeader(out, Encoding.IV, bits.length);
+		Encoding.writeBits(out, bits);
+		buffer.position(out.position());
+	}
+
 	@Override
 	public int hashCode()
 	{
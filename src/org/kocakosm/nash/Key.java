@@ -12,7 +12,10 @@
 package org.kocakosm.nash;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Secret key for Nash ciphers. Instances of this class are immutable.
@@ -37,20 +40,104 @@ public final class Key implements Serializable
 		if (size <= 0) {
 			throw new IllegalArgumentException();
 		}
-		return new Key(size);
+		return new Key(size, Random.generator());
+	}
+
+	/**
+	 * Creates a new random key, drawing its randomness from the given
+	 * generator (a DRBG instance, for example).
+	 *
+	 * @param size the size of the key (actually, the permuter's size).
+	 * @param random the random generator to use.
+	 *
+	 * @return the created secret key.
+	 *
+	 * @throws NullPointerException if {@code random} is {@code null}.
+	 * @throws IllegalArgumentException if {@code size <= 0}.
+	 */
+	public static Key create(int size, SecureRandom random)
+	{
+		Objects.requireNonNull(random);
+		if (size <= 0) {
+			throw new IllegalArgumentException();
+		}
+		return new Key(size, random);
+	}
+
+	/**
+	 * Decodes a key encoded with {@link #toBytes()}.
+	 *
+	 * @param bytes the encoded key.
+	 *
+	 * @return the decoded key.
+	 *
+	 * @throws NullPointerException if {@code bytes} is {@code null}.
+	 * @throws IllegalArgumentException if {@code bytes} is not a valid
+	 *	encoded key.
+	 */
+	public static Key fromBytes(byte[] bytes)
+	{
+		ByteBuffer in = ByteBuffer.wrap(bytes);
+		Key key = read(in);
+		if (in.hasRemaining()) {
+			throw new IllegalArgumentException("Trailing bytes");
+		}
+		return key;
+	}
+
+	/**
+	 * Reads a key encoded with {@link #write(ByteBuffer)} from the given
+	 * buffer, whose position is advanced past the encoded key. The buffer
+	 * is left untouched if the key can't be decoded.
+	 *
+	 * @param buffer the buffer to read from.
+	 *
+	 * @return the decoded key.
+	 *
+	 * @throws NullPointerException if {@code buffer} is {@code null}.
+	 * @throws IllegalArgumentException if {@code buffer} doesn't start with
+	 *	a valid encoded key.
+	 */
+	public static Key read(ByteBuffer buffer)
+	{
+		ByteBuffer in = buffer.duplicate();
+		int size = Encoding.readHeader(in, Encoding.KEY);
+		Encoding.checkRemaining(in, bodyLength(size));
+		boolean[] red = Encoding.readBits(in, size);
+		boolean[] blue = Encoding.readBits(in, size);
+		int[] redP = Encoding.readPermutations(in, size);
+		int[] blueP = Encoding.readPermutations(in, size);
+		buffer.position(in.position());
+		return new Key(red, blue, redP, blueP);
+	}
+
+	private static long bodyLength(int size)
+	{
+		return 2 * (Encoding.bitsLength(size)
+			+ Encoding.permutationsLength(size));
 	}
 
 	private final boolean[] redBits;
 	private final boolean[] blueBits;
 	private final int[] redPermutations;
 	private final int[] bluePermutations;
+	private transient volatile long fingerprint;
 
-	private Key(int size)
+	private Key(int size, SecureRandom random)
 	{
-		this.redBits = Random.nextBits(size);
-		this.blueBits = Random.nextBits(size);
-		this.redPermutations = generatePermutations(size);
-		this.bluePermutations = generatePermutations(size);
+		this.redBits = Random.nextBits(random, size);
+		this.blueBits = Random.nextBits(random, size);
+		this.redPermutations = Random.shuffle(random, permutations(size));
+		this.bluePermutations = Random.shuffle(random, permutations(size));
+	}
+
+	private Key(boolean[] redBits, boolean[] blueBits, int[] redPermutations,
+		int[] bluePermutations)
+	{
+		this.redBits = redBits;
+		this.blueBits = blueBits;
+		this.redPermutations = redPermutations;
+		this.bluePermutations = bluePermutations;
 	}
 
 	/**
@@ -103,13 +190,83 @@ public final class Key implements Serializable
 		return Arrays.copyOf(redPermutations, redPermutations.length);
 	}
 
+	/**
+	 * Returns the length of this key's binary encoding.
+	 *
+	 * @return the length of this key's encoding, in bytes.
+	 *
+	 * @throws ArithmeticException if the encoding would be larger than
+	 *	{@code Integer.MAX_VALUE} bytes.
+	 */
+	public int getEncodedLength()
+	{
+		return Math.toIntExact(Encoding.HEADER_LENGTH + bodyLength(getSize()));
+	}
+
+	/**
+	 * Returns this key's compact binary encoding, which can be decoded with
+	 * {@link #fromBytes(byte[])}. Complementation tables take one bit per
+	 * entry and permutation tables {@code ceil(log2(size))} bits per entry,
+	 * plus a few bytes of header.
+	 *
+	 * @return this key's binary encoding.
+	 *
+	 * @throws ArithmeticException if the encoding would be larger than
+	 *	{@code Integer.MAX_VALUE} bytes.
+	 */
+	public byte[] toBytes()
+	{
+		byte[] bytes = new byte[getEncodedLength()];
+		write(ByteBuffer.wrap(bytes));
+		return bytes;
+	}
+
+	/**
+	 * Writes this key's binary encoding into the given buffer, whose
+	 * position is advanced by {@link #getEncodedLength()} bytes.
+	 *
+	 * @param buffer the buffer to write to.
+	 *
+	 * @throws NullPointerException if {@code buffer} is {@code null}.
+	 * @throws java.nio.BufferOverflowException if {@code buffer} doesn't
+	 *	have enough room, in which case nothing is written.
+	 * @throws java.nio.ReadOnlyBufferException if {@code buffer} is
+	 *	read-only.
+	 */
+	public void write(ByteBuffer buffer)
+	{
+		ByteBuffer out = Encoding.output(buffer, getEncodedLength());
+		Encoding.writeHeader(out, Encoding.KEY, getSize());
+		Encoding.writeBits(out, redBits);
+		Encoding.writeBits(out, blueBits);
+		Encoding.writePermutations(out, redPermutations);
+		Encoding.writePermutations(out, bluePermutations);
+		buffer.position(out.position());
+	}
+
+	/**
+	 * Returns this key's fingerprint, a 64-bit hash of its whole content
+	 * that is computed once and then cached. Equal keys have equal
+	 * fingerprints; it is not a cryptographic digest though, so distinct
+	 * keys may share the same fingerprint.
+	 *
+	 * @return this key's fingerprint.
+	 */
+	public long getFingerprint()
+	{
+		long f = fingerprint;
+		if (f == 0L) {
+			f = fingerprint();
+			fingerprint = f;
+		}
+		return f;
+	}
+
 	@Override
 	public int hashCode()
 	{
-		int hash = 7;
-		hash = 89 * hash + Arrays.hashCode(redPermutations);
-		hash = 89 * hash + Arrays.hashCode(bluePermutations);
-		return hash;
+		long f = getFingerprint();
+		return (int) (f ^ (f >>> 32));
 	}
 
 	@Override
@@ -122,19 +279,35 @@ public final class Key implements Serializable
 			return false;
 		}
 		Key k = (Key) o;
-		return Arrays.equals(redBits, k.redBits)
+		return getFingerprint() == k.getFingerprint()
+			&& Arrays.equals(redBits, k.redBits)
 			&& Arrays.equals(blueBits, k.blueBits)
 			&& Arrays.equals(redPermutations, k.redPermutations)
 			&& Arrays.equals(bluePermutations, k.bluePermutations);
 	}
 
-	private int[] generatePermutations(int size)
+	private long fingerprint()
+	{
+		long h = getSize();
+		for (int i = 0; i < redBits.length; i++) {
+			int bits = (redBits[i] ? 1 : 0) | (blueBits[i] ? 2 : 0);
+			h = (h + redPermutations[i]) * 0x9E3779B97F4A7C15L;
+			h = (h + ((long) bluePermutations[i] << 2 | bits))
+				* 0xC2B2AE3D27D4EB4FL;
+		}
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		return h == 0L ? 1L : h;
+	}
+
+	private static int[] permutations(int size)
 	{
 		int[] values = new int[size];
 		for (int i = 0; i < size - 1; i++) {
 			values[i] = i;
 		}
 		values[size - 1] = 0;
-		return Random.shuffle(values);
+		return values;
 	}
 }
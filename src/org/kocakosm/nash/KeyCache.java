@@ -0,0 +1,219 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of compiled keys, so that ciphers created for the same keys
+ * over and over (one per tenant, for instance) share their compiled tables.
+ * The cache's capacity is expressed in bytes, as the total memory retained
+ * by the compiled keys (their sources and complement bits, plus, for keys
+ * small enough to be run by table engines, their two transition tables of
+ * up to 4 MB each): when it is exceeded, the least recently used keys are
+ * evicted. Keys are looked up
+ * by their cached {@linkplain Key#getFingerprint() fingerprint}, and then
+ * compared in full. Keys are compiled outside of the cache's lock, so that
+ * lookups of other keys don't wait for the compilation; two threads
+ * missing the same key at the same time may thus both compile it, only one
+ * of the results being kept. Instances of this class are thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class KeyCache
+{
+	private final long capacity;
+	private final boolean specialize;
+	private final Map<Key, CompiledKey> entries;
+	private long weight;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a new {@code KeyCache}.
+	 *
+	 * @param capacity the maximum footprint of the cached keys, in bytes.
+	 *
+	 * @throws IllegalArgumentException if {@code capacity <= 0}.
+	 */
+	public KeyCache(long capacity)
+	{
+		this(capacity, false);
+	}
+
+	/**
+	 * Creates a new {@code KeyCache}.
+	 *
+	 * @param capacity the maximum footprint of the cached keys, in bytes.
+	 * @param specialize whether to {@linkplain CompiledKey#specialize()
+	 *	specialize} the compiled keys.
+	 *
+	 * @throws IllegalArgumentException if {@code capacity <= 0}.
+	 */
+	public KeyCache(long capacity, boolean specialize)
+	{
+		if (capacity <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.capacity = capacity;
+		this.specialize = specialize;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the compiled version of the given key, compiling it if it is
+	 * not in this cache. Keys whose footprint exceeds this cache's capacity
+	 * are compiled but not cached.
+	 *
+	 * @param key the key.
+	 *
+	 * @return the compiled key.
+	 *
+	 * @throws NullPointerException if {@code key} is {@code null}.
+	 */
+	public CompiledKey get(Key key)
+	{
+		/* Hashes the key outside of the lock. */
+		Objects.requireNonNull(key).getFingerprint();
+		synchronized (entries) {
+			CompiledKey compiled = entries.get(key);
+			if (compiled != null) {
+				hits++;
+				return compiled;
+			}
+			misses++;
+		}
+		CompiledKey compiled = CompiledKey.create(key);
+		if (specialize) {
+			compiled = compiled.specialize();
+		}
+		long footprint = compiled.footprint();
+		if (footprint > capacity) {
+			return compiled;
+		}
+		synchronized (entries) {
+			CompiledKey cached = entries.putIfAbsent(key, compiled);
+			if (cached != null) {
+				return cached;
+			}
+			weight += footprint;
+			Iterator<CompiledKey> lru = entries.values().iterator();
+			while (weight > capacity) {
+				weight -= lru.next().footprint();
+				lru.remove();
+				evictions++;
+			}
+		}
+		return compiled;
+	}
+
+	/**
+	 * Removes the given key from this cache, if present.
+	 *
+	 * @param key the key to remove.
+	 *
+	 * @throws NullPointerException if {@code key} is {@code null}.
+	 */
+	public void invalidate(Key key)
+	{
+		Objects.requireNonNull(key);
+		synchronized (entries) {
+			CompiledKey compiled = entries.remove(key);
+			if (compiled != null) {
+				weight -= compiled.footprint();
+			}
+		}
+	}
+
+	/** Removes all the keys from this cache. */
+	public void clear()
+	{
+		synchronized (entries) {
+			entries.clear();
+			weight = 0L;
+		}
+	}
+
+	/**
+	 * Returns the number of keys in this cache.
+	 *
+	 * @return the number of cached keys.
+	 */
+	public int size()
+	{
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Returns the footprint of the keys in this cache, in bytes.
+	 *
+	 * @return the cache's current weight.
+	 */
+	public long getWeight()
+	{
+		synchronized (entries) {
+			return weight;
+		}
+	}
+
+	/**
+	 * Returns the maximum footprint of the keys in this cache, in bytes.
+	 *
+	 * @return the cache's capacity.
+	 */
+	public long getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of lookups that found their key in this cache.
+	 *
+	 * @return the number of cache hits.
+	 */
+	public long getHits()
+	{
+		synchronized (entries) {
+			return hits;
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that had to compile their key.
+	 *
+	 * @return the number of cache misses.
+	 */
+	public long getMisses()
+	{
+		synchronized (entries) {
+			return misses;
+		}
+	}
+
+	/**
+	 * Returns the number of keys evicted to make room for other keys.
+	 *
+	 * @return the number of evictions.
+	 */
+	public long getEvictions()
+	{
+		synchronized (entries) {
+			return evictions;
+		}
+	}
+}
@@ -11,6 +11,10 @@
 
 package org.kocakosm.nash;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -30,9 +34,77 @@ public final class NashCipher
 		DECRYPTION
 	}
 
-	private final Key key;
+	/**
+	 * Immutable snapshot of a cipher's state. Nash's state after processing
+	 * some data is nothing but a permuter state, that is, another IV, so
+	 * taking a snapshot and forking ciphers from it are both linear in the
+	 * key's size, and independent of the amount of data processed before.
+	 * A snapshot taken after processing a prefix shared by many messages
+	 * thus saves processing that prefix again for each of them.
+	 *
+	 * @see NashCipher#snapshot()
+	 * @see PrefixCache
+	 */
+	public static final class Snapshot
+	{
+		private final CompiledKey key;
+		private final Mode mode;
+		private final IV state;
+
+		Snapshot(CompiledKey key, Mode mode, IV state)
+		{
+			this.key = key;
+			this.mode = mode;
+			this.state = state;
+		}
+
+		/**
+		 * Creates a new cipher, in the state captured by this snapshot.
+		 *
+		 * @return the created cipher.
+		 */
+		public NashCipher fork()
+		{
+			return new NashCipher(key, state, mode);
+		}
+
+		/**
+		 * Returns the key of the cipher this snapshot has been taken from.
+		 *
+		 * @return the cipher's key.
+		 */
+		public CompiledKey getKey()
+		{
+			return key;
+		}
+
+		/**
+		 * Returns the operation mode of the cipher this snapshot has been
+		 * taken from.
+		 *
+		 * @return the cipher's mode.
+		 */
+		public Mode getMode()
+		{
+			return mode;
+		}
+
+		/**
+		 * Returns the captured state, as an IV: a cipher created with the
+		 * same key, mode and this IV behaves as the cipher this snapshot
+		 * has been taken from did.
+		 *
+		 * @return the captured state.
+		 */
+		public IV getState()
+		{
+			return state;
+		}
+	}
+
+	private final CompiledKey key;
 	private final Mode mode;
-	private boolean[] state;
+	private final Engine engine;
 
 	/**
 	 * Creates a new {@code NashCipher}.
@@ -46,12 +118,29 @@ public final class NashCipher
 	 *	different sizes.
 	 */
 	public NashCipher(Key key, IV iv, Mode mode)
+	{
+		this(CompiledKey.compile(key), iv, mode);
+	}
+
+	/**
+	 * Creates a new {@code NashCipher}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param mode the cipher's operation mode.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 */
+	public NashCipher(CompiledKey key, IV iv, Mode mode)
 	{
 		Objects.requireNonNull(key);
 		Objects.requireNonNull(mode);
+		checkSizes(key, iv);
 		this.key = key;
 		this.mode = mode;
-		reset(iv);
+		this.engine = Engine.create(key, iv, mode);
 	}
 
 	/**
@@ -65,10 +154,35 @@ public final class NashCipher
 	 */
 	public void reset(IV iv)
 	{
-		if (key.getSize() != iv.getSize()) {
-			throw new IllegalArgumentException();
-		}
-		state = iv.getBits();
+		checkSizes(key, iv);
+		engine.reset(iv);
+	}
+
+	/**
+	 * Resets this cipher to the state captured by the given snapshot. The
+	 * snapshot must have been taken from a cipher using the same key and
+	 * mode as this one.
+	 *
+	 * @param snapshot the snapshot to restore.
+	 *
+	 * @throws NullPointerException if {@code snapshot} is {@code null}.
+	 * @throws IllegalArgumentException if {@code snapshot} has been taken
+	 *	from a cipher with a different key or mode.
+	 */
+	public void reset(Snapshot snapshot)
+	{
+		checkCompatible(snapshot.key, snapshot.mode);
+		engine.reset(snapshot.state);
+	}
+
+	/**
+	 * Takes a snapshot of this cipher's current state.
+	 *
+	 * @return a snapshot of this cipher's state.
+	 */
+	public Snapshot snapshot()
+	{
+		return new Snapshot(key, mode, new IV(engine.state()));
 	}
 
 	/**
@@ -101,37 +215,208 @@ public final class NashCipher
 	 */
 	public byte[] process(byte[] bytes, int off, int len)
 	{
-		if (off < 0 || len < 0) {
-			throw new IndexOutOfBoundsException();
-		}
+		checkBounds(bytes, off, len);
 		byte[] processed = new byte[len];
-		for (int i = off; i < off + len; i++) {
-			int val = 0;
-			for (int j = 0; j < 8; j++) {
-				boolean in = ((bytes[i] & 0xFF) & (1 << j)) > 0;
-				boolean out = in ^ state[state.length - 1];
-				val = (val >>> 1) | (out ? 0x80 : 0);
-				process(mode == Mode.DECRYPTION ? in : out);
+		engine.process(bytes, off, len, processed, 0);
+		return processed;
+	}
+
+	/**
+	 * Processes a single data byte.
+	 *
+	 * @param b the byte to process.
+	 *
+	 * @return the processed byte.
+	 */
+	public byte processByte(byte b)
+	{
+		return (byte) engine.process(b);
+	}
+
+	/**
+	 * Processes {@code len} bytes of {@code in}, starting at {@code inOff},
+	 * and stores the result in {@code out}, starting at {@code outOff}.
+	 * {@code in} and {@code out} may be the same array, even if the input
+	 * and output regions overlap.
+	 *
+	 * @param in the data to process.
+	 * @param inOff the input offset.
+	 * @param len the number of bytes to process.
+	 * @param out the output buffer.
+	 * @param outOff the output offset.
+	 *
+	 * @return the number of bytes stored in {@code out}, that is,
+	 *	{@code len}.
+	 *
+	 * @throws NullPointerException if {@code in} or {@code out} is
+	 *	{@code null}.
+	 * @throws IndexOutOfBoundsException if {@code inOff}, {@code outOff}
+	 *	or {@code len} is negative, if {@code inOff + len} is greater
+	 *	than {@code in}'s length or if {@code outOff + len} is greater
+	 *	than {@code out}'s length.
+	 */
+	public int process(byte[] in, int inOff, int len, byte[] out, int outOff)
+	{
+		checkBounds(in, inOff, len);
+		checkBounds(out, outOff, len);
+		byte[] src = in;
+		int srcOff = inOff;
+		if (in == out && outOff > inOff && outOff < inOff + len) {
+			src = Arrays.copyOfRange(in, inOff, inOff + len);
+			srcOff = 0;
+		}
+		engine.process(src, srcOff, len, out, outOff);
+		return len;
+	}
+
+	/**
+	 * Processes {@code len} bytes of {@code bytes}, starting at {@code off},
+	 * in place, that is, the processed data overwrite the input data.
+	 *
+	 * @param bytes the data to process.
+	 * @param off the offset.
+	 * @param len the number of bytes to process.
+	 *
+	 * @throws NullPointerException if {@code bytes} is {@code null}.
+	 * @throws IndexOutOfBoundsException if {@code off} or {@code len} is
+	 *	negative or if {@code off + len} is greater than {@code bytes}'
+	 *	length.
+	 */
+	public void processInPlace(byte[] bytes, int off, int len)
+	{
+		checkBounds(bytes, off, len);
+		engine.process(bytes, off, len, bytes, off);
+	}
+
+	/**
+	 * Processes all the remaining bytes of {@code src} and stores the result
+	 * in {@code dst}. Upon return, the position of {@code src} is equal to
+	 * its limit and the position of {@code dst} has been advanced by the
+	 * number of processed bytes. Both heap and direct buffers are supported.
+	 *
+	 * @param src the data to process.
+	 * @param dst the output buffer.
+	 *
+	 * @return the number of processed bytes.
+	 *
+	 * @throws NullPointerException if {@code src} or {@code dst} is
+	 *	{@code null}.
+	 * @throws IllegalArgumentException if {@code src} and {@code dst} are
+	 *	the same object.
+	 * @throws BufferOverflowException if {@code dst} has less remaining
+	 *	space than {@code src} has remaining bytes, in which case no byte
+	 *	is processed.
+	 * @throws ReadOnlyBufferException if {@code dst} is read-only.
+	 */
+	public int process(ByteBuffer src, ByteBuffer dst)
+	{
+		if (src == dst) {
+			throw new IllegalArgumentException();
+		}
+		int len = src.remaining();
+		if (dst.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (dst.remaining() < len) {
+			throw new BufferOverflowException();
+		}
+		int in = src.position();
+		int out = dst.position();
+		if (src.hasArray() && dst.hasArray()) {
+			process(src.array(), src.arrayOffset() + in, len,
+				dst.array(), dst.arrayOffset() + out);
+		} else {
+			for (int i = 0; i < len; i++) {
+				dst.put(out + i, (byte) engine.process(src.get(in + i)));
 			}
-			processed[i] = (byte) val;
 		}
-		return processed;
+		src.position(in + len);
+		dst.position(out + len);
+		return len;
 	}
 
-	private void process(boolean bit)
+	/**
+	 * Processes all the remaining bytes of {@code buffer} in place. Upon
+	 * return, the buffer's position is equal to its limit.
+	 *
+	 * @param buffer the data to process.
+	 *
+	 * @return the number of processed bytes.
+	 *
+	 * @throws NullPointerException if {@code buffer} is {@code null}.
+	 * @throws ReadOnlyBufferException if {@code buffer} is read-only.
+	 */
+	public int process(ByteBuffer buffer)
 	{
-		boolean[] bits;
-		int[] permutations;
-		if (bit) {
-			bits = key.getRedBits();
-			permutations = key.getRedPermutations();
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		int off = buffer.position();
+		int len = buffer.remaining();
+		if (buffer.hasArray()) {
+			processInPlace(buffer.array(), buffer.arrayOffset() + off, len);
 		} else {
-			bits = key.getBlueBits();
-			permutations = key.getBluePermutations();
+			for (int i = off; i < off + len; i++) {
+				buffer.put(i, (byte) engine.process(buffer.get(i)));
+			}
+		}
+		buffer.position(off + len);
+		return len;
+	}
+
+	/**
+	 * Sets this cipher's state to the packed state stored in the given
+	 * buffer at the given index (see {@link Engine#load(ByteBuffer, int)}).
+	 *
+	 * @param buffer the buffer holding the packed state.
+	 * @param index the index of the packed state in {@code buffer}.
+	 */
+	void load(ByteBuffer buffer, int index)
+	{
+		engine.load(buffer, index);
+	}
+
+	/**
+	 * Stores this cipher's state into the given buffer at the given index
+	 * (see {@link Engine#store(ByteBuffer, int)}).
+	 *
+	 * @param buffer the buffer in which to store the packed state.
+	 * @param index the index at which to store the packed state.
+	 */
+	void store(ByteBuffer buffer, int index)
+	{
+		engine.store(buffer, index);
+	}
+
+	/**
+	 * Checks that this cipher uses the given key, or an equal one, and the
+	 * given mode.
+	 *
+	 * @param key a compiled key.
+	 * @param mode an operation mode.
+	 *
+	 * @throws IllegalArgumentException if this cipher uses another key or
+	 *	another mode.
+	 */
+	void checkCompatible(CompiledKey key, Mode mode)
+	{
+		if (mode != this.mode || (key != this.key
+			&& !key.getKey().equals(this.key.getKey()))) {
+			throw new IllegalArgumentException();
+		}
+	}
+
+	private static void checkBounds(byte[] bytes, int off, int len)
+	{
+		if (off < 0 || len < 0 || off > bytes.length - len) {
+			throw new IndexOutOfBoundsException();
 		}
-		for (int i = 1; i < state.length; i++) {
-			state[i] = state[permutations[i]] ^ bits[i];
+	}
+
+	private static void checkSizes(CompiledKey key, IV iv)
+	{
+		if (key.getSize() != iv.getSize()) {
+			throw new IllegalArgumentException();
 		}
-		state[0] = bit;
 	}
 }
@@ -0,0 +1,147 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Permuter engine whose state and complementation tables are packed into
+ * {@code long} words. Subclasses may provide a faster permutation step.
+ * Instances of this class are not thread-safe.
+ *
+ * @author Osman Koçak
+ */
+class PackedEngine implements Engine
+{
+	private final int size;
+	private final boolean decryption;
+	private final int[] redSources;
+	private final int[] blueSources;
+	private final long[] redBits;
+	private final long[] blueBits;
+	private long[] state;
+	private long[] next;
+
+	/**
+	 * Creates a new {@code PackedEngine}.
+	 *
+	 * @param key the compiled secret key.
+	 * @param iv the initialization vector.
+	 * @param mode the operation mode.
+	 */
+	PackedEngine(CompiledKey key, IV iv, Mode mode)
+	{
+		this.size = key.getSize();
+		this.decryption = mode == Mode.DECRYPTION;
+		this.redSources = key.redSources();
+		this.blueSources = key.blueSources();
+		this.redBits = key.redBits();
+		this.blueBits = key.blueBits();
+		this.state = new long[CompiledKey.words(size)];
+		this.next = new long[CompiledKey.words(size)];
+		reset(iv);
+	}
+
+	@Override
+	public void reset(IV iv)
+	{
+		boolean[] bits = iv.getBits();
+		Arrays.fill(state, 0L);
+		for (int i = 0; i < bits.length; i++) {
+			if (bits[i]) {
+				state[i >>> 6] |= 1L << i;
+			}
+		}
+	}
+
+	@Override
+	public boolean[] state()
+	{
+		boolean[] bits = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			bits[i] = ((state[i >>> 6] >>> i) & 1L) != 0L;
+		}
+		return bits;
+	}
+
+	@Override
+	public void load(ByteBuffer buffer, int index)
+	{
+		for (int w = 0; w < state.length; w++) {
+			state[w] = buffer.getLong(index + (w << 3));
+		}
+	}
+
+	@Override
+	public void store(ByteBuffer buffer, int index)
+	{
+		for (int w = 0; w < state.length; w++) {
+			buffer.putLong(index + (w << 3), state[w]);
+		}
+	}
+
+	@Override
+	public void process(byte[] in, int inOff, int len, byte[] out, int outOff)
+	{
+		for (int k = 0; k < len; k++) {
+			out[outOff + k] = (byte) process(in[inOff + k]);
+		}
+	}
+
+	@Override
+	public int process(int b)
+	{
+		int last = size - 1;
+		int val = 0;
+		for (int j = 0; j < 8; j++) {
+			int in = (b >>> j) & 1;
+			int out = in ^ ((int) (state[last >>> 6] >>> last) & 1);
+			val |= out << j;
+			step(decryption ? in : out);
+		}
+		return val;
+	}
+
+	private void step(int bit)
+	{
+		long[] s = state;
+		permute(bit, s, next);
+		next[0] = (next[0] & ~1L) | bit;
+		state = next;
+		next = s;
+	}
+
+	/**
+	 * Computes the permuter's next state, leaving its bit 0 unspecified.
+	 *
+	 * @param bit the bit fed to the permuter (its color).
+	 * @param s the current state.
+	 * @param n the array in which to store the next state.
+	 */
+	void permute(int bit, long[] s, long[] n)
+	{
+		int[] sources = bit == 0 ? blueSources : redSources;
+		long[] bits = bit == 0 ? blueBits : redBits;
+		for (int w = 0; w < n.length; w++) {
+			int start = w << 6;
+			long acc = 0L;
+			for (int i = Math.min(size, start + 64) - 1; i >= start; i--) {
+				int src = sources[i];
+				acc = (acc << 1) | ((s[src >>> 6] >>> src) & 1L);
+			}
+			n[w] = acc ^ bits[w];
+		}
+	}
+}
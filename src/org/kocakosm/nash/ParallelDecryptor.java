@@ -0,0 +1,414 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Decrypts whole messages using several threads. Nash's decryption state
+ * only depends on past ciphertext, so, after having been fed a window of
+ * preceding ciphertext, a cipher can decrypt any part of a message on its own.
+ * Messages are thus split into chunks which are decrypted concurrently, each
+ * one after a warm-up on the ciphertext preceding it.
+ *
+ * If the key has a resynchronization horizon (see
+ * {@link CompiledKey#getResynchronizationHorizon()}), warm-ups last that many
+ * bits. Otherwise, warm-ups last {@code 4} times the key's size and the
+ * dependency of the state on its unknown initial value is tracked during the
+ * warm-up; chunks whose state is still dependent at the end of it are
+ * decrypted afterwards, sequentially, by the cipher that decrypted the
+ * previous chunk. In any case, the output is exactly the same as the one of a
+ * single {@link NashCipher}. Instances of this class are thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class ParallelDecryptor
+{
+	private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	private final CompiledKey key;
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+	private final int window;
+	private final boolean tracked;
+
+	/**
+	 * Creates a new {@code ParallelDecryptor} using 1 MB chunks.
+	 *
+	 * @param key the secret key.
+	 * @param pool the pool in which to run decryption tasks.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 */
+	public ParallelDecryptor(CompiledKey key, ForkJoinPool pool)
+	{
+		this(key, pool, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a new {@code ParallelDecryptor}.
+	 *
+	 * @param key the secret key.
+	 * @param pool the pool in which to run decryption tasks.
+	 * @param chunkSize the number of bytes decrypted by each task.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code chunkSize <= 0}.
+	 */
+	public ParallelDecryptor(CompiledKey key, ForkJoinPool pool, int chunkSize)
+	{
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(pool);
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException();
+		}
+		int horizon = key.getResynchronizationHorizon();
+		this.key = key;
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+		this.tracked = horizon < 0;
+		this.window = tracked ? key.getSize() / 2 + 1 : (horizon + 7) >>> 3;
+	}
+
+	/**
+	 * Decrypts the given ciphertext.
+	 *
+	 * @param iv the initialization vector.
+	 * @param ciphertext the data to decrypt.
+	 *
+	 * @return the decrypted data.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code iv}'s size doesn't match
+	 *	the size of the key.
+	 */
+	public byte[] decrypt(IV iv, byte[] ciphertext)
+	{
+		byte[] plaintext = new byte[ciphertext.length];
+		decrypt(iv, ciphertext, 0, ciphertext.length, plaintext, 0);
+		return plaintext;
+	}
+
+	/**
+	 * Decrypts {@code len} bytes of {@code in}, starting at {@code inOff},
+	 * and stores the result in {@code out}, starting at {@code outOff}. The
+	 * input and output regions must not overlap, unless they are the same.
+	 *
+	 * @param iv the initialization vector.
+	 * @param in the data to decrypt.
+	 * @param inOff the input offset.
+	 * @param len the number of bytes to decrypt.
+	 * @param out the output buffer.
+	 * @param outOff the output offset.
+	 *
+	 * @return the number of bytes stored in {@code out}, that is,
+	 *	{@code len}.
+	 *
+	 * @throws NullPointerException if {@code iv}, {@code in} or {@code out}
+	 *	is {@code null}.
+	 * @throws IllegalArgumentException if {@code iv}'s size doesn't match
+	 *	the size of the key.
+	 * @throws IndexOutOfBoundsException if {@code inOff}, {@code outOff}
+	 *	or {@code len} is negative, if {@code inOff + len} is greater
+	 *	than {@code in}'s length or if {@code outOff + len} is greater
+	 *	than {@code out}'s length.
+	 */
+	public int decrypt(IV iv, byte[] in, int inOff, int len, byte[] out,
+		int outOff)
+	{
+		checkBounds(in, inOff, len);
+		checkBounds(out, outOff, len);
+		run(iv, new ArrayJob(in, inOff, out, outOff), len);
+		return len;
+	}
+
+	/**
+	 * Decrypts all the remaining bytes of {@code src} and stores the result
+	 * in {@code dst}. Upon return, the position of {@code src} is equal to
+	 * its limit and the position of {@code dst} has been advanced by the
+	 * number of decrypted bytes. Both heap and direct buffers are supported.
+	 *
+	 * @param iv the initialization vector.
+	 * @param src the data to decrypt.
+	 * @param dst the output buffer.
+	 *
+	 * @return the number of decrypted bytes.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code iv}'s size doesn't match
+	 *	the size of the key or if {@code src} and {@code dst} are the same
+	 *	object.
+	 * @throws BufferOverflowException if {@code dst} has less remaining
+	 *	space than {@code src} has remaining bytes.
+	 * @throws java.nio.ReadOnlyBufferException if {@code dst} is read-only.
+	 */
+	public int decrypt(IV iv, ByteBuffer src, ByteBuffer dst)
+	{
+		if (src == dst) {
+			throw new IllegalArgumentException();
+		}
+		int len = src.remaining();
+		if (dst.isReadOnly()) {
+			throw new java.nio.ReadOnlyBufferException();
+		}
+		if (dst.remaining() < len) {
+			throw new BufferOverflowException();
+		}
+		run(iv, new BufferJob(src.slice(), dst.slice()), len);
+		src.position(src.limit());
+		dst.position(dst.position() + len);
+		return len;
+	}
+
+	/**
+	 * Decrypts the given file. The target file is created if it doesn't
+	 * exist and truncated if it does; it must not be the source file.
+	 *
+	 * @param iv the initialization vector.
+	 * @param source the file to decrypt.
+	 * @param target the file in which to write the decrypted data.
+	 *
+	 * @return the number of decrypted bytes.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code iv}'s size doesn't match
+	 *	the size of the key.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public long decrypt(IV iv, Path source, Path target) throws IOException
+	{
+		if (iv.getSize() != key.getSize()) {
+			throw new IllegalArgumentException();
+		}
+		try (FileChannel in = FileChannel.open(source,
+				StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(target,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			long len = in.size();
+			run(iv, new FileJob(in, out), len);
+			return len;
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	private void run(IV iv, Job job, long len)
+	{
+		if (iv.getSize() != key.getSize()) {
+			throw new IllegalArgumentException();
+		}
+		int chunks = (int) ((len + chunkSize - 1) / chunkSize);
+		/* Read before any decryption, in case the output is the input. */
+		byte[][] warmups = new byte[chunks][];
+		for (int k = 0; k < chunks; k++) {
+			long from = (long) k * chunkSize;
+			long start = Math.max(0L, from - window);
+			warmups[k] = new byte[(int) (from - start)];
+			job.read(start, warmups[k]);
+		}
+		List<Future<Chunk>> futures = new ArrayList<>(chunks);
+		for (int k = 0; k < chunks; k++) {
+			long from = (long) k * chunkSize;
+			long to = Math.min(len, from + chunkSize);
+			byte[] warmup = warmups[k];
+			boolean initial = from == warmup.length;
+			futures.add(pool.submit(() -> decrypt(iv, job, from, to, warmup,
+				initial)));
+		}
+		NashCipher previous = null;
+		try {
+			for (int k = 0; k < chunks; k++) {
+				Chunk chunk = futures.get(k).get();
+				if (chunk.synced) {
+					previous = chunk.cipher;
+				} else {
+					long from = (long) k * chunkSize;
+					long to = Math.min(len, from + chunkSize);
+					job.decrypt(previous, from, to);
+				}
+			}
+		} catch (InterruptedException ex) {
+			futures.forEach(f -> f.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(ex);
+		} catch (ExecutionException ex) {
+			futures.forEach(f -> f.cancel(true));
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private Chunk decrypt(IV iv, Job job, long from, long to, byte[] warmup,
+		boolean initial)
+	{
+		NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		boolean synced = initial || !tracked;
+		if (!synced) {
+			DependencyTracker deps = new DependencyTracker(key);
+			synced = deps.update(warmup, 0, warmup.length);
+		}
+		cipher.processInPlace(warmup, 0, warmup.length);
+		if (synced) {
+			job.decrypt(cipher, from, to);
+		}
+		return new Chunk(cipher, synced);
+	}
+
+	private static void checkBounds(byte[] bytes, int off, int len)
+	{
+		if (off < 0 || len < 0 || off > bytes.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	private static final class Chunk
+	{
+		final NashCipher cipher;
+		final boolean synced;
+
+		Chunk(NashCipher cipher, boolean synced)
+		{
+			this.cipher = cipher;
+			this.synced = synced;
+		}
+	}
+
+	/* A ciphertext source and plaintext destination. */
+	private interface Job
+	{
+		/* Reads buf.length bytes of ciphertext, starting at pos. */
+		void read(long pos, byte[] buf);
+
+		/* Decrypts the ciphertext between from and to. */
+		void decrypt(NashCipher cipher, long from, long to);
+	}
+
+	private static final class ArrayJob implements Job
+	{
+		private final byte[] in;
+		private final int inOff;
+		private final byte[] out;
+		private final int outOff;
+
+		ArrayJob(byte[] in, int inOff, byte[] out, int outOff)
+		{
+			this.in = in;
+			this.inOff = inOff;
+			this.out = out;
+			this.outOff = outOff;
+		}
+
+		@Override
+		public void read(long pos, byte[] buf)
+		{
+			System.arraycopy(in, inOff + (int) pos, buf, 0, buf.length);
+		}
+
+		@Override
+		public void decrypt(NashCipher cipher, long from, long to)
+		{
+			cipher.process(in, inOff + (int) from, (int) (to - from), out,
+				outOff + (int) from);
+		}
+	}
+
+	private static final class BufferJob implements Job
+	{
+		private final ByteBuffer src;
+		private final ByteBuffer dst;
+
+		BufferJob(ByteBuffer src, ByteBuffer dst)
+		{
+			this.src = src;
+			this.dst = dst;
+		}
+
+		@Override
+		public void read(long pos, byte[] buf)
+		{
+			ByteBuffer in = src.duplicate();
+			in.position((int) pos);
+			in.get(buf);
+		}
+
+		@Override
+		public void decrypt(NashCipher cipher, long from, long to)
+		{
+			ByteBuffer in = src.duplicate();
+			in.limit((int) to).position((int) from);
+			ByteBuffer out = dst.duplicate();
+			out.position((int) from);
+			cipher.process(in, out);
+		}
+	}
+
+	private static final class FileJob implements Job
+	{
+		private final FileChannel in;
+		private final FileChannel out;
+
+		FileJob(FileChannel in, FileChannel out)
+		{
+			this.in = in;
+			this.out = out;
+		}
+
+		@Override
+		public void read(long pos, byte[] buf)
+		{
+			ByteBuffer b = ByteBuffer.wrap(buf);
+			try {
+				while (b.hasRemaining()) {
+					if (in.read(b, pos + b.position()) < 0) {
+						throw new IOException("Unexpected end of file");
+					}
+				}
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		@Override
+		public void decrypt(NashCipher cipher, long from, long to)
+		{
+			byte[] buf = new byte[(int) (to - from)];
+			read(from, buf);
+			cipher.processInPlace(buf, 0, buf.length);
+			ByteBuffer b = ByteBuffer.wrap(buf);
+			try {
+				while (b.hasRemaining()) {
+					out.write(b, from + b.position());
+				}
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+	}
+}
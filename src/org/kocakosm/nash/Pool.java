@@ -0,0 +1,244 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import java.security.SecureRandom;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of pre-generated random {@link IV}s or {@link Key}s of a
+ * given size, kept filled by a background daemon thread, which tops the
+ * pool up whenever it gets half empty. Taking from the pool is lock-free
+ * and doesn't touch the random generator unless the pool is empty, in
+ * which case a value is generated synchronously. If the background thread
+ * fails to generate a value, it stops, and its failure is rethrown once
+ * the pool has been drained. Pools of different sizes are independent.
+ * Instances of this class are thread-safe.
+ *
+ * @param <T> the type of the pooled values.
+ *
+ * @author Osman Koçak
+ */
+public final class Pool<T> implements AutoCloseable
+{
+	/**
+	 * Creates a new pool of IVs and starts filling it.
+	 *
+	 * @param size the size of the IVs.
+	 * @param capacity the maximum number of IVs kept in the pool.
+	 *
+	 * @return the created pool.
+	 *
+	 * @throws IllegalArgumentException if {@code size <= 0} or if
+	 *	{@code capacity <= 0}.
+	 */
+	public static Pool<IV> ofIVs(int size, int capacity)
+	{
+		return ofIVs(size, capacity, Random.generator());
+	}
+
+	/**
+	 * Creates a new pool of IVs drawing their randomness from the given
+	 * generator, and starts filling it.
+	 *
+	 * @param size the size of the IVs.
+	 * @param capacity the maximum number of IVs kept in the pool.
+	 * @param random the random generator to use.
+	 *
+	 * @return the created pool.
+	 *
+	 * @throws NullPointerException if {@code random} is {@code null}.
+	 * @throws IllegalArgumentException if {@code size <= 0} or if
+	 *	{@code capacity <= 0}.
+	 */
+	public static Pool<IV> ofIVs(int size, int capacity, SecureRandom random)
+	{
+		Objects.requireNonNull(random);
+		checkSize(size);
+		return new Pool<>(() -> IV.create(size, random), capacity, "IV");
+	}
+
+	/**
+	 * Creates a new pool of keys and starts filling it.
+	 *
+	 * @param size the size of the keys.
+	 * @param capacity the maximum number of keys kept in the pool.
+	 *
+	 * @return the created pool.
+	 *
+	 * @throws IllegalArgumentException if {@code size <= 0} or if
+	 *	{@code capacity <= 0}.
+	 */
+	public static Pool<Key> ofKeys(int size, int capacity)
+	{
+		return ofKeys(size, capacity, Random.generator());
+	}
+
+	/**
+	 * Creates a new pool of keys drawing their randomness from the given
+	 * generator, and starts filling it.
+	 *
+	 * @param size the size of the keys.
+	 * @param capacity the maximum number of keys kept in the pool.
+	 * @param random the random generator to use.
+	 *
+	 * @return the created pool.
+	 *
+	 * @throws NullPointerException if {@code random} is {@code null}.
+	 * @throws IllegalArgumentException if {@code size <= 0} or if
+	 *	{@code capacity <= 0}.
+	 */
+	public static Pool<Key> ofKeys(int size, int capacity, SecureRandom random)
+	{
+		Objects.requireNonNull(random);
+		checkSize(size);
+		return new Pool<>(() -> Key.create(size, random), capacity, "Key");
+	}
+
+	private static void checkSize(int size)
+	{
+		if (size <= 0) {
+			throw new IllegalArgumentException();
+		}
+	}
+
+	private final Supplier<T> generator;
+	private final int capacity;
+	private final int lowWaterMark;
+	private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger count = new AtomicInteger();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final Thread filler;
+	private volatile boolean closed;
+	private volatile Throwable failure;
+
+	private Pool(Supplier<T> generator, int capacity, String name)
+	{
+		if (capacity <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.generator = generator;
+		this.capacity = capacity;
+		this.lowWaterMark = capacity / 2;
+		this.filler = new Thread(this::fill, "nash-" + name + "-pool");
+		filler.setDaemon(true);
+		filler.start();
+	}
+
+	/**
+	 * Takes a value from this pool, or generates one on the calling thread
+	 * if this pool is empty.
+	 *
+	 * @return a new random value.
+	 *
+	 * @throws IllegalStateException if this pool is empty and has failed
+	 *	to generate a value in the background, the exception's cause
+	 *	being that failure.
+	 */
+	public T take()
+	{
+		T value = queue.poll();
+		if (value == null) {
+			Throwable t = failure;
+			if (t != null) {
+				throw new IllegalStateException(t);
+			}
+			misses.increment();
+			LockSupport.unpark(filler);
+			return generator.get();
+		}
+		hits.increment();
+		if (count.decrementAndGet() <= lowWaterMark) {
+			LockSupport.unpark(filler);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the number of values currently ready in this pool.
+	 *
+	 * @return the number of ready values.
+	 */
+	public int getSize()
+	{
+		return count.get();
+	}
+
+	/**
+	 * Returns the maximum number of values kept in this pool.
+	 *
+	 * @return this pool's capacity.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of values taken from this pool that were ready.
+	 *
+	 * @return the number of pool hits.
+	 */
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of values that had to be generated synchronously
+	 * because this pool was empty.
+	 *
+	 * @return the number of pool misses.
+	 */
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * Stops filling this pool. Values already in the pool can still be
+	 * taken, after which values are generated synchronously. Calling this
+	 * method more than once has no effect.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		LockSupport.unpark(filler);
+	}
+
+	/*
+	 * The filler is the queue's only producer, so checking the count before
+	 * adding is enough to keep the queue bounded.
+	 */
+	private void fill()
+	{
+		try {
+			while (!closed) {
+				while (!closed && count.get() < capacity) {
+					queue.offer(generator.get());
+					count.incrementAndGet();
+				}
+				LockSupport.park(this);
+			}
+		} catch (RuntimeException | Error e) {
+			failure = e;
+		}
+	}
+}
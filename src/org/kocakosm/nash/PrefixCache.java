@@ -0,0 +1,261 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+import org.kocakosm.nash.NashCipher.Snapshot;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of cipher {@linkplain Snapshot snapshots} taken after
+ * processing message prefixes, so that messages starting with the same
+ * header only pay for its processing once. Entries are looked up by key, IV,
+ * mode and prefix, the prefix's hash being computed first, and then compared
+ * in full, which is still much cheaper than processing it. Keys are
+ * compared by value, but snapshots and forks always use the caller's
+ * compiled key, specialized or not. When the cache is full, the least
+ * recently used entries are evicted. As with {@link KeyCache}, prefixes
+ * are processed outside of the cache's lock. Instances of this class are
+ * thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class PrefixCache
+{
+	private final int capacity;
+	private final Map<Entry, Entry> entries;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a new {@code PrefixCache}.
+	 *
+	 * @param capacity the maximum number of cached prefixes.
+	 *
+	 * @throws IllegalArgumentException if {@code capacity <= 0}.
+	 */
+	public PrefixCache(int capacity)
+	{
+		if (capacity <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the snapshot of a cipher created with the given key, IV and
+	 * mode, taken after processing the given prefix.
+	 *
+	 * @param key the cipher's key.
+	 * @param iv the cipher's initialization vector.
+	 * @param mode the cipher's mode.
+	 * @param prefix the prefix, which is copied if it has to be cached.
+	 *
+	 * @return the snapshot of the cipher's state after {@code prefix}.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 */
+	public Snapshot get(CompiledKey key, IV iv, Mode mode, byte[] prefix)
+	{
+		Snapshot snapshot = entry(key, iv, mode, prefix).snapshot;
+		if (snapshot.getKey() == key) {
+			return snapshot;
+		}
+		return new Snapshot(key, mode, snapshot.getState());
+	}
+
+	/**
+	 * Creates a cipher with the given key, IV and mode, that has already
+	 * processed the given prefix, and writes the processed prefix into the
+	 * given buffer. This is equivalent to processing {@code prefix} with a
+	 * new cipher, only faster when the prefix is cached.
+	 *
+	 * @param key the cipher's key.
+	 * @param iv the cipher's initialization vector.
+	 * @param mode the cipher's mode.
+	 * @param prefix the prefix, which is copied if it has to be cached.
+	 * @param out the buffer in which to write the processed prefix.
+	 * @param outOff the offset at which to write the processed prefix.
+	 *
+	 * @return a cipher whose state is the one following {@code prefix}.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 * @throws IndexOutOfBoundsException if {@code out} is too small to
+	 *	hold the processed prefix at {@code outOff}.
+	 */
+	public NashCipher fork(CompiledKey key, IV iv, Mode mode, byte[] prefix,
+		byte[] out, int outOff)
+	{
+		Objects.requireNonNull(out);
+		if (outOff < 0 || outOff > out.length - prefix.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		Entry entry = entry(key, iv, mode, prefix);
+		System.arraycopy(entry.output, 0, out, outOff, entry.output.length);
+		return new NashCipher(key, entry.snapshot.getState(), mode);
+	}
+
+	/**
+	 * Removes all the prefixes from this cache.
+	 */
+	public void clear()
+	{
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of prefixes in this cache.
+	 *
+	 * @return the number of cached prefixes.
+	 */
+	public int size()
+	{
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Returns the maximum number of prefixes in this cache.
+	 *
+	 * @return the cache's capacity.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of lookups that found their prefix in this cache.
+	 *
+	 * @return the number of cache hits.
+	 */
+	public long getHits()
+	{
+		synchronized (entries) {
+			return hits;
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that had to process their prefix.
+	 *
+	 * @return the number of cache misses.
+	 */
+	public long getMisses()
+	{
+		synchronized (entries) {
+			return misses;
+		}
+	}
+
+	/**
+	 * Returns the number of prefixes evicted from this cache.
+	 *
+	 * @return the number of evictions.
+	 */
+	public long getEvictions()
+	{
+		synchronized (entries) {
+			return evictions;
+		}
+	}
+
+	private Entry entry(CompiledKey key, IV iv, Mode mode, byte[] prefix)
+	{
+		Objects.requireNonNull(mode);
+		Entry lookup = new Entry(key.getKey(), iv, mode, prefix);
+		synchronized (entries) {
+			Entry cached = entries.get(lookup);
+			if (cached != null) {
+				hits++;
+				return cached;
+			}
+			misses++;
+		}
+		NashCipher cipher = new NashCipher(key, iv, mode);
+		Entry entry = new Entry(key.getKey(), iv, mode, prefix.clone());
+		entry.output = cipher.process(entry.prefix);
+		entry.snapshot = cipher.snapshot();
+		synchronized (entries) {
+			Entry cached = entries.putIfAbsent(entry, entry);
+			if (cached != null) {
+				return cached;
+			}
+			Iterator<Entry> lru = entries.keySet().iterator();
+			while (entries.size() > capacity) {
+				lru.next();
+				lru.remove();
+				evictions++;
+			}
+		}
+		return entry;
+	}
+
+	/** A cached prefix, which is also its own lookup key. */
+	private static final class Entry
+	{
+		final Key key;
+		final IV iv;
+		final Mode mode;
+		final byte[] prefix;
+		final int hash;
+		byte[] output;
+		Snapshot snapshot;
+
+		Entry(Key key, IV iv, Mode mode, byte[] prefix)
+		{
+			this.key = key;
+			this.iv = iv;
+			this.mode = mode;
+			this.prefix = prefix;
+			int h = key.hashCode();
+			h = 31 * h + iv.hashCode();
+			h = 31 * h + mode.hashCode();
+			this.hash = 31 * h + Arrays.hashCode(prefix);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (o == this) {
+				return true;
+			}
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			Entry e = (Entry) o;
+			return hash == e.hash && mode == e.mode
+				&& Arrays.equals(prefix, e.prefix) && iv.equals(e.iv)
+				&& key.equals(e.key);
+		}
+	}
+}
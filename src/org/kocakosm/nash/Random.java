@@ -11,30 +11,105 @@
 
 package org.kocakosm.nash;
 
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Arrays;
 
 /**
- * Randomness utility methods.
+ * Randomness utility methods. Random values are drawn in bulk from the
+ * underlying generator, {@code SecureRandom}'s per-call overhead being much
+ * higher than the cost of the bits themselves. The default generator is
+ * only created when first needed, so that code which merely decrypts never
+ * waits for it to be seeded. Its algorithm may be set through the
+ * {@value #PROPERTY} system property; it defaults to
+ * {@code NativePRNGNonBlocking} where available.
  *
  * @author Osman Koçak
  */
 final class Random
 {
-	private static final SecureRandom PRNG = new SecureRandom();
+	/** The name of the system property setting the generator's algorithm. */
+	static final String PROPERTY = "org.kocakosm.nash.random";
+
+	private static final String DEFAULT_ALGORITHM = "NativePRNGNonBlocking";
+	private static final int BUFFER_SIZE = 4096;
+
+	private static final class Holder
+	{
+		static final SecureRandom PRNG;
+		static final RuntimeException ERROR;
+
+		static {
+			SecureRandom prng = null;
+			RuntimeException error = null;
+			try {
+				prng = create(System.getProperty(PROPERTY));
+			} catch (RuntimeException ex) {
+				error = ex;
+			}
+			PRNG = prng;
+			ERROR = error;
+		}
+	}
+
+	/**
+	 * Returns the default random generator, creating it on first call.
+	 *
+	 * @return the default random generator.
+	 *
+	 * @throws IllegalStateException if the algorithm set through the
+	 *	{@value #PROPERTY} system property is not available.
+	 */
+	static SecureRandom generator()
+	{
+		if (Holder.PRNG == null) {
+			throw new IllegalStateException(Holder.ERROR);
+		}
+		return Holder.PRNG;
+	}
+
+	/**
+	 * Creates a new random generator.
+	 *
+	 * @param algorithm the generator's algorithm, or {@code null} to use
+	 *	{@code NativePRNGNonBlocking}, or the platform's default if it is
+	 *	not available.
+	 *
+	 * @return the created generator.
+	 *
+	 * @throws IllegalArgumentException if {@code algorithm} is not
+	 *	available.
+	 */
+	static SecureRandom create(String algorithm)
+	{
+		try {
+			return SecureRandom.getInstance(algorithm == null
+				? DEFAULT_ALGORITHM : algorithm);
+		} catch (NoSuchAlgorithmException ex) {
+			if (algorithm != null) {
+				throw new IllegalArgumentException(ex);
+			}
+			return new SecureRandom();
+		}
+	}
 
 	/**
-	 * Generates random bits and returns them as a {@code boolean} array.
+	 * Generates random bits from the given generator and returns them as a
+	 * {@code boolean} array.
 	 *
+	 * @param prng the random generator to use.
 	 * @param n the number of bits to return.
 	 *
+	 * @throws NullPointerException if {@code prng} is {@code null}.
 	 * @throws NegativeArraySizeException if {@code n} is negative.
 	 */
-	static boolean[] nextBits(int n)
+	static boolean[] nextBits(SecureRandom prng, int n)
 	{
 		boolean[] bits = new boolean[n];
+		byte[] bytes = new byte[(n + 7) >>> 3];
+		prng.nextBytes(bytes);
 		for (int i = 0; i < n; i++) {
-			bits[i] = PRNG.nextBoolean();
+			bits[i] = ((bytes[i >>> 3] >>> (i & 7)) & 1) != 0;
 		}
 		return bits;
 	}
@@ -42,20 +117,38 @@ final class Random
 	/**
 	 * Shuffles the given values and returns them in a new array using the
 	 * optimized version of the Fisher-Yates shuffle algorithm (Fisher,
-	 * Yates, Durstenfeld, Knuth).
+	 * Yates, Durstenfeld, Knuth). Random indices are drawn without bias
+	 * from buffered 32-bit words (Lemire's multiply-and-reject method).
 	 *
+	 * @param prng the random generator to use.
 	 * @param values the values to shuffle.
 	 *
 	 * @return the shuffled array.
 	 *
-	 * @throws NullPointerException if {@code values} is {@code null}.
+	 * @throws NullPointerException if any argument is {@code null}.
 	 */
-	static int[] shuffle(int... values)
+	static int[] shuffle(SecureRandom prng, int... values)
 	{
 		int n = values.length;
 		int[] shuffled = Arrays.copyOf(values, n);
+		byte[] buf = new byte[Math.min(BUFFER_SIZE, 4 * n)];
+		int pos = buf.length;
 		for (int i = n; i > 1; i--) {
-			swap(shuffled, i - 1, PRNG.nextInt(i));
+			long bound = i;
+			long threshold = (1L << 32) % bound;
+			long m;
+			do {
+				if (pos == buf.length) {
+					prng.nextBytes(buf);
+					pos = 0;
+				}
+				long r = (buf[pos] & 0xFFL) | (buf[pos + 1] & 0xFFL) << 8
+					| (buf[pos + 2] & 0xFFL) << 16
+					| (buf[pos + 3] & 0xFFL) << 24;
+				pos += 4;
+				m = r * bound;
+			} while ((m & 0xFFFFFFFFL) < threshold);
+			swap(shuffled, i - 1, (int) (m >>> 32));
 		}
 		return shuffled;
 	}
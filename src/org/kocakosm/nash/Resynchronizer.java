@@ -0,0 +1,156 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Moves decryption ciphers to arbitrary positions of a message. Nash's
+ * decryption state only depends on the ciphertext, so the state at a given
+ * position can be rebuilt by decrypting a window of the preceding ciphertext
+ * only. The window's length is the key's resynchronization horizon, if it has
+ * one (see {@link CompiledKey#getResynchronizationHorizon()}). Otherwise, the
+ * dependency of the state on its unknown initial value is tracked during the
+ * replay and the window is doubled until the state no longer depends on it,
+ * or until it reaches the start of the message. Instances of this class are
+ * immutable.
+ *
+ * @author Osman Koçak
+ */
+public final class Resynchronizer
+{
+	/**
+	 * Random access source of ciphertext.
+	 */
+	@FunctionalInterface
+	public interface Ciphertext
+	{
+		/**
+		 * Reads {@code len} bytes of ciphertext, starting at the given
+		 * position, into {@code buf}, starting at index {@code 0}.
+		 *
+		 * @param pos the position of the first byte to read.
+		 * @param buf the buffer into which the data are read.
+		 * @param len the number of bytes to read.
+		 *
+		 * @throws java.io.EOFException if the ciphertext has less than
+		 *	{@code pos + len} bytes.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		void read(long pos, byte[] buf, int len) throws IOException;
+	}
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final CompiledKey key;
+	private final IV iv;
+	private final int window;
+	private final boolean tracked;
+
+	/**
+	 * Creates a new {@code Resynchronizer}.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector of the messages.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 */
+	public Resynchronizer(CompiledKey key, IV iv)
+	{
+		if (key.getSize() != iv.getSize()) {
+			throw new IllegalArgumentException();
+		}
+		int horizon = key.getResynchronizationHorizon();
+		this.key = key;
+		this.iv = iv;
+		this.tracked = horizon < 0;
+		this.window = tracked ? key.getSize() / 2 + 1 : (horizon + 7) >>> 3;
+	}
+
+	/**
+	 * Returns the length, in bytes, of the first ciphertext window replayed
+	 * by {@link #seek(NashCipher, long, long, Ciphertext)}. Moving forward
+	 * by less than that is done by decrypting the data in between.
+	 *
+	 * @return the length of the first replayed window.
+	 */
+	public int getWindow()
+	{
+		return window;
+	}
+
+	/**
+	 * Moves the given decryption cipher from one position of a message to
+	 * another. The cipher must have been created with this instance's key
+	 * and IV, in decryption mode, and its state must be the one it has after
+	 * having decrypted the first {@code from} bytes of the message.
+	 *
+	 * @param cipher the cipher to move.
+	 * @param from the cipher's current position.
+	 * @param to the target position.
+	 * @param ciphertext the message's ciphertext.
+	 *
+	 * @throws NullPointerException if {@code cipher} or {@code ciphertext}
+	 *	is {@code null}.
+	 * @throws IllegalArgumentException if {@code from} or {@code to} is
+	 *	negative.
+	 * @throws java.io.EOFException if the message has less than {@code to}
+	 *	bytes.
+	 * @throws IOException if the ciphertext can't be read.
+	 */
+	public void seek(NashCipher cipher, long from, long to,
+		Ciphertext ciphertext) throws IOException
+	{
+		Objects.requireNonNull(cipher);
+		Objects.requireNonNull(ciphertext);
+		if (from < 0 || to < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (to >= from && to - from <= window) {
+			replay(cipher, from, to, ciphertext, null);
+			return;
+		}
+		long w = window;
+		while (true) {
+			long start = Math.max(0L, to - w);
+			cipher.reset(iv);
+			if (!tracked || start == 0L) {
+				replay(cipher, start, to, ciphertext, null);
+				return;
+			}
+			DependencyTracker tracker = new DependencyTracker(key);
+			replay(cipher, start, to, ciphertext, tracker);
+			if (tracker.isSynchronized()) {
+				return;
+			}
+			w <<= 1;
+		}
+	}
+
+	private void replay(NashCipher cipher, long from, long to,
+		Ciphertext ciphertext, DependencyTracker tracker) throws IOException
+	{
+		byte[] buf = new byte[(int) Math.min(BUFFER_SIZE, to - from)];
+		for (long pos = from; pos < to; ) {
+			int len = (int) Math.min(buf.length, to - pos);
+			ciphertext.read(pos, buf, len);
+			if (tracker != null) {
+				tracker.update(buf, 0, len);
+			}
+			cipher.processInPlace(buf, 0, len);
+			pos += len;
+		}
+	}
+}
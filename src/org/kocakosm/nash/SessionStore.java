@@ -0,0 +1,448 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Off-heap store of cipher sessions sharing the same key and mode, meant for
+ * large numbers of mostly idle sessions. Instead of a {@link NashCipher}
+ * each, sessions only take {@code 8 * ceil(n / 64)} bytes, {@code n} being
+ * the key's size, in large direct buffers (slabs) allocated on demand, plus
+ * 33 bits of heap. The number of sessions is thus bounded by the available
+ * memory, not by the garbage collector.
+ *
+ * <p>Sessions are identified by {@code long}s: the low 32 bits are the
+ * index of the session's slot, which is reused once the session has been
+ * closed or resumed, and the high 32 bits are the slot's generation, which
+ * is incremented whenever the slot is freed. An id thus becomes invalid as
+ * soon as its session ends, and can't be used to access a later session
+ * of the same slot, unless the slot has been reused 2<sup>32</sup> times
+ * meanwhile. Data are processed directly against a session's slot: its
+ * state is loaded into a working cipher, which then processes the data,
+ * and is stored back. Freed slots are chained together in the slabs
+ * themselves, and reused before any new slab is allocated. Slabs are never
+ * released.
+ *
+ * <p>Slabs are direct {@link ByteBuffer}s, not {@code MemorySegment}s: the
+ * foreign memory API is only final since Java 22, while this library targets
+ * Java 8, with an optional Java 17 tree in which it is still incubating.
+ * Buffers are limited to 2 GiB each, which {@code int} slab sizes already
+ * guarantee, and can't be freed on demand: their memory is only reclaimed
+ * once the store itself has been garbage collected.
+ *
+ * <p>Instances of this class are thread-safe. Sessions are spread over a
+ * fixed number of stripes, each one with its own working cipher and lock,
+ * so that sessions of different stripes are processed in parallel while
+ * calls on the same session are serialized.
+ *
+ * @author Osman Koçak
+ */
+public final class SessionStore
+{
+	/** The default size of the slabs, in bytes. */
+	public static final int DEFAULT_SLAB_SIZE = 1 << 24;
+
+	/** The default number of stripes. */
+	public static final int DEFAULT_STRIPES = 16;
+
+	private final CompiledKey key;
+	private final Mode mode;
+	private final IV zero;
+	private final int stride;
+	private final int slabSessions;
+	private final NashCipher[] stripes;
+	private final Object lock = new Object();
+	private volatile Slab[] slabs = new Slab[0];
+	private int allocated;
+	private int free = -1;
+	private int size;
+
+	/**
+	 * Creates a new {@code SessionStore}, using slabs of
+	 * {@link #DEFAULT_SLAB_SIZE} bytes and {@link #DEFAULT_STRIPES} stripes.
+	 *
+	 * @param key the sessions' compiled secret key.
+	 * @param mode the sessions' operation mode.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 */
+	public SessionStore(CompiledKey key, Mode mode)
+	{
+		this(key, mode, DEFAULT_SLAB_SIZE, DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Creates a new {@code SessionStore}.
+	 *
+	 * @param key the sessions' compiled secret key.
+	 * @param mode the sessions' operation mode.
+	 * @param slabSize the size of the slabs, in bytes.
+	 * @param stripes the number of stripes.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code slabSize} is too small to
+	 *	hold a single session or if {@code stripes} is not positive.
+	 */
+	public SessionStore(CompiledKey key, Mode mode, int slabSize,
+		int stripes)
+	{
+		Objects.requireNonNull(mode);
+		int stride = CompiledKey.words(key.getSize()) << 3;
+		if (slabSize < stride || stripes <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.key = key;
+		this.mode = mode;
+		this.zero = new IV(new boolean[key.getSize()]);
+		this.stride = stride;
+		this.slabSessions = slabSize / stride;
+		this.stripes = new NashCipher[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new NashCipher(key, zero, mode);
+		}
+	}
+
+	/**
+	 * Opens a new session.
+	 *
+	 * @param iv the session's initialization vector.
+	 *
+	 * @return the session's id.
+	 *
+	 * @throws NullPointerException if {@code iv} is {@code null}.
+	 * @throws IllegalArgumentException if {@code iv}'s size doesn't match
+	 *	the size of the key.
+	 * @throws IllegalStateException if there are already
+	 *	{@link Integer#MAX_VALUE} sessions.
+	 */
+	public long open(IV iv)
+	{
+		if (iv.getSize() != key.getSize()) {
+			throw new IllegalArgumentException();
+		}
+		int n = allocate();
+		Slab slab = slab(n);
+		NashCipher cipher = stripe(n);
+		synchronized (cipher) {
+			cipher.reset(iv);
+			cipher.store(slab.buffer, offset(n));
+			return id(n, slab.open(slot(n)));
+		}
+	}
+
+	/**
+	 * Suspends the given cipher's session, that is, stores its current
+	 * state in this store as a new session. The cipher may then be dropped.
+	 *
+	 * @param cipher the cipher to suspend.
+	 *
+	 * @return the session's id.
+	 *
+	 * @throws NullPointerException if {@code cipher} is {@code null}.
+	 * @throws IllegalArgumentException if {@code cipher} doesn't use this
+	 *	store's key and mode.
+	 * @throws IllegalStateException if there are already
+	 *	{@link Integer#MAX_VALUE} sessions.
+	 */
+	public long suspend(NashCipher cipher)
+	{
+		cipher.checkCompatible(key, mode);
+		int n = allocate();
+		Slab slab = slab(n);
+		synchronized (stripe(n)) {
+			cipher.store(slab.buffer, offset(n));
+			return id(n, slab.open(slot(n)));
+		}
+	}
+
+	/**
+	 * Resumes the given session, that is, removes it from this store and
+	 * returns a cipher in the session's state.
+	 *
+	 * @param id the session's id.
+	 *
+	 * @return a cipher in the session's state.
+	 *
+	 * @throws IllegalArgumentException if there is no such session.
+	 */
+	public NashCipher resume(long id)
+	{
+		NashCipher cipher = new NashCipher(key, zero, mode);
+		int n = (int) id;
+		Slab slab = slab(n);
+		synchronized (stripe(n)) {
+			slab.close(slot(n), generation(id));
+			cipher.load(slab.buffer, offset(n));
+		}
+		release(n);
+		return cipher;
+	}
+
+	/**
+	 * Closes the given session, whose id then becomes invalid.
+	 *
+	 * @param id the session's id.
+	 *
+	 * @throws IllegalArgumentException if there is no such session.
+	 */
+	public void close(long id)
+	{
+		int n = (int) id;
+		Slab slab = slab(n);
+		synchronized (stripe(n)) {
+			slab.close(slot(n), generation(id));
+		}
+		release(n);
+	}
+
+	/**
+	 * Returns whether the given session is open.
+	 *
+	 * @param id the session's id.
+	 *
+	 * @return whether there is an open session with the given id.
+	 */
+	public boolean isOpen(long id)
+	{
+		int n = (int) id;
+		Slab[] s = slabs;
+		return n >= 0 && n / slabSessions < s.length
+			&& s[n / slabSessions].isOpen(slot(n), generation(id));
+	}
+
+	/**
+	 * Processes {@code len} bytes of {@code in}, starting at {@code inOff},
+	 * with the given session, and stores the result in {@code out}, starting
+	 * at {@code outOff}, as {@link NashCipher#process(byte[], int, int,
+	 * byte[], int)} does.
+	 *
+	 * @param id the session's id.
+	 * @param in the data to process.
+	 * @param inOff the input offset.
+	 * @param len the number of bytes to process.
+	 * @param out the output buffer.
+	 * @param outOff the output offset.
+	 *
+	 * @return the number of bytes stored in {@code out}, that is,
+	 *	{@code len}.
+	 *
+	 * @throws NullPointerException if {@code in} or {@code out} is
+	 *	{@code null}.
+	 * @throws IllegalArgumentException if there is no such session.
+	 * @throws IndexOutOfBoundsException if {@code inOff}, {@code outOff}
+	 *	or {@code len} is negative, if {@code inOff + len} is greater
+	 *	than {@code in}'s length or if {@code outOff + len} is greater
+	 *	than {@code out}'s length.
+	 */
+	public int process(long id, byte[] in, int inOff, int len, byte[] out,
+		int outOff)
+	{
+		int n = (int) id;
+		Slab slab = slab(n);
+		int offset = offset(n);
+		NashCipher cipher = stripe(n);
+		synchronized (cipher) {
+			slab.check(slot(n), generation(id));
+			cipher.load(slab.buffer, offset);
+			cipher.process(in, inOff, len, out, outOff);
+			cipher.store(slab.buffer, offset);
+		}
+		return len;
+	}
+
+	/**
+	 * Processes all the remaining bytes of {@code src} with the given
+	 * session and stores the result in {@code dst}, as
+	 * {@link NashCipher#process(ByteBuffer, ByteBuffer)} does.
+	 *
+	 * @param id the session's id.
+	 * @param src the data to process.
+	 * @param dst the buffer in which to store the processed data.
+	 *
+	 * @return the number of processed bytes.
+	 *
+	 * @throws NullPointerException if {@code src} or {@code dst} is
+	 *	{@code null}.
+	 * @throws IllegalArgumentException if there is no such session, or if
+	 *	{@code src} and {@code dst} are the same buffer.
+	 * @throws java.nio.BufferOverflowException if {@code dst} doesn't
+	 *	have enough remaining space.
+	 * @throws java.nio.ReadOnlyBufferException if {@code dst} is
+	 *	read-only.
+	 */
+	public int process(long id, ByteBuffer src, ByteBuffer dst)
+	{
+		int n = (int) id;
+		Slab slab = slab(n);
+		int offset = offset(n);
+		NashCipher cipher = stripe(n);
+		synchronized (cipher) {
+			slab.check(slot(n), generation(id));
+			cipher.load(slab.buffer, offset);
+			int processed = cipher.process(src, dst);
+			cipher.store(slab.buffer, offset);
+			return processed;
+		}
+	}
+
+	/**
+	 * Returns the number of open sessions.
+	 *
+	 * @return the number of open sessions.
+	 */
+	public int size()
+	{
+		synchronized (lock) {
+			return size;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes allocated off-heap by this store.
+	 *
+	 * @return the total size of this store's slabs.
+	 */
+	public long getAllocatedBytes()
+	{
+		return (long) slabs.length * slabSessions * stride;
+	}
+
+	private int allocate()
+	{
+		synchronized (lock) {
+			int n = free;
+			if (n >= 0) {
+				free = (int) slab(n).buffer.getLong(offset(n));
+			} else {
+				if (allocated == Integer.MAX_VALUE) {
+					throw new IllegalStateException();
+				}
+				n = allocated++;
+				if (n / slabSessions == slabs.length) {
+					Slab[] s = Arrays.copyOf(slabs, slabs.length + 1);
+					s[slabs.length] = new Slab(slabSessions, stride);
+					slabs = s;
+				}
+			}
+			size++;
+			return n;
+		}
+	}
+
+	private void release(int n)
+	{
+		synchronized (lock) {
+			slab(n).buffer.putLong(offset(n), free);
+			free = n;
+			size--;
+		}
+	}
+
+	private Slab slab(int n)
+	{
+		Slab[] s = slabs;
+		if (n < 0 || n / slabSessions >= s.length) {
+			throw new IllegalArgumentException();
+		}
+		return s[n / slabSessions];
+	}
+
+	private int slot(int n)
+	{
+		return n % slabSessions;
+	}
+
+	private int offset(int n)
+	{
+		return slot(n) * stride;
+	}
+
+	private NashCipher stripe(int n)
+	{
+		return stripes[n % stripes.length];
+	}
+
+	private static long id(int n, int generation)
+	{
+		return (long) generation << 32 | n;
+	}
+
+	private static int generation(long id)
+	{
+		return (int) (id >>> 32);
+	}
+
+	/**
+	 * A direct buffer holding the packed states of a fixed number of
+	 * sessions, along with a bit per session telling whether it is open
+	 * and the generation of each slot. Slots of different stripes share
+	 * words of open bits, hence atomic updates. Generations are only
+	 * written under their stripe's lock, but are read without it by
+	 * {@link SessionStore#isOpen(long)}.
+	 */
+	private static final class Slab
+	{
+		final ByteBuffer buffer;
+		final AtomicLongArray open;
+		final AtomicIntegerArray generations;
+
+		Slab(int sessions, int stride)
+		{
+			this.buffer = ByteBuffer.allocateDirect(sessions * stride)
+				.order(ByteOrder.nativeOrder());
+			this.open = new AtomicLongArray(CompiledKey.words(sessions));
+			this.generations = new AtomicIntegerArray(sessions);
+		}
+
+		boolean isOpen(int slot, int generation)
+		{
+			return (open.get(slot >>> 6) & (1L << slot)) != 0L
+				&& generations.get(slot) == generation;
+		}
+
+		void check(int slot, int generation)
+		{
+			if (!isOpen(slot, generation)) {
+				throw new IllegalArgumentException();
+			}
+		}
+
+		int open(int slot)
+		{
+			long bits;
+			do {
+				bits = open.get(slot >>> 6);
+			} while (!open.compareAndSet(slot >>> 6, bits,
+				bits | (1L << slot)));
+			return generations.get(slot);
+		}
+
+		void close(int slot, int generation)
+		{
+			check(slot, generation);
+			long bits;
+			do {
+				bits = open.get(slot >>> 6);
+			} while (!open.compareAndSet(slot >>> 6, bits,
+				bits & ~(1L << slot)));
+			generations.incrementAndGet(slot);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Packed engine running permutation steps generated specifically for its key
+ * (see {@link StepCompiler}). Instances of this class are not thread-safe.
+ *
+ * @author Osman Koçak
+ */
+final class SpecializedEngine extends PackedEngine
+{
+	private final BiConsumer<long[], long[]> red;
+	private final BiConsumer<long[], long[]> blue;
+
+	/**
+	 * Creates a new {@code SpecializedEngine}.
+	 *
+	 * @param key the compiled secret key, which must be specialized.
+	 * @param iv the initialization vector.
+	 * @param mode the operation mode.
+	 */
+	SpecializedEngine(CompiledKey key, IV iv, Mode mode)
+	{
+		super(key, iv, mode);
+		this.red = key.redStep();
+		this.blue = key.blueStep();
+	}
+
+	@Override
+	void permute(int bit, long[] s, long[] n)
+	{
+		(bit == 0 ? blue : red).accept(s, n);
+	}
+}
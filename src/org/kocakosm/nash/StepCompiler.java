@@ -0,0 +1,330 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Generates, for a given gather table, a class whose code performs exactly
+ * that permuter step. The generated code has no loop and no table lookup:
+ * the previous state's words are held in local variables and each new word
+ * is computed with constant shifts and masks, which the JIT compiles to
+ * straight-line machine code. Generated steps take the previous state as
+ * first argument and write the new state into the second one, leaving its bit
+ * 0 cleared.
+ *
+ * @author Osman Koçak
+ */
+final class StepCompiler
+{
+	/*
+	 * HotSpot doesn't JIT-compile methods larger than 8000 bytes of
+	 * bytecode (-XX:HugeMethodLimit), such methods would stay interpreted
+	 * and be much slower than the generic loop.
+	 */
+	private static final int MAX_CODE_LENGTH = 8000;
+
+	/* Each bit needs at least 8 bytes of code, don't even try above that. */
+	private static final int MAX_KEY_SIZE = MAX_CODE_LENGTH / 8;
+
+	private static final String INTERFACE = "java/util/function/BiConsumer";
+	private static final String PACKAGE = "org/kocakosm/nash/generated/";
+	private static final AtomicLong COUNTER = new AtomicLong();
+
+	/**
+	 * Generates the step code for the given gather and complementation
+	 * tables.
+	 *
+	 * @param size the permuter's size.
+	 * @param sources the gather table.
+	 * @param bits the packed complementation table.
+	 *
+	 * @return the generated step, or {@code null} if the permuter is too
+	 *	large for its step to be compiled.
+	 */
+	static BiConsumer<long[], long[]> compile(int size, int[] sources,
+		long[] bits)
+	{
+		if (size > MAX_KEY_SIZE) {
+			return null;
+		}
+		String name = PACKAGE + "Step" + COUNTER.incrementAndGet();
+		byte[] code = new StepCompiler(name).generate(size, sources, bits);
+		if (code == null) {
+			return null;
+		}
+		try {
+			Class<?> c = new Loader().define(name.replace('/', '.'), code);
+			@SuppressWarnings("unchecked")
+			BiConsumer<long[], long[]> step = (BiConsumer<long[], long[]>)
+				c.getConstructor().newInstance();
+			return step;
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static final class Loader extends ClassLoader
+	{
+		Loader()
+		{
+			super(StepCompiler.class.getClassLoader());
+		}
+
+		Class<?> define(String name, byte[] b)
+		{
+			return defineClass(name, b, 0, b.length);
+		}
+	}
+
+	private final String name;
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private final DataOutputStream cp = new DataOutputStream(pool);
+	private final Map<Object, Integer> constants = new HashMap<>();
+	private int count = 1;
+
+	private StepCompiler(String name)
+	{
+		this.name = name;
+	}
+
+	private byte[] generate(int size, int[] sources, long[] bits)
+	{
+		try {
+			byte[] code = code(size, sources, bits);
+			if (code.length > MAX_CODE_LENGTH) {
+				return null;
+			}
+			return classFile(code, local(bits.length));
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/*
+	 * accept(Object, Object):
+	 *   long[] s = (long[]) a1; long[] n = (long[]) a2;
+	 *   long s0 = s[0], s1 = s[1], ...;
+	 *   n[w] = bits[w] ^ ((s_k >>> d) & m) ^ ((s_k << d) & m) ^ ...;
+	 */
+	private byte[] code(int size, int[] sources, long[] bits)
+		throws IOException
+	{
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buf);
+		int array = classConstant("[J");
+		for (int a = 1; a <= 2; a++) {
+			out.writeByte(0x2a + a);	/* aload_<a> */
+			out.writeByte(0xc0);		/* checkcast */
+			out.writeShort(array);
+			out.writeByte(0x4b + a);	/* astore_<a> */
+		}
+		for (int k = 0; k < bits.length; k++) {
+			out.writeByte(0x2b);		/* aload_1 */
+			pushInt(out, k);
+			out.writeByte(0x2f);		/* laload */
+			out.writeByte(0x37);		/* lstore */
+			out.writeByte(local(k));
+		}
+		for (int w = 0; w < bits.length; w++) {
+			out.writeByte(0x2c);		/* aload_2 */
+			pushInt(out, w);
+			pushLong(out, bits[w]);
+			for (Map.Entry<Long, Long> e : groups(size, sources, w)) {
+				int k = (int) (e.getKey() >> 8);
+				int shift = (int) (byte) (long) e.getKey();
+				out.writeByte(0x16);	/* lload */
+				out.writeByte(local(k));
+				if (shift != 0) {
+					pushInt(out, Math.abs(shift));
+					out.writeByte(shift > 0 ? 0x7d : 0x79);
+				}
+				pushLong(out, e.getValue());
+				out.writeByte(0x7f);	/* land */
+				out.writeByte(0x83);	/* lxor */
+			}
+			out.writeByte(0x50);		/* lastore */
+		}
+		out.writeByte(0xb1);			/* return */
+		return buf.toByteArray();
+	}
+
+	/*
+	 * Groups the bits of the new state's w-th word by source word and shift
+	 * distance, mapping (word << 8 | shift) to the mask of the bits that
+	 * share them. Bits are complemented with XOR, so the bits of a group
+	 * can be masked and merged at once.
+	 */
+	private static List<Map.Entry<Long, Long>> groups(int size, int[] sources,
+		int w)
+	{
+		Map<Long, Long> groups = new LinkedHashMap<>();
+		int end = Math.min(size, (w + 1) << 6);
+		for (int i = Math.max(w << 6, 1); i < end; i++) {
+			int src = sources[i];
+			int shift = (src & 63) - (i & 63);
+			long key = ((long) (src >>> 6) << 8) | (shift & 0xFF);
+			groups.merge(key, 1L << i, (a, b) -> a | b);
+		}
+		return new ArrayList<>(groups.entrySet());
+	}
+
+	private static int local(int word)
+	{
+		return 3 + 2 * word;
+	}
+
+	private void pushInt(DataOutputStream out, int value) throws IOException
+	{
+		if (value <= 5) {
+			out.writeByte(0x03 + value);	/* iconst_<value> */
+		} else if (value <= Byte.MAX_VALUE) {
+			out.writeByte(0x10);		/* bipush */
+			out.writeByte(value);
+		} else {
+			out.writeByte(0x11);		/* sipush */
+			out.writeShort(value);
+		}
+	}
+
+	private void pushLong(DataOutputStream out, long value)
+		throws IOException
+	{
+		if (value == 0L || value == 1L) {
+			out.writeByte(0x09 + (int) value);	/* lconst_<value> */
+		} else {
+			out.writeByte(0x14);		/* ldc2_w */
+			out.writeShort(longConstant(value));
+		}
+	}
+
+	private byte[] classFile(byte[] code, int maxLocals) throws IOException
+	{
+		int thisClass = classConstant(name);
+		int superClass = classConstant("java/lang/Object");
+		int itf = classConstant(INTERFACE);
+		int init = utf8Constant("<init>");
+		int voidDesc = utf8Constant("()V");
+		int objectInit = methodConstant(superClass, init, voidDesc);
+		int accept = utf8Constant("accept");
+		int acceptDesc = utf8Constant(
+			"(Ljava/lang/Object;Ljava/lang/Object;)V");
+		int codeAttribute = utf8Constant("Code");
+		cp.flush();
+
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buf);
+		out.writeInt(0xcafebabe);
+		out.writeShort(0);
+		out.writeShort(52);			/* Java 8 */
+		out.writeShort(count);
+		pool.writeTo(out);
+		out.writeShort(0x0031);			/* public final super */
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(1);
+		out.writeShort(itf);
+		out.writeShort(0);			/* fields */
+		out.writeShort(2);			/* methods */
+
+		byte[] ctor = {0x2a, (byte) 0xb7, (byte) (objectInit >>> 8),
+			(byte) objectInit, (byte) 0xb1};
+		method(out, init, voidDesc, codeAttribute, ctor, 1, 1);
+		method(out, accept, acceptDesc, codeAttribute, code, 8, maxLocals);
+
+		out.writeShort(0);			/* attributes */
+		return buf.toByteArray();
+	}
+
+	private static void method(DataOutputStream out, int name, int desc,
+		int codeAttribute, byte[] code, int maxStack, int maxLocals)
+		throws IOException
+	{
+		out.writeShort(0x0001);			/* public */
+		out.writeShort(name);
+		out.writeShort(desc);
+		out.writeShort(1);
+		out.writeShort(codeAttribute);
+		out.writeInt(12 + code.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0);			/* exception table */
+		out.writeShort(0);			/* attributes */
+	}
+
+	private int utf8Constant(String value) throws IOException
+	{
+		Integer index = constants.get(value);
+		if (index == null) {
+			cp.writeByte(1);
+			cp.writeUTF(value);
+			index = count++;
+			constants.put(value, index);
+		}
+		return index;
+	}
+
+	private int classConstant(String internalName) throws IOException
+	{
+		int utf8 = utf8Constant(internalName);
+		return reference(7, utf8, 0, "class:" + internalName);
+	}
+
+	private int methodConstant(int owner, int name, int desc)
+		throws IOException
+	{
+		int nameAndType = reference(12, name, desc, "nat:" + name + ":" + desc);
+		return reference(10, owner, nameAndType, "method:" + owner + ":"
+			+ nameAndType);
+	}
+
+	private int reference(int tag, int a, int b, String key)
+		throws IOException
+	{
+		Integer index = constants.get(key);
+		if (index == null) {
+			cp.writeByte(tag);
+			cp.writeShort(a);
+			if (tag != 7) {
+				cp.writeShort(b);
+			}
+			index = count++;
+			constants.put(key, index);
+		}
+		return index;
+	}
+
+	private int longConstant(long value) throws IOException
+	{
+		Integer index = constants.get(value);
+		if (index == null) {
+			cp.writeByte(5);
+			cp.writeLong(value);
+			index = count;
+			count += 2;
+			constants.put(value, index);
+		}
+		return index;
+	}
+}
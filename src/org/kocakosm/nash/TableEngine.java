@@ -0,0 +1,193 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Engine for small keys, whose whole state fits in an {@code int}. Such an
+ * engine processes several bits at once by looking up a precomputed table
+ * mapping each (state, input bits) pair to the resulting (state, output bits)
+ * pair. Tables are built once per key and mode (see
+ * {@link CompiledKey#table(Mode)}). Instances of this class are not
+ * thread-safe.
+ *
+ * @author Osman Koçak
+ */
+final class TableEngine implements Engine
+{
+	/** The maximum key size supported by this engine. */
+	static final int MAX_KEY_SIZE = 18;
+
+	/*
+	 * Tables have 2^(size + width) entries; the width (the number of bits
+	 * processed per lookup) is the largest divisor of 8 keeping that number
+	 * under 2^20, that is, each table under 4 MB.
+	 */
+	private static final int MAX_TABLE_BITS = 20;
+
+	/**
+	 * Returns the number of bits processed per lookup for the given key
+	 * size.
+	 *
+	 * @param size the key size, at most {@link #MAX_KEY_SIZE}.
+	 *
+	 * @return the number of bits processed per lookup.
+	 */
+	static int width(int size)
+	{
+		int width = 8;
+		while (size + width > MAX_TABLE_BITS) {
+			width >>>= 1;
+		}
+		return width;
+	}
+
+	/**
+	 * Builds the transition table of the given key for the given mode. Each
+	 * entry, indexed by {@code (state << width) | in}, holds
+	 * {@code (next << width) | out}.
+	 *
+	 * @param key the compiled secret key, of size at most
+	 *	{@link #MAX_KEY_SIZE}.
+	 * @param mode the operation mode.
+	 *
+	 * @return the transition table.
+	 */
+	static int[] build(CompiledKey key, Mode mode)
+	{
+		int size = key.getSize();
+		int width = width(size);
+		int states = 1 << size;
+		int[] steps = new int[states << 1];
+		for (int s = 0; s < states; s++) {
+			steps[s << 1] = step(s, size, key.blueSources(),
+				key.blueBits()[0]);
+			steps[(s << 1) | 1] = step(s, size, key.redSources(),
+				key.redBits()[0]) | 1;
+		}
+		boolean decryption = mode == Mode.DECRYPTION;
+		int[] table = new int[states << width];
+		for (int s = 0; s < states; s++) {
+			for (int in = 0; in < 1 << width; in++) {
+				int state = s;
+				int out = 0;
+				for (int j = 0; j < width; j++) {
+					int i = (in >>> j) & 1;
+					int o = i ^ (state >>> (size - 1));
+					out |= o << j;
+					state = steps[(state << 1) | (decryption ? i : o)];
+				}
+				table[(s << width) | in] = (state << width) | out;
+			}
+		}
+		return table;
+	}
+
+	private static int step(int state, int size, int[] sources, long bits)
+	{
+		int next = 0;
+		for (int i = 1; i < size; i++) {
+			next |= ((state >>> sources[i]) & 1) << i;
+		}
+		return next ^ (int) bits;
+	}
+
+	private final int size;
+	private final int width;
+	private final int mask;
+	private final int[] table;
+	private int state;
+
+	/**
+	 * Creates a new {@code TableEngine}.
+	 *
+	 * @param key the compiled secret key, of size at most
+	 *	{@link #MAX_KEY_SIZE}.
+	 * @param iv the initialization vector.
+	 * @param mode the operation mode.
+	 */
+	TableEngine(CompiledKey key, IV iv, Mode mode)
+	{
+		this.size = key.getSize();
+		this.width = width(size);
+		this.mask = (1 << width) - 1;
+		this.table = key.table(mode);
+		reset(iv);
+	}
+
+	@Override
+	public void reset(IV iv)
+	{
+		boolean[] bits = iv.getBits();
+		state = 0;
+		for (int i = 0; i < size; i++) {
+			state |= (bits[i] ? 1 : 0) << i;
+		}
+	}
+
+	@Override
+	public boolean[] state()
+	{
+		boolean[] bits = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			bits[i] = ((state >>> i) & 1) != 0;
+		}
+		return bits;
+	}
+
+	@Override
+	public void load(ByteBuffer buffer, int index)
+	{
+		state = (int) buffer.getLong(index);
+	}
+
+	@Override
+	public void store(ByteBuffer buffer, int index)
+	{
+		buffer.putLong(index, state);
+	}
+
+	@Override
+	public void process(byte[] in, int inOff, int len, byte[] out, int outOff)
+	{
+		if (width == 8) {
+			int s = state;
+			for (int k = 0; k < len; k++) {
+				int e = table[(s << 8) | (in[inOff + k] & 0xFF)];
+				out[outOff + k] = (byte) e;
+				s = e >>> 8;
+			}
+			state = s;
+		} else {
+			for (int k = 0; k < len; k++) {
+				out[outOff + k] = (byte) process(in[inOff + k]);
+			}
+		}
+	}
+
+	@Override
+	public int process(int b)
+	{
+		int s = state;
+		int val = 0;
+		for (int j = 0; j < 8; j += width) {
+			int e = table[(s << width) | ((b >>> j) & mask)];
+			val |= (e & mask) << j;
+			s = e >>> width;
+		}
+		state = s;
+		return val;
+	}
+}
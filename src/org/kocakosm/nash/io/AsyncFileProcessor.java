@@ -0,0 +1,217 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.NashCipher;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Processes a file through {@link AsynchronousFileChannel}s, using a fixed
+ * number of buffers. Chunks are read ahead and written back concurrently,
+ * while the cipher processes them one at a time, strictly in order, on the
+ * given executor. The cipher never waits for I/O: a task is only submitted
+ * once the next chunk in sequence has been read.
+ *
+ * @author Osman Koçak
+ */
+final class AsyncFileProcessor
+{
+	private final NashCipher cipher;
+	private final AsynchronousFileChannel source;
+	private final AsynchronousFileChannel target;
+	private final Executor executor;
+	private final long size;
+	private final int chunkSize;
+	private final long chunks;
+	private final ByteBuffer[] ready;
+	private final CompletableFuture<Long> result;
+	private long nextRead;
+	private long nextCipher;
+	private long written;
+	private boolean ciphering;
+
+	/**
+	 * Creates a new {@code AsyncFileProcessor}.
+	 *
+	 * @param cipher the cipher to use.
+	 * @param source the source file's channel.
+	 * @param target the target file's channel, may be {@code source}.
+	 * @param executor the executor on which to run the cipher.
+	 * @param chunkSize the size of the buffers.
+	 * @param buffers the number of buffers.
+	 *
+	 * @throws IOException if the source file's size can't be read.
+	 */
+	AsyncFileProcessor(NashCipher cipher, AsynchronousFileChannel source,
+		AsynchronousFileChannel target, Executor executor, int chunkSize,
+		int buffers) throws IOException
+	{
+		this.cipher = cipher;
+		this.source = source;
+		this.target = target;
+		this.executor = executor;
+		this.size = source.size();
+		this.chunkSize = chunkSize;
+		this.chunks = (size + chunkSize - 1) / chunkSize;
+		this.ready = new ByteBuffer[buffers];
+		this.result = new CompletableFuture<>();
+	}
+
+	/**
+	 * Starts processing the file.
+	 *
+	 * @return the number of processed bytes, once they have all been
+	 *	written.
+	 */
+	CompletableFuture<Long> start()
+	{
+		if (chunks == 0L) {
+			result.complete(0L);
+			return result;
+		}
+		int n = (int) Math.min(ready.length, chunks);
+		synchronized (this) {
+			nextRead = n;
+		}
+		for (int i = 0; i < n; i++) {
+			read(i, ByteBuffer.allocate(chunkSize));
+		}
+		return result;
+	}
+
+	private void read(long chunk, ByteBuffer buf)
+	{
+		long position = chunk * chunkSize;
+		buf.clear();
+		buf.limit((int) Math.min(chunkSize, size - position));
+		transfer(false, buf, position, handler(chunk, position, false));
+	}
+
+	private void write(long chunk, ByteBuffer buf)
+	{
+		long position = chunk * chunkSize;
+		transfer(true, buf, position, handler(chunk, position, true));
+	}
+
+	private CompletionHandler<Integer, ByteBuffer> handler(long chunk,
+		long position, boolean write)
+	{
+		return new CompletionHandler<Integer, ByteBuffer>()
+		{
+			@Override
+			public void completed(Integer n, ByteBuffer buf)
+			{
+				if (result.isDone()) {
+					return;
+				}
+				if (n < 0) {
+					failed(new EOFException(), buf);
+				} else if (buf.hasRemaining()) {
+					transfer(write, buf, position + buf.position(), this);
+				} else if (write) {
+					written(buf);
+				} else {
+					ready(chunk, buf);
+				}
+			}
+
+			@Override
+			public void failed(Throwable t, ByteBuffer buf)
+			{
+				result.completeExceptionally(t);
+			}
+		};
+	}
+
+	private void transfer(boolean write, ByteBuffer buf, long position,
+		CompletionHandler<Integer, ByteBuffer> handler)
+	{
+		try {
+			if (write) {
+				target.write(buf, position, buf, handler);
+			} else {
+				source.read(buf, position, buf, handler);
+			}
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+	}
+
+	private void ready(long chunk, ByteBuffer buf)
+	{
+		synchronized (this) {
+			ready[(int) (chunk % ready.length)] = buf;
+			if (ciphering || chunk != nextCipher) {
+				return;
+			}
+			ciphering = true;
+		}
+		try {
+			executor.execute(this::process);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+	}
+
+	/* Runs until no chunk is ready to be processed in sequence. */
+	private void process()
+	{
+		try {
+			while (!result.isDone()) {
+				long chunk;
+				ByteBuffer buf;
+				synchronized (this) {
+					int slot = (int) (nextCipher % ready.length);
+					buf = ready[slot];
+					if (buf == null) {
+						ciphering = false;
+						return;
+					}
+					ready[slot] = null;
+					chunk = nextCipher++;
+				}
+				buf.flip();
+				cipher.process(buf);
+				buf.flip();
+				write(chunk, buf);
+			}
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+	}
+
+	private void written(ByteBuffer buf)
+	{
+		long chunk;
+		synchronized (this) {
+			if (++written == chunks) {
+				chunk = -1L;
+			} else if (nextRead < chunks) {
+				chunk = nextRead++;
+			} else {
+				return;
+			}
+		}
+		if (chunk < 0) {
+			result.complete(size);
+		} else {
+			read(chunk, buf);
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.ChunkedCipher;
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An {@link InputStream} reading framed messages (see {@link ChunkedCipher})
+ * from an inner stream. Chunks are read ahead and decrypted concurrently, in
+ * the given executor. Reaching the end of the inner stream before the
+ * message's terminator is reported as an {@link EOFException}, and messages
+ * of more than {@link ChunkedCipher#maxChunks(int)} chunks are rejected.
+ * Chunk lengths aren't trusted: buffers only grow as chunk data actually
+ * arrive. Instances of this class are thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class ChunkedNashCipherInputStream extends InputStream
+{
+	private static final byte[] EMPTY = new byte[0];
+
+	/** The initial size of the buffers in which chunks are read. */
+	private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+	private final CompiledKey key;
+	private final IV iv;
+	private final DataInputStream encrypted;
+	private final ExecutorService executor;
+	private final int maxPending;
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+	private final Object lock = new Object();
+	private byte[] chunk = EMPTY;
+	private int position;
+	private long index;
+	private boolean terminated;
+
+	/**
+	 * Creates a new {@code ChunkedNashCipherInputStream}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the message's initialization vector.
+	 * @param encrypted the underlying encrypted stream.
+	 * @param executor the executor in which to run decryption tasks.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have 
+	 *	different sizes.
+	 */
+	public ChunkedNashCipherInputStream(CompiledKey key, IV iv,
+		InputStream encrypted, ExecutorService executor)
+	{
+		Objects.requireNonNull(encrypted);
+		Objects.requireNonNull(executor);
+		if (key.getSize() != iv.getSize()) {
+			throw new IllegalArgumentException();
+		}
+		this.key = key;
+		this.iv = iv;
+		this.encrypted = new DataInputStream(encrypted);
+		this.executor = executor;
+		this.maxPending = 2 * Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public int available() throws IOException
+	{
+		synchronized (lock) {
+			return chunk.length - position;
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		synchronized (lock) {
+			pending.forEach(f -> f.cancel(true));
+			pending.clear();
+			encrypted.close();
+		}
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		synchronized (lock) {
+			if (!ensureData()) {
+				return -1;
+			}
+			return chunk[position++] & 0xFF;
+		}
+	}
+
+	@Override
+	public int read(byte[] b) throws IOException
+	{
+		return read(b, 0, b.length);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (off < 0 || len < 0 || off > b.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		synchronized (lock) {
+			if (!ensureData()) {
+				return -1;
+			}
+			int n = Math.min(len, chunk.length - position);
+			System.arraycopy(chunk, position, b, off, n);
+			position += n;
+			return n;
+		}
+	}
+
+	private boolean ensureData() throws IOException
+	{
+		while (position == chunk.length) {
+			readAhead();
+			Future<byte[]> next = pending.poll();
+			if (next == null) {
+				return false;
+			}
+			try {
+				chunk = next.get();
+				position = 0;
+			} catch (InterruptedException ex) {
+				pending.addFirst(next);
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			} catch (ExecutionException ex) {
+				throw new IOException(ex.getCause());
+			}
+		}
+		return true;
+	}
+
+	private void readAhead() throws IOException
+	{
+		while (!terminated && pending.size() < maxPending) {
+			int len;
+			try {
+				len = encrypted.readInt();
+			} catch (EOFException ex) {
+				throw new EOFException("Truncated message");
+			}
+			if (len == 0) {
+				terminated = true;
+				return;
+			}
+			if (len < 0 || len > ChunkedCipher.MAX_CHUNK_SIZE) {
+				throw new IOException("Malformed message");
+			}
+			if (index >= ChunkedCipher.maxChunks(key.getSize())) {
+				throw new IOException("Too many chunks");
+			}
+			byte[] data;
+			try {
+				data = readChunk(len);
+			} catch (EOFException ex) {
+				throw new EOFException("Truncated message");
+			}
+			long i = index++;
+			pending.add(executor.submit(() -> {
+				NashCipher cipher = new NashCipher(key,
+					ChunkedCipher.chunkIV(key, iv, i), Mode.DECRYPTION);
+				cipher.processInPlace(data, 0, len);
+				return data;
+			}));
+		}
+	}
+
+	/*
+	 * Doubles the buffer each time it is full, so that a forged length
+	 * can't make this stream allocate much more than it has read.
+	 */
+	private byte[] readChunk(int len) throws IOException
+	{
+		byte[] data = new byte[Math.min(len, INITIAL_BUFFER_SIZE)];
+		int n = 0;
+		while (true) {
+			encrypted.readFully(data, n, data.length - n);
+			n = data.length;
+			if (n == len) {
+				return data;
+			}
+			data = Arrays.copyOf(data, Math.min(len, 2 * n));
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.ChunkedCipher;
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An {@link OutputStream} writing framed messages (see {@link ChunkedCipher})
+ * to an inner stream. Data are buffered into chunks which are encrypted
+ * concurrently, in the given executor, and written in order. Flushing this
+ * stream ends the current chunk, even if it is not full. Closing it writes
+ * the message's terminator. A message may have at most
+ * {@link ChunkedCipher#maxChunks(int)} chunks, which only matters for keys
+ * of less than 63 bits. Instances of this class are thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class ChunkedNashCipherOutputStream extends OutputStream
+{
+	private final CompiledKey key;
+	private final IV iv;
+	private final OutputStream encrypted;
+	private final ExecutorService executor;
+	private final int chunkSize;
+	private final int maxPending;
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+	private final Object lock = new Object();
+	private byte[] buffer;
+	private int count;
+	private long index;
+	private boolean closed;
+
+	/**
+	 * Creates a new {@code ChunkedNashCipherOutputStream} using 1 MB chunks.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the message's initialization vector.
+	 * @param encrypted the underlying encrypted stream.
+	 * @param executor the executor in which to run encryption tasks.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have 
+	 *	different sizes.
+	 */
+	public ChunkedNashCipherOutputStream(CompiledKey key, IV iv,
+		OutputStream encrypted, ExecutorService executor)
+	{
+		this(key, iv, encrypted, executor, ChunkedCipher.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a new {@code ChunkedNashCipherOutputStream}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the message's initialization vector.
+	 * @param encrypted the underlying encrypted stream.
+	 * @param executor the executor in which to run encryption tasks.
+	 * @param chunkSize the size of the chunks.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have 
+	 *	different sizes or if {@code chunkSize} is not in
+	 *	{@code [1, ChunkedCipher.MAX_CHUNK_SIZE]}.
+	 */
+	public ChunkedNashCipherOutputStream(CompiledKey key, IV iv,
+		OutputStream encrypted, ExecutorService executor, int chunkSize)
+	{
+		Objects.requireNonNull(encrypted);
+		Objects.requireNonNull(executor);
+		if (key.getSize() != iv.getSize()) {
+			throw new IllegalArgumentException();
+		}
+		if (chunkSize <= 0 || chunkSize > ChunkedCipher.MAX_CHUNK_SIZE) {
+			throw new IllegalArgumentException();
+		}
+		this.key = key;
+		this.iv = iv;
+		this.encrypted = encrypted;
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+		this.maxPending = 2 * Runtime.getRuntime().availableProcessors();
+		this.buffer = new byte[chunkSize];
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				drain();
+				/* The terminator, that is, a zero length. */
+				encrypted.write(new byte[Integer.BYTES]);
+			} finally {
+				encrypted.close();
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		synchronized (lock) {
+			ensureOpen();
+			drain();
+			encrypted.flush();
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		synchronized (lock) {
+			ensureOpen();
+			buffer[count++] = (byte) b;
+			if (count == chunkSize) {
+				submit();
+			}
+		}
+	}
+
+	@Override
+	public void write(byte[] b) throws IOException
+	{
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if (off < 0 || len < 0 || off > b.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		synchronized (lock) {
+			ensureOpen();
+			while (len > 0) {
+				int n = Math.min(len, chunkSize - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+				if (count == chunkSize) {
+					submit();
+				}
+			}
+		}
+	}
+
+	private void ensureOpen() throws IOException
+	{
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	private void submit() throws IOException
+	{
+		byte[] chunk = buffer;
+		int len = count;
+		if (index >= ChunkedCipher.maxChunks(key.getSize())) {
+			throw new IOException("Too many chunks");
+		}
+		long i = index++;
+		pending.add(executor.submit(() -> {
+			NashCipher cipher = new NashCipher(key,
+				ChunkedCipher.chunkIV(key, iv, i), Mode.ENCRYPTION);
+			byte[] framed = new byte[Integer.BYTES + len];
+			ByteBuffer.wrap(framed).putInt(len);
+			cipher.process(chunk, 0, len, framed, Integer.BYTES);
+			return framed;
+		}));
+		buffer = new byte[chunkSize];
+		count = 0;
+		while (pending.size() > maxPending) {
+			writeNext();
+		}
+	}
+
+	private void drain() throws IOException
+	{
+		if (count > 0) {
+			submit();
+		}
+		while (!pending.isEmpty()) {
+			writeNext();
+		}
+	}
+
+	private void writeNext() throws IOException
+	{
+		Future<byte[]> next = pending.poll();
+		try {
+			encrypted.write(next.get());
+		} catch (InterruptedException ex) {
+			pending.addFirst(next);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException ex) {
+			pending.forEach(f -> f.cancel(true));
+			pending.clear();
+			throw new IOException(ex.getCause());
+		}
+	}
+}
@@ -0,0 +1,453 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * File encryption and decryption utility methods. Files are processed through
+ * memory-mapped windows of at most 64 MB, without copying data to the heap,
+ * so that files of any size, including files of more than 2 GB, can be
+ * processed with a constant memory footprint. Asynchronous variants are also
+ * provided, which go through {@link AsynchronousFileChannel}s and a bounded
+ * number of heap buffers instead, and never block the calling thread.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherFiles
+{
+	private static final long WINDOW_SIZE = 1L << 26;
+
+	/** The default size of the buffers used by asynchronous methods. */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	/** The default number of buffers used by asynchronous methods. */
+	public static final int DEFAULT_BUFFERS = 4;
+
+	/**
+	 * Encrypts the given file. The target file is created if it doesn't
+	 * exist and truncated if it does. If {@code source} and {@code target}
+	 * are the same file, it is encrypted in place.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector.
+	 * @param source the file to encrypt.
+	 * @param target the file in which to write the encrypted data.
+	 *
+	 * @return the number of encrypted bytes.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static long encrypt(CompiledKey key, IV iv, Path source,
+		Path target) throws IOException
+	{
+		return process(new NashCipher(key, iv, Mode.ENCRYPTION), source,
+			target);
+	}
+
+	/**
+	 * Decrypts the given file. The target file is created if it doesn't
+	 * exist and truncated if it does. If {@code source} and {@code target}
+	 * are the same file, it is decrypted in place.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector.
+	 * @param source the file to decrypt.
+	 * @param target the file in which to write the decrypted data.
+	 *
+	 * @return the number of decrypted bytes.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static long decrypt(CompiledKey key, IV iv, Path source,
+		Path target) throws IOException
+	{
+		return process(new NashCipher(key, iv, Mode.DECRYPTION), source,
+			target);
+	}
+
+	/**
+	 * Encrypts the given file in place.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector.
+	 * @param file the file to encrypt.
+	 *
+	 * @return the number of encrypted bytes.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static long encrypt(CompiledKey key, IV iv, Path file)
+		throws IOException
+	{
+		return process(new NashCipher(key, iv, Mode.ENCRYPTION), file);
+	}
+
+	/**
+	 * Decrypts the given file in place.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector.
+	 * @param file the file to decrypt.
+	 *
+	 * @return the number of decrypted bytes.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static long decrypt(CompiledKey key, IV iv, Path file)
+		throws IOException
+	{
+		return process(new NashCipher(key, iv, Mode.DECRYPTION), file);
+	}
+
+	/**
+	 * Asynchronously encrypts the given file, using
+	 * {@link #DEFAULT_BUFFERS} buffers of {@link #DEFAULT_BUFFER_SIZE}
+	 * bytes.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector.
+	 * @param source the file to encrypt.
+	 * @param target the file in which to write the encrypted data.
+	 * @param executor the executor on which to run I/O completion handlers
+	 *	and the cipher.
+	 *
+	 * @return the number of encrypted bytes, once they have all been
+	 *	written.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 *
+	 * @see #encryptAsync(CompiledKey, IV, Path, Path, ExecutorService, int,
+	 *	int)
+	 */
+	public static CompletableFuture<Long> encryptAsync(CompiledKey key,
+		IV iv, Path source, Path target, ExecutorService executor)
+	{
+		return encryptAsync(key, iv, source, target, executor,
+			DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS);
+	}
+
+	/**
+	 * Asynchronously encrypts the given file. The target file is created if
+	 * it doesn't exist and truncated if it does. If {@code source} and
+	 * {@code target} are the same file, it is encrypted in place. Reading,
+	 * encryption and writing overlap, with at most {@code buffers} chunks
+	 * of the file in memory at any time. Chunks are encrypted one at a time,
+	 * in order, on {@code executor}. Failures, including I/O errors, are
+	 * reported through the returned future. Cancelling it stops the
+	 * processing, leaving the target file partially written.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector.
+	 * @param source the file to encrypt.
+	 * @param target the file in which to write the encrypted data.
+	 * @param executor the executor on which to run I/O completion handlers
+	 *	and the cipher.
+	 * @param bufferSize the size of the buffers.
+	 * @param buffers the number of buffers.
+	 *
+	 * @return the number of encrypted bytes, once they have all been
+	 *	written.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes or if {@code bufferSize} or {@code buffers} is not
+	 *	positive.
+	 */
+	public static CompletableFuture<Long> encryptAsync(CompiledKey key,
+		IV iv, Path source, Path target, ExecutorService executor,
+		int bufferSize, int buffers)
+	{
+		return processAsync(new NashCipher(key, iv, Mode.ENCRYPTION), source,
+			target, executor, bufferSize, buffers);
+	}
+
+	/**
+	 * Asynchronously decrypts the given file, using
+	 * {@link #DEFAULT_BUFFERS} buffers of {@link #DEFAULT_BUFFER_SIZE}
+	 * bytes.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector.
+	 * @param source the file to decrypt.
+	 * @param target the file in which to write the decrypted data.
+	 * @param executor the executor on which to run I/O completion handlers
+	 *	and the cipher.
+	 *
+	 * @return the number of decrypted bytes, once they have all been
+	 *	written.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 *
+	 * @see #decryptAsync(CompiledKey, IV, Path, Path, ExecutorService, int,
+	 *	int)
+	 */
+	public static CompletableFuture<Long> decryptAsync(CompiledKey key,
+		IV iv, Path source, Path target, ExecutorService executor)
+	{
+		return decryptAsync(key, iv, source, target, executor,
+			DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS);
+	}
+
+	/**
+	 * Asynchronously decrypts the given file. This method works as
+	 * {@link #encryptAsync(CompiledKey, IV, Path, Path, ExecutorService,
+	 * int, int)} does.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector.
+	 * @param source the file to decrypt.
+	 * @param target the file in which to write the decrypted data.
+	 * @param executor the executor on which to run I/O completion handlers
+	 *	and the cipher.
+	 * @param bufferSize the size of the buffers.
+	 * @param buffers the number of buffers.
+	 *
+	 * @return the number of decrypted bytes, once they have all been
+	 *	written.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes or if {@code bufferSize} or {@code buffers} is not
+	 *	positive.
+	 */
+	public static CompletableFuture<Long> decryptAsync(CompiledKey key,
+		IV iv, Path source, Path target, ExecutorService executor,
+		int bufferSize, int buffers)
+	{
+		return processAsync(new NashCipher(key, iv, Mode.DECRYPTION), source,
+			target, executor, bufferSize, buffers);
+	}
+
+	/**
+	 * Processes, in place, the given region of a file. The channel must have
+	 * been opened for both reading and writing.
+	 *
+	 * @param cipher the cipher to use.
+	 * @param channel the file's channel.
+	 * @param position the position of the region.
+	 * @param size the size of the region.
+	 *
+	 * @throws NullPointerException if {@code cipher} or {@code channel} is
+	 *	{@code null}.
+	 * @throws IllegalArgumentException if {@code position} or {@code size}
+	 *	is negative.
+	 * @throws EOFException if the file ends before the end of the region.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void process(NashCipher cipher, FileChannel channel,
+		long position, long size) throws IOException
+	{
+		process(cipher, channel, position, size, WINDOW_SIZE);
+	}
+
+	/**
+	 * Processes the given region of a file and writes the result into
+	 * another file, which is extended if needed. The source channel must
+	 * have been opened for reading and the target channel for both reading
+	 * and writing. Source and target regions must not overlap.
+	 *
+	 * @param cipher the cipher to use.
+	 * @param source the source file's channel.
+	 * @param position the position of the source region.
+	 * @param size the size of the region.
+	 * @param target the target file's channel.
+	 * @param targetPosition the position at which to write the result.
+	 *
+	 * @throws NullPointerException if {@code cipher}, {@code source} or
+	 *	{@code target} is {@code null}.
+	 * @throws IllegalArgumentException if {@code position}, {@code size} or
+	 *	{@code targetPosition} is negative.
+	 * @throws EOFException if the source file ends before the end of the
+	 *	region.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void process(NashCipher cipher, FileChannel source,
+		long position, long size, FileChannel target, long targetPosition)
+		throws IOException
+	{
+		process(cipher, source, position, size, target, targetPosition,
+			WINDOW_SIZE);
+	}
+
+	static void process(NashCipher cipher, FileChannel channel, long position,
+		long size, long window) throws IOException
+	{
+		Objects.requireNonNull(cipher);
+		checkRegion(channel, position, size);
+		for (long done = 0L; done < size; ) {
+			long len = Math.min(window, size - done);
+			MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE,
+				position + done, len);
+			cipher.process(buffer);
+			done += len;
+		}
+	}
+
+	static void process(NashCipher cipher, FileChannel source, long position,
+		long size, FileChannel target, long targetPosition, long window)
+		throws IOException
+	{
+		Objects.requireNonNull(cipher);
+		Objects.requireNonNull(target);
+		checkRegion(source, position, size);
+		if (targetPosition < 0) {
+			throw new IllegalArgumentException();
+		}
+		for (long done = 0L; done < size; ) {
+			long len = Math.min(window, size - done);
+			MappedByteBuffer in = source.map(MapMode.READ_ONLY,
+				position + done, len);
+			MappedByteBuffer out = target.map(MapMode.READ_WRITE,
+				targetPosition + done, len);
+			cipher.process(in, out);
+			done += len;
+		}
+	}
+
+	private static long process(NashCipher cipher, Path file)
+		throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			process(cipher, channel, 0L, size);
+			return size;
+		}
+	}
+
+	private static long process(NashCipher cipher, Path source, Path target)
+		throws IOException
+	{
+		if (Files.exists(target) && Files.isSameFile(source, target)) {
+			return process(cipher, source);
+		}
+		try (FileChannel in = FileChannel.open(source,
+				StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(target,
+				StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			process(cipher, in, 0L, size, out, 0L);
+			return size;
+		}
+	}
+
+	private static CompletableFuture<Long> processAsync(NashCipher cipher,
+		Path source, Path target, ExecutorService executor, int bufferSize,
+		int buffers)
+	{
+		Objects.requireNonNull(source);
+		Objects.requireNonNull(target);
+		Objects.requireNonNull(executor);
+		if (bufferSize <= 0 || buffers <= 0) {
+			throw new IllegalArgumentException();
+		}
+		AsynchronousFileChannel in = null;
+		AsynchronousFileChannel out = null;
+		try {
+			if (Files.exists(target) && Files.isSameFile(source, target)) {
+				in = out = open(source, executor, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			} else {
+				in = open(source, executor, StandardOpenOption.READ);
+				out = open(target, executor, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			}
+			CompletableFuture<Long> result = new AsyncFileProcessor(cipher,
+				in, out, executor, bufferSize, buffers).start();
+			AsynchronousFileChannel i = in;
+			AsynchronousFileChannel o = out;
+			result.whenComplete((n, t) -> close(i, o));
+			return result;
+		} catch (IOException | RuntimeException e) {
+			close(in, out);
+			CompletableFuture<Long> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	private static AsynchronousFileChannel open(Path file,
+		ExecutorService executor, OpenOption... options) throws IOException
+	{
+		Set<OpenOption> set = new HashSet<>(Arrays.asList(options));
+		return AsynchronousFileChannel.open(file, set, executor);
+	}
+
+	private static void close(AsynchronousFileChannel... channels)
+	{
+		for (AsynchronousFileChannel channel : channels) {
+			try {
+				if (channel != null) {
+					channel.close();
+				}
+			} catch (IOException e) {
+				/* Nothing left to report the error to. */
+			}
+		}
+	}
+
+	private static void checkRegion(FileChannel channel, long position,
+		long size) throws IOException
+	{
+		if (position < 0 || size < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (position > channel.size() - size) {
+			throw new EOFException();
+		}
+	}
+
+	private NashCipherFiles()
+	{
+		/* ... */
+	}
+}
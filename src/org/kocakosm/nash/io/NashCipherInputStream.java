@@ -11,27 +11,27 @@
 
 package org.kocakosm.nash.io;
 
+import org.kocakosm.nash.CompiledKey;
 import org.kocakosm.nash.IV;
 import org.kocakosm.nash.Key;
 import org.kocakosm.nash.NashCipher;
-import org.kocakosm.nash.NashCipher.Mode;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Objects;
+import java.io.OutputStream;
 
 /**
  * A {@code NashCipherInputStream} is composed of an inner {@link InputStream}
  * and a {@link NashCipher} so that the data read from the inner stream are
- * decrypted before being returned. Instances of this class are thread-safe.
+ * decrypted before being returned. Instances of this class are thread-safe;
+ * streams used by a single thread should rather be
+ * {@link UnsynchronizedNashCipherInputStream}s.
  *
  * @author Osman Koçak
  */
 public final class NashCipherInputStream extends InputStream
 {
-	private final NashCipher cipher;
-	private final InputStream encrypted;
+	private final UnsynchronizedNashCipherInputStream in;
 	private final Object lock = new Object();
 
 	/**
@@ -47,16 +47,53 @@ public final class NashCipherInputStream extends InputStream
 	 */
 	public NashCipherInputStream(Key key, IV iv, InputStream encrypted)
 	{
-		Objects.requireNonNull(encrypted);
-		this.cipher = new NashCipher(key, iv, Mode.DECRYPTION);
-		this.encrypted = new BufferedInputStream(encrypted);
+		this(CompiledKey.compile(key), iv, encrypted);
+	}
+
+	/**
+	 * Creates a new {@code NashCipherInputStream}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted stream.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have 
+	 *	different sizes.
+	 */
+	public NashCipherInputStream(CompiledKey key, IV iv,
+		InputStream encrypted)
+	{
+		this.in = new UnsynchronizedNashCipherInputStream(key, iv, encrypted);
+	}
+
+	/**
+	 * Creates a new {@code NashCipherInputStream}. Reads at least as large
+	 * as the internal buffer are decrypted in place, directly into the
+	 * caller's array.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted stream.
+	 * @param bufferSize the size of the internal buffer, {@code 0} to
+	 *	disable buffering.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes or if {@code bufferSize} is negative.
+	 */
+	public NashCipherInputStream(CompiledKey key, IV iv,
+		InputStream encrypted, int bufferSize)
+	{
+		this.in = new UnsynchronizedNashCipherInputStream(key, iv, encrypted,
+			bufferSize);
 	}
 
 	@Override
 	public int available() throws IOException
 	{
 		synchronized (lock) {
-			return encrypted.available();
+			return in.available();
 		}
 	}
 
@@ -64,7 +101,7 @@ public final class NashCipherInputStream extends InputStream
 	public void close() throws IOException
 	{
 		synchronized (lock) {
-			encrypted.close();
+			in.close();
 		}
 	}
 
@@ -84,8 +121,7 @@ public final class NashCipherInputStream extends InputStream
 	public int read() throws IOException
 	{
 		synchronized (lock) {
-			int b = encrypted.read();
-			return b < 0 ? b : cipher.process((byte) b)[0] & 0xFF;
+			return in.read();
 		}
 	}
 
@@ -99,14 +135,80 @@ public final class NashCipherInputStream extends InputStream
 	public int read(byte[] b, int off, int len) throws IOException
 	{
 		synchronized (lock) {
-			byte[] buf = new byte[len];
-			int l = encrypted.read(buf);
-			if (l < 0) {
-				return l;
-			}
-			byte[] processed = cipher.process(buf, 0, l);
-			System.arraycopy(processed, 0, b, off, l);
-			return l;
+			return in.read(b, off, len);
+		}
+	}
+
+	/**
+	 * Reads all the remaining bytes from this stream.
+	 *
+	 * @return the remaining decrypted bytes.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public byte[] readAllBytes() throws IOException
+	{
+		synchronized (lock) {
+			return in.readAllBytes();
+		}
+	}
+
+	/**
+	 * Reads up to {@code len} bytes from this stream, blocking until they
+	 * have all been read or the end of the stream is reached.
+	 *
+	 * @param len the maximum number of bytes to read.
+	 *
+	 * @return the decrypted bytes.
+	 *
+	 * @throws IllegalArgumentException if {@code len} is negative.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public byte[] readNBytes(int len) throws IOException
+	{
+		synchronized (lock) {
+			return in.readNBytes(len);
+		}
+	}
+
+	/**
+	 * Reads up to {@code len} bytes from this stream into the given array,
+	 * blocking until they have all been read or the end of the stream is
+	 * reached.
+	 *
+	 * @param b the array into which to read the data.
+	 * @param off the offset at which to store the data.
+	 * @param len the maximum number of bytes to read.
+	 *
+	 * @return the number of bytes actually read.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code off} or {@code len} are
+	 *	negative or if {@code off + len} is greater than {@code b}'s
+	 *	length.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public int readNBytes(byte[] b, int off, int len) throws IOException
+	{
+		synchronized (lock) {
+			return in.readNBytes(b, off, len);
+		}
+	}
+
+	/**
+	 * Decrypts all the remaining bytes from this stream and writes them to
+	 * the given stream.
+	 *
+	 * @param out the stream to write to.
+	 *
+	 * @return the number of transferred bytes.
+	 *
+	 * @throws NullPointerException if {@code out} is {@code null}.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public long transferTo(OutputStream out) throws IOException
+	{
+		synchronized (lock) {
+			return in.transferTo(out);
 		}
 	}
 
@@ -116,9 +218,25 @@ public final class NashCipherInputStream extends InputStream
 		throw new IOException("Not supported");
 	}
 
+	/**
+	 * Skips over and discards {@code n} bytes of decrypted data. As the
+	 * decryption state depends on all the ciphertext, skipped data are
+	 * decrypted, except when the key has a resynchronization horizon, in
+	 * which case only the ciphertext preceding the new position within that
+	 * horizon is decrypted. Use a {@link NashCipherSeekableChannel} for
+	 * efficient random access.
+	 *
+	 * @param n the number of bytes to skip.
+	 *
+	 * @return the number of bytes actually skipped.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
 	@Override
 	public long skip(long n) throws IOException
 	{
-		throw new IOException("Unseekable stream");
+		synchronized (lock) {
+			return in.skip(n);
+		}
 	}
 }
@@ -11,28 +11,26 @@
 
 package org.kocakosm.nash.io;
 
+import org.kocakosm.nash.CompiledKey;
 import org.kocakosm.nash.IV;
 import org.kocakosm.nash.Key;
 import org.kocakosm.nash.NashCipher;
-import org.kocakosm.nash.NashCipher.Mode;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Objects;
 
 /**
  * A {@code NashCipherOutputStream} is composed of an inner {@link OutputStream}
  * and a {@link NashCipher} so that the data written to it are first encrypted
  * before being actually written to the inner stream. Instances of this class
- * are thread-safe.
+ * are thread-safe; streams used by a single thread should rather be
+ * {@link UnsynchronizedNashCipherOutputStream}s.
  *
  * @author Osman Koçak
  */
 public final class NashCipherOutputStream extends OutputStream
 {
-	private final NashCipher cipher;
-	private final OutputStream encrypted;
+	private final UnsynchronizedNashCipherOutputStream out;
 	private final Object lock = new Object();
 
 	/**
@@ -48,16 +46,32 @@ public final class NashCipherOutputStream extends OutputStream
 	 */
 	public NashCipherOutputStream(Key key, IV iv, OutputStream encrypted)
 	{
-		Objects.requireNonNull(encrypted);
-		this.cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
-		this.encrypted = new BufferedOutputStream(encrypted);
+		this(CompiledKey.compile(key), iv, encrypted);
+	}
+
+	/**
+	 * Creates a new {@code NashCipherOutputStream}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted stream.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have 
+	 *	different sizes.
+	 */
+	public NashCipherOutputStream(CompiledKey key, IV iv,
+		OutputStream encrypted)
+	{
+		this.out = new UnsynchronizedNashCipherOutputStream(key, iv,
+			encrypted);
 	}
 
 	@Override
 	public void close() throws IOException
 	{
 		synchronized (lock) {
-			encrypted.close();
+			out.close();
 		}
 	}
 
@@ -65,7 +79,7 @@ public final class NashCipherOutputStream extends OutputStream
 	public void flush() throws IOException
 	{
 		synchronized (lock) {
-			encrypted.flush();
+			out.flush();
 		}
 	}
 
@@ -73,7 +87,7 @@ public final class NashCipherOutputStream extends OutputStream
 	public void write(int i) throws IOException
 	{
 		synchronized (lock) {
-			encrypted.write(cipher.process((byte) i));
+			out.write(i);
 		}
 	}
 
@@ -87,7 +101,7 @@ public final class NashCipherOutputStream extends OutputStream
 	public void write(byte[] b, int off, int len) throws IOException
 	{
 		synchronized (lock) {
-			encrypted.write(cipher.process(b, off, len));
+			out.write(b, off, len);
 		}
 	}
 }
@@ -0,0 +1,336 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Stream processing utility methods, which overlap I/O and cipher work. Data
+ * go through three stages: a reader thread fills blocks from the input
+ * stream, the calling thread processes them, in order, and a writer thread
+ * writes them to the output stream. Stages are connected by bounded queues
+ * and a fixed number of blocks are recycled from the writer back to the
+ * reader, so memory usage is constant. For large inputs, the elapsed time
+ * approaches the slowest stage's time instead of the sum of all stages'.
+ * Streams are neither flushed nor closed by these methods, except for the
+ * output stream which is flushed once everything has been written.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherPipeline
+{
+	/** The default size of the blocks. */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+	/** The default number of blocks. */
+	public static final int DEFAULT_BLOCKS = 4;
+
+	/**
+	 * Encrypts all the data of the given input stream into the given output
+	 * stream, using {@link #DEFAULT_BLOCKS} blocks of
+	 * {@link #DEFAULT_BLOCK_SIZE} bytes.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector.
+	 * @param in the stream to encrypt.
+	 * @param out the stream in which to write the encrypted data.
+	 *
+	 * @return the number of encrypted bytes.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static long encrypt(CompiledKey key, IV iv, InputStream in,
+		OutputStream out) throws IOException
+	{
+		return process(new NashCipher(key, iv, Mode.ENCRYPTION), in, out,
+			DEFAULT_BLOCK_SIZE, DEFAULT_BLOCKS);
+	}
+
+	/**
+	 * Decrypts all the data of the given input stream into the given output
+	 * stream, using {@link #DEFAULT_BLOCKS} blocks of
+	 * {@link #DEFAULT_BLOCK_SIZE} bytes.
+	 *
+	 * @param key the secret key.
+	 * @param iv the initialization vector.
+	 * @param in the stream to decrypt.
+	 * @param out the stream in which to write the decrypted data.
+	 *
+	 * @return the number of decrypted bytes.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static long decrypt(CompiledKey key, IV iv, InputStream in,
+		OutputStream out) throws IOException
+	{
+		return process(new NashCipher(key, iv, Mode.DECRYPTION), in, out,
+			DEFAULT_BLOCK_SIZE, DEFAULT_BLOCKS);
+	}
+
+	/**
+	 * Processes all the data of the given input stream with the given
+	 * cipher and writes the result into the given output stream. If a stage
+	 * fails, the others are stopped and its error is rethrown. If the
+	 * calling thread is interrupted, an {@link InterruptedIOException} is
+	 * thrown. In both cases, the cipher's state is left undefined, and so is
+	 * the input stream's: the reader thread stops reading before its next
+	 * read, but a read already in progress can't be interrupted, and may
+	 * thus still consume data after this method has returned.
+	 *
+	 * @param cipher the cipher to use.
+	 * @param in the stream to process.
+	 * @param out the stream in which to write the processed data.
+	 * @param blockSize the size of the blocks.
+	 * @param blocks the number of blocks, at least 2 for reading, cipher
+	 *	work and writing to overlap.
+	 *
+	 * @return the number of processed bytes.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code blockSize} or
+	 *	{@code blocks} is not positive.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static long process(NashCipher cipher, InputStream in,
+		OutputStream out, int blockSize, int blocks) throws IOException
+	{
+		Objects.requireNonNull(cipher);
+		Objects.requireNonNull(in);
+		Objects.requireNonNull(out);
+		if (blockSize <= 0 || blocks <= 0) {
+			throw new IllegalArgumentException();
+		}
+		return new Run(blockSize, blocks).process(cipher, in, out);
+	}
+
+	/**
+	 * A block of data, the last one being the only one not full. Blocks are
+	 * recycled: once handed over to the next stage, they must not be read
+	 * anymore.
+	 */
+	private static final class Block
+	{
+		final byte[] data;
+		int length;
+
+		Block(int size)
+		{
+			this.data = new byte[size];
+		}
+
+		boolean isLast()
+		{
+			return length < data.length;
+		}
+	}
+
+	/** The state of a single pipelined processing. */
+	private static final class Run
+	{
+		private final BlockingQueue<Block> free;
+		private final BlockingQueue<Block> read;
+		private final BlockingQueue<Block> processed;
+		private Throwable failure;
+		private volatile boolean stopped;
+		private Thread reader;
+		private Thread writer;
+		private Thread caller;
+
+		Run(int blockSize, int blocks)
+		{
+			this.free = new ArrayBlockingQueue<>(blocks);
+			this.read = new ArrayBlockingQueue<>(blocks);
+			this.processed = new ArrayBlockingQueue<>(blocks);
+			for (int i = 0; i < blocks; i++) {
+				free.add(new Block(blockSize));
+			}
+		}
+
+		long process(NashCipher cipher, InputStream in, OutputStream out)
+			throws IOException
+		{
+			caller = Thread.currentThread();
+			reader = start("nash-pipeline-reader", () -> read(in));
+			writer = start("nash-pipeline-writer", () -> write(out));
+			long total = 0L;
+			try {
+				for (boolean last = false; !last; ) {
+					Block b = read.take();
+					cipher.processInPlace(b.data, 0, b.length);
+					total += b.length;
+					last = b.isLast();
+					processed.put(b);
+				}
+				writer.join();
+			} catch (InterruptedException e) {
+				if (abort()) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+			} catch (RuntimeException | Error e) {
+				fail(e);
+			}
+			Throwable t = failure();
+			if (t != null) {
+				stop();
+				rethrow(t);
+			}
+			return total;
+		}
+
+		private void read(InputStream in) throws Exception
+		{
+			while (true) {
+				Block b = free.take();
+				int n = 0;
+				while (n < b.data.length) {
+					if (stopped) {
+						return;
+					}
+					int k = in.read(b.data, n, b.data.length - n);
+					if (k < 0) {
+						break;
+					}
+					n += k;
+				}
+				b.length = n;
+				boolean last = b.isLast();
+				read.put(b);
+				if (last) {
+					return;
+				}
+			}
+		}
+
+		private void write(OutputStream out) throws Exception
+		{
+			while (true) {
+				Block b = processed.take();
+				out.write(b.data, 0, b.length);
+				if (b.isLast()) {
+					out.flush();
+					return;
+				}
+				free.put(b);
+			}
+		}
+
+		private Thread start(String name, Stage stage)
+		{
+			Thread t = new Thread(() -> {
+				try {
+					stage.run();
+				} catch (InterruptedException e) {
+					/* Stopped by another stage's failure. */
+				} catch (Throwable e) {
+					fail(e);
+				}
+			}, name);
+			t.setDaemon(true);
+			t.start();
+			return t;
+		}
+
+		/*
+		 * Failures are ignored once the run has been aborted, so that a
+		 * stage still running can't interrupt the caller after process()
+		 * has returned.
+		 */
+		private synchronized void fail(Throwable t)
+		{
+			if (failure == null && !stopped) {
+				failure = t;
+				caller.interrupt();
+			}
+		}
+
+		/*
+		 * Returns the first failure, if any, clearing the interrupt it has
+		 * caused, which is guaranteed to have been delivered by then.
+		 */
+		private synchronized Throwable failure()
+		{
+			if (failure != null) {
+				Thread.interrupted();
+			}
+			return failure;
+		}
+
+		/*
+		 * Stops the other stages after the caller has been interrupted,
+		 * unless a stage has failed meanwhile, in which case the failure
+		 * prevails.
+		 */
+		private synchronized boolean abort()
+		{
+			if (failure() != null) {
+				return false;
+			}
+			stop();
+			return true;
+		}
+
+		/*
+		 * Reads don't respond to interrupts, hence the flag, checked by the
+		 * reader before each read.
+		 */
+		private void stop()
+		{
+			stopped = true;
+			reader.interrupt();
+			writer.interrupt();
+		}
+
+		private static void rethrow(Throwable t) throws IOException
+		{
+			if (t instanceof IOException) {
+				throw (IOException) t;
+			}
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			}
+			if (t instanceof Error) {
+				throw (Error) t;
+			}
+			throw new IOException(t);
+		}
+	}
+
+	/** A pipeline stage. */
+	@FunctionalInterface
+	private interface Stage
+	{
+		void run() throws Exception;
+	}
+
+	private NashCipherPipeline()
+	{
+		/* ... */
+	}
+}
@@ -0,0 +1,164 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.Objects;
+
+/**
+ * A {@link ScatteringByteChannel} decrypting the data of an inner encrypted
+ * channel. Encrypted bytes are read straight into the caller's buffers, then
+ * decrypted in place, so that no intermediate copy is made, whether the
+ * buffers are heap or direct ones. Scattering reads are forwarded as such to
+ * the inner channel if it is itself a {@link ScatteringByteChannel}. In
+ * non-blocking mode, reads simply return whatever the inner channel returns.
+ * Instances of this class are thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherReadableChannel implements ScatteringByteChannel
+{
+	private final NashCipher cipher;
+	private final ReadableByteChannel encrypted;
+	private final Object lock = new Object();
+	private int[] marks = new int[0];
+
+	/**
+	 * Creates a new {@code NashCipherReadableChannel}.
+	 *
+	 * @param key the cipher's secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted channel.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 */
+	public NashCipherReadableChannel(Key key, IV iv,
+		ReadableByteChannel encrypted)
+	{
+		this(CompiledKey.compile(key), iv, encrypted);
+	}
+
+	/**
+	 * Creates a new {@code NashCipherReadableChannel}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted channel.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 */
+	public NashCipherReadableChannel(CompiledKey key, IV iv,
+		ReadableByteChannel encrypted)
+	{
+		Objects.requireNonNull(encrypted);
+		this.cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		this.encrypted = encrypted;
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return encrypted.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		encrypted.close();
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException
+	{
+		synchronized (lock) {
+			int from = dst.position();
+			int n = encrypted.read(dst);
+			decrypt(dst, from);
+			return n;
+		}
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts) throws IOException
+	{
+		return read(dsts, 0, dsts.length);
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts, int offset, int length)
+		throws IOException
+	{
+		if (offset < 0 || length < 0 || offset > dsts.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		synchronized (lock) {
+			if (!(encrypted instanceof ScatteringByteChannel)) {
+				return readSequentially(dsts, offset, length);
+			}
+			if (marks.length < length) {
+				marks = new int[length];
+			}
+			for (int i = 0; i < length; i++) {
+				marks[i] = dsts[offset + i].position();
+			}
+			long n = ((ScatteringByteChannel) encrypted).read(dsts, offset,
+				length);
+			for (int i = 0; i < length; i++) {
+				decrypt(dsts[offset + i], marks[i]);
+			}
+			return n;
+		}
+	}
+
+	private long readSequentially(ByteBuffer[] dsts, int offset, int length)
+		throws IOException
+	{
+		long total = 0L;
+		for (int i = offset; i < offset + length; i++) {
+			ByteBuffer dst = dsts[i];
+			int expected = dst.remaining();
+			int n = read(dst);
+			if (n < 0) {
+				return total == 0L ? -1L : total;
+			}
+			total += n;
+			if (n < expected) {
+				break;
+			}
+		}
+		return total;
+	}
+
+	private void decrypt(ByteBuffer dst, int from)
+	{
+		int to = dst.position();
+		if (to > from) {
+			ByteBuffer b = dst.duplicate();
+			b.position(from);
+			b.limit(to);
+			cipher.process(b);
+		}
+	}
+}
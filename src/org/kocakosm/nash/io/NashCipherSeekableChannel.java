@@ -0,0 +1,212 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+import org.kocakosm.nash.Resynchronizer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A read-only {@link SeekableByteChannel} decrypting the data of an inner
+ * encrypted channel. Nash's decryption state only depends on the ciphertext,
+ * so, when the position is changed, the state is rebuilt by only decrypting
+ * the ciphertext window preceding the new position, not the whole data before
+ * it. The encrypted data are expected to start at the inner channel's
+ * position at the time this channel is created. Instances of this class are
+ * thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherSeekableChannel implements SeekableByteChannel
+{
+	private final NashCipher cipher;
+	private final Resynchronizer resynchronizer;
+	private final SeekableByteChannel encrypted;
+	private final long origin;
+	private final Object lock = new Object();
+	private long position;
+	private long cipherPosition;
+
+	/**
+	 * Creates a new {@code NashCipherSeekableChannel}.
+	 *
+	 * @param key the cipher's secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted channel.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have 
+	 *	different sizes.
+	 * @throws IOException if the inner channel's position can't be read.
+	 */
+	public NashCipherSeekableChannel(Key key, IV iv,
+		SeekableByteChannel encrypted) throws IOException
+	{
+		this(CompiledKey.compile(key), iv, encrypted);
+	}
+
+	/**
+	 * Creates a new {@code NashCipherSeekableChannel}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted channel.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have 
+	 *	different sizes.
+	 * @throws IOException if the inner channel's position can't be read.
+	 */
+	public NashCipherSeekableChannel(CompiledKey key, IV iv,
+		SeekableByteChannel encrypted) throws IOException
+	{
+		this.cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		this.resynchronizer = new Resynchronizer(key, iv);
+		this.encrypted = encrypted;
+		this.origin = encrypted.position();
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return encrypted.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		synchronized (lock) {
+			encrypted.close();
+		}
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException
+	{
+		synchronized (lock) {
+			if (position >= size()) {
+				return -1;
+			}
+			if (cipherPosition != position) {
+				long from = cipherPosition;
+				/* Forces a full resynchronization if the seek fails. */
+				cipherPosition = Long.MAX_VALUE;
+				resynchronizer.seek(cipher, from, position,
+					this::readCiphertext);
+				cipherPosition = position;
+			}
+			encrypted.position(origin + position);
+			ByteBuffer buf = dst.slice();
+			int n = encrypted.read(buf);
+			if (n > 0) {
+				buf.flip();
+				cipher.process(buf);
+				dst.position(dst.position() + n);
+				position += n;
+				cipherPosition = position;
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * Always throws a {@link NonWritableChannelException}, this channel
+	 * being read-only.
+	 *
+	 * @throws NonWritableChannelException always.
+	 */
+	@Override
+	public int write(ByteBuffer src)
+	{
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public long position() throws IOException
+	{
+		synchronized (lock) {
+			return position;
+		}
+	}
+
+	/**
+	 * Sets this channel's position. The decryption state is lazily
+	 * rebuilt on the next read.
+	 *
+	 * @param newPosition the new position, counted from the start of the
+	 *	encrypted data.
+	 *
+	 * @return this channel.
+	 *
+	 * @throws IllegalArgumentException if {@code newPosition} is negative.
+	 * @throws ClosedChannelException if this channel is
+	 *	closed.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Override
+	public NashCipherSeekableChannel position(long newPosition)
+		throws IOException
+	{
+		if (newPosition < 0) {
+			throw new IllegalArgumentException();
+		}
+		synchronized (lock) {
+			if (!encrypted.isOpen()) {
+				throw new ClosedChannelException();
+			}
+			position = newPosition;
+			return this;
+		}
+	}
+
+	@Override
+	public long size() throws IOException
+	{
+		synchronized (lock) {
+			return Math.max(0L, encrypted.size() - origin);
+		}
+	}
+
+	/**
+	 * Always throws a {@link NonWritableChannelException}, this channel
+	 * being read-only.
+	 *
+	 * @throws NonWritableChannelException always.
+	 */
+	@Override
+	public SeekableByteChannel truncate(long size)
+	{
+		throw new NonWritableChannelException();
+	}
+
+	private void readCiphertext(long pos, byte[] buf, int len)
+		throws IOException
+	{
+		ByteBuffer b = ByteBuffer.wrap(buf, 0, len);
+		encrypted.position(origin + pos);
+		while (b.hasRemaining()) {
+			if (encrypted.read(b) < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+}
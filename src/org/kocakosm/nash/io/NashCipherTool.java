@@ -0,0 +1,181 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Command-line tool generating keys and IVs, and encrypting or decrypting
+ * files or the standard streams through a {@link NashCipherPipeline}. Keys
+ * and IVs are stored in files, in the format of {@link Key#toBytes()} and
+ * {@link IV#toBytes()}.
+ *
+ * <pre>
+ * key &lt;size&gt; &lt;key-file&gt;
+ * iv &lt;size&gt; &lt;iv-file&gt;
+ * encrypt &lt;key-file&gt; &lt;iv-file&gt; [&lt;input&gt; [&lt;output&gt;]]
+ * decrypt &lt;key-file&gt; &lt;iv-file&gt; [&lt;input&gt; [&lt;output&gt;]]
+ * </pre>
+ *
+ * A missing input or output, or {@code -}, stands for the standard input or
+ * output.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherTool
+{
+	private static final String USAGE = String.join(System.lineSeparator(),
+		"Usage: key <size> <key-file>",
+		"       iv <size> <iv-file>",
+		"       encrypt <key-file> <iv-file> [<input> [<output>]]",
+		"       decrypt <key-file> <iv-file> [<input> [<output>]]",
+		"A missing input or output, or '-', stands for stdin or stdout.");
+
+	/**
+	 * Runs the tool and exits with status 0 on success, 1 on failure and 2
+	 * on invalid arguments.
+	 *
+	 * @param args the command-line arguments.
+	 */
+	public static void main(String... args)
+	{
+		InputStream in = new FileInputStream(FileDescriptor.in);
+		OutputStream out = new FileOutputStream(FileDescriptor.out);
+		System.exit(run(args, in, out, System.err));
+	}
+
+	/**
+	 * Runs the tool.
+	 *
+	 * @param args the command-line arguments.
+	 * @param stdin the standard input.
+	 * @param stdout the standard output.
+	 * @param stderr the standard error output.
+	 *
+	 * @return the exit status.
+	 */
+	static int run(String[] args, InputStream stdin, OutputStream stdout,
+		PrintStream stderr)
+	{
+		boolean newKey = args.length == 3 && args[0].equals("key");
+		boolean newIV = args.length == 3 && args[0].equals("iv");
+		int size = newKey || newIV ? parseSize(args[1]) : 0;
+		if (size < 0) {
+			stderr.println(USAGE);
+			return 2;
+		}
+		try {
+			if (newKey) {
+				Key key = Key.create(size);
+				Files.write(Paths.get(args[2]), key.toBytes());
+				return 0;
+			}
+			if (newIV) {
+				IV iv = IV.create(size);
+				Files.write(Paths.get(args[2]), iv.toBytes());
+				return 0;
+			}
+			boolean encrypt = args.length > 0 && args[0].equals("encrypt");
+			boolean decrypt = args.length > 0 && args[0].equals("decrypt");
+			if ((encrypt || decrypt) && args.length >= 3 && args.length <= 5) {
+				CompiledKey key = CompiledKey.compile(Key.fromBytes(
+					Files.readAllBytes(Paths.get(args[1]))));
+				IV iv = IV.fromBytes(Files.readAllBytes(Paths.get(args[2])));
+				String input = args.length > 3 ? args[3] : "-";
+				String output = args.length > 4 ? args[4] : "-";
+				try (InputStream in = open(input, stdin);
+					OutputStream out = create(output, stdout)) {
+					if (encrypt) {
+						NashCipherPipeline.encrypt(key, iv, in, out);
+					} else {
+						NashCipherPipeline.decrypt(key, iv, in, out);
+					}
+				}
+				return 0;
+			}
+		} catch (RuntimeException | IOException e) {
+			stderr.println("Error: " + e);
+			return 1;
+		}
+		stderr.println(USAGE);
+		return 2;
+	}
+
+	/* Returns -1 if the given size is not a positive integer. */
+	private static int parseSize(String size)
+	{
+		try {
+			int n = Integer.parseInt(size);
+			return n > 0 ? n : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static InputStream open(String file, InputStream stdin)
+		throws IOException
+	{
+		if (file.equals("-")) {
+			return new FilterInputStream(stdin)
+			{
+				@Override
+				public void close()
+				{
+					/* The standard input is left open. */
+				}
+			};
+		}
+		return Files.newInputStream(Paths.get(file));
+	}
+
+	private static OutputStream create(String file, OutputStream stdout)
+		throws IOException
+	{
+		if (file.equals("-")) {
+			return new FilterOutputStream(stdout)
+			{
+				@Override
+				public void write(byte[] b, int off, int len)
+					throws IOException
+				{
+					out.write(b, off, len);
+				}
+
+				@Override
+				public void close() throws IOException
+				{
+					flush();
+				}
+			};
+		}
+		return Files.newOutputStream(Paths.get(file));
+	}
+
+	private NashCipherTool()
+	{
+		/* ... */
+	}
+}
@@ -0,0 +1,262 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * A {@link GatheringByteChannel} encrypting data into an inner channel. The
+ * caller's buffers are left untouched: data are encrypted into an internal
+ * buffer, of the same kind (heap or direct) as the source buffer, which is
+ * then written to the inner channel. A gathering write thus results in as
+ * few writes to the inner channel as the internal buffer's size allows.
+ *
+ * <p>In non-blocking mode, the inner channel may accept only part of the
+ * encrypted data. Since the cipher's state has already moved past them, the
+ * remaining encrypted bytes are kept and written first on the next call to
+ * {@code write} or {@link #flush()}, and no new data is accepted until they
+ * have all been written. Instances of this class are thread-safe.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherWritableChannel implements GatheringByteChannel
+{
+	/** The default size of the internal buffer. */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final NashCipher cipher;
+	private final WritableByteChannel encrypted;
+	private final int bufferSize;
+	private final Object lock = new Object();
+	private ByteBuffer heap;
+	private ByteBuffer direct;
+	private ByteBuffer fill;
+	private ByteBuffer pending;
+
+	/**
+	 * Creates a new {@code NashCipherWritableChannel}.
+	 *
+	 * @param key the cipher's secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted channel.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 */
+	public NashCipherWritableChannel(Key key, IV iv,
+		WritableByteChannel encrypted)
+	{
+		this(CompiledKey.compile(key), iv, encrypted);
+	}
+
+	/**
+	 * Creates a new {@code NashCipherWritableChannel}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted channel.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes.
+	 */
+	public NashCipherWritableChannel(CompiledKey key, IV iv,
+		WritableByteChannel encrypted)
+	{
+		this(key, iv, encrypted, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new {@code NashCipherWritableChannel}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted channel.
+	 * @param bufferSize the size of the internal buffer.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes or if {@code bufferSize} is not positive.
+	 */
+	public NashCipherWritableChannel(CompiledKey key, IV iv,
+		WritableByteChannel encrypted, int bufferSize)
+	{
+		Objects.requireNonNull(encrypted);
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+		this.encrypted = encrypted;
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return encrypted.isOpen();
+	}
+
+	/**
+	 * Writes the pending encrypted bytes, if any, and closes the inner
+	 * channel. In non-blocking mode, the bytes that the inner channel
+	 * doesn't accept right away are lost.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		synchronized (lock) {
+			try (WritableByteChannel out = encrypted) {
+				if (out.isOpen()) {
+					flushBuffer();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the encrypted bytes that the inner channel has not accepted
+	 * yet. This is only ever needed in non-blocking mode.
+	 *
+	 * @return whether all the pending bytes have been written.
+	 *
+	 * @throws ClosedChannelException if this channel is closed.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public boolean flush() throws IOException
+	{
+		synchronized (lock) {
+			ensureOpen();
+			return flushBuffer();
+		}
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException
+	{
+		synchronized (lock) {
+			ensureOpen();
+			long n = encrypt(src, 0L);
+			if (n < 0) {
+				return (int) (-n - 1);
+			}
+			flushBuffer();
+			return (int) n;
+		}
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs) throws IOException
+	{
+		return write(srcs, 0, srcs.length);
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length)
+		throws IOException
+	{
+		if (offset < 0 || length < 0 || offset > srcs.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		synchronized (lock) {
+			ensureOpen();
+			long total = 0L;
+			for (int i = offset; i < offset + length; i++) {
+				long n = encrypt(srcs[i], total);
+				if (n < 0) {
+					return -n - 1;
+				}
+				total = n;
+			}
+			flushBuffer();
+			return total;
+		}
+	}
+
+	/*
+	 * Encrypts src into the internal buffer, writing it to the inner channel
+	 * each time it gets full. Returns the updated total count of accepted
+	 * bytes, or -total - 1 if the inner channel stopped accepting data.
+	 */
+	private long encrypt(ByteBuffer src, long total) throws IOException
+	{
+		while (src.hasRemaining()) {
+			boolean drain = fill != null && (!fill.hasRemaining()
+				|| fill.isDirect() != src.isDirect());
+			if ((drain || pending != null) && !flushBuffer()) {
+				return -total - 1;
+			}
+			if (fill == null) {
+				fill = buffer(src.isDirect());
+			}
+			int n = Math.min(src.remaining(), fill.remaining());
+			ByteBuffer chunk = src.duplicate();
+			chunk.limit(chunk.position() + n);
+			cipher.process(chunk, fill);
+			src.position(src.position() + n);
+			total += n;
+		}
+		return total;
+	}
+
+	private ByteBuffer buffer(boolean isDirect)
+	{
+		ByteBuffer b = isDirect ? direct : heap;
+		if (b == null) {
+			if (isDirect) {
+				b = direct = ByteBuffer.allocateDirect(bufferSize);
+			} else {
+				b = heap = ByteBuffer.allocate(bufferSize);
+			}
+		}
+		b.clear();
+		return b;
+	}
+
+	private boolean flushBuffer() throws IOException
+	{
+		if (fill != null) {
+			fill.flip();
+			pending = fill;
+			fill = null;
+		}
+		while (pending != null) {
+			int n = encrypted.write(pending);
+			if (!pending.hasRemaining()) {
+				pending = null;
+			} else if (n == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void ensureOpen() throws ClosedChannelException
+	{
+		if (!encrypted.isOpen()) {
+			throw new ClosedChannelException();
+		}
+	}
+}
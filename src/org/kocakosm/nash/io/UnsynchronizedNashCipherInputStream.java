@@ -0,0 +1,375 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Unsynchronized version of {@link NashCipherInputStream}, for streams that
+ * are only ever used by one thread at a time, which saves a monitor
+ * acquisition per call, notably on single-byte reads. Ciphertext is read
+ * ahead and decrypted in blocks into an internal buffer, reads at least as
+ * large as that buffer being decrypted in place, directly into the caller's
+ * array. Buffering may be disabled, every read then going straight to the
+ * inner stream. Instances of this class are not thread-safe: they must be
+ * confined to a single thread, or externally synchronized.
+ *
+ * @author Osman Koçak
+ */
+public final class UnsynchronizedNashCipherInputStream extends InputStream
+{
+	/** The default size of the internal buffer. */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final NashCipher cipher;
+	private final InputStream encrypted;
+	private final int horizon;
+	private final byte[] buf;
+	private int pos;
+	private int limit;
+	private boolean closed;
+
+	/**
+	 * Creates a new {@code UnsynchronizedNashCipherInputStream}.
+	 *
+	 * @param key the cipher's secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted stream.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have 
+	 *	different sizes.
+	 */
+	public UnsynchronizedNashCipherInputStream(Key key, IV iv,
+		InputStream encrypted)
+	{
+		this(CompiledKey.compile(key), iv, encrypted);
+	}
+
+	/**
+	 * Creates a new {@code UnsynchronizedNashCipherInputStream}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted stream.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have 
+	 *	different sizes.
+	 */
+	public UnsynchronizedNashCipherInputStream(CompiledKey key, IV iv,
+		InputStream encrypted)
+	{
+		this(key, iv, encrypted, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new {@code UnsynchronizedNashCipherInputStream}.
+	 *
+	 * @param key the cipher's compiled secret key.
+	 * @param iv the cipher's initialization vector.
+	 * @param encrypted the underlying encrypted stream.
+	 * @param bufferSize the size of the internal buffer, {@code 0} to
+	 *	disable buffering.
+	 *
+	 * @throws NullPointerException if one of the arguments is {@code null}.
+	 * @throws IllegalArgumentException if {@code key} and {@code iv} have
+	 *	different sizes or if {@code bufferSize} is negative.
+	 */
+	public UnsynchronizedNashCipherInputStream(CompiledKey key, IV iv,
+		InputStream encrypted, int bufferSize)
+	{
+		Objects.requireNonNull(encrypted);
+		if (bufferSize < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		this.encrypted = encrypted;
+		this.buf = new byte[bufferSize];
+		int h = key.getResynchronizationHorizon();
+		this.horizon = h < 0 ? -1 : (h + 7) >>> 3;
+	}
+
+	@Override
+	public int available() throws IOException
+	{
+		ensureOpen();
+		return (limit - pos) + encrypted.available();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		closed = true;
+		encrypted.close();
+	}
+
+	@Override
+	public void mark(int readLimit)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		ensureOpen();
+		if (pos == limit) {
+			if (buf.length == 0) {
+				int b = encrypted.read();
+				return b < 0 ? b : cipher.processByte((byte) b) & 0xFF;
+			}
+			if (!fill()) {
+				return -1;
+			}
+		}
+		return buf[pos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b) throws IOException
+	{
+		return read(b, 0, b.length);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		ensureOpen();
+		if (len == 0) {
+			return 0;
+		}
+		if (pos == limit) {
+			if (len >= buf.length) {
+				int n = encrypted.read(b, off, len);
+				if (n > 0) {
+					cipher.processInPlace(b, off, n);
+				}
+				return n;
+			}
+			if (!fill()) {
+				return -1;
+			}
+		}
+		int n = Math.min(len, limit - pos);
+		System.arraycopy(buf, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	/**
+	 * Reads all the remaining bytes from this stream.
+	 *
+	 * @return the remaining decrypted bytes.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public byte[] readAllBytes() throws IOException
+	{
+		return readNBytes(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Reads up to {@code len} bytes from this stream, blocking until they
+	 * have all been read or the end of the stream is reached.
+	 *
+	 * @param len the maximum number of bytes to read.
+	 *
+	 * @return the decrypted bytes.
+	 *
+	 * @throws IllegalArgumentException if {@code len} is negative.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public byte[] readNBytes(int len) throws IOException
+	{
+		if (len < 0) {
+			throw new IllegalArgumentException();
+		}
+		byte[] b = new byte[Math.min(len, DEFAULT_BUFFER_SIZE)];
+		int n = 0;
+		while (n < len) {
+			if (n == b.length) {
+				int size = (int) Math.min(len, Math.min(2L * b.length,
+					Integer.MAX_VALUE - 8));
+				if (size == n) {
+					throw new OutOfMemoryError("Required array too large");
+				}
+				b = Arrays.copyOf(b, size);
+			}
+			int l = read(b, n, b.length - n);
+			if (l < 0) {
+				break;
+			}
+			n += l;
+		}
+		return n == b.length ? b : Arrays.copyOf(b, n);
+	}
+
+	/**
+	 * Reads up to {@code len} bytes from this stream into the given array,
+	 * blocking until they have all been read or the end of the stream is
+	 * reached.
+	 *
+	 * @param b the array into which to read the data.
+	 * @param off the offset at which to store the data.
+	 * @param len the maximum number of bytes to read.
+	 *
+	 * @return the number of bytes actually read.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code off} or {@code len} are
+	 *	negative or if {@code off + len} is greater than {@code b}'s
+	 *	length.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public int readNBytes(byte[] b, int off, int len) throws IOException
+	{
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		int n = 0;
+		while (n < len) {
+			int l = read(b, off + n, len - n);
+			if (l < 0) {
+				break;
+			}
+			n += l;
+		}
+		return n;
+	}
+
+	/**
+	 * Decrypts all the remaining bytes from this stream and writes them to
+	 * the given stream, in blocks decrypted in place.
+	 *
+	 * @param out the stream to write to.
+	 *
+	 * @return the number of transferred bytes.
+	 *
+	 * @throws NullPointerException if {@code out} is {@code null}.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public long transferTo(OutputStream out) throws IOException
+	{
+		Objects.requireNonNull(out);
+		ensureOpen();
+		long n = limit - pos;
+		if (n > 0) {
+			out.write(buf, pos, limit - pos);
+			pos = limit;
+		}
+		byte[] b = buf.length > 0 ? buf : new byte[DEFAULT_BUFFER_SIZE];
+		pos = 0;
+		limit = 0;
+		for (int l = encrypted.read(b); l >= 0; l = encrypted.read(b)) {
+			cipher.processInPlace(b, 0, l);
+			out.write(b, 0, l);
+			n += l;
+		}
+		return n;
+	}
+
+	@Override
+	public void reset() throws IOException
+	{
+		throw new IOException("Not supported");
+	}
+
+	/**
+	 * Skips over and discards {@code n} bytes of decrypted data. As the
+	 * decryption state depends on all the ciphertext, skipped data are
+	 * decrypted, except when the key has a resynchronization horizon, in
+	 * which case only the ciphertext preceding the new position within that
+	 * horizon is decrypted. Use a {@link NashCipherSeekableChannel} for
+	 * efficient random access.
+	 *
+	 * @param n the number of bytes to skip.
+	 *
+	 * @return the number of bytes actually skipped.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Override
+	public long skip(long n) throws IOException
+	{
+		if (n <= 0) {
+			return 0L;
+		}
+		ensureOpen();
+		long skipped = Math.min(n, limit - pos);
+		pos += (int) skipped;
+		if (skipped == n) {
+			return skipped;
+		}
+		if (horizon >= 0) {
+			while (n - skipped > horizon) {
+				long s = encrypted.skip(n - skipped - horizon);
+				if (s <= 0) {
+					break;
+				}
+				skipped += s;
+			}
+		}
+		pos = 0;
+		limit = 0;
+		byte[] b = buf.length > 0 ? buf
+			: new byte[(int) Math.min(n - skipped, DEFAULT_BUFFER_SIZE)];
+		while (skipped < n) {
+			int len = (int) Math.min(b.length, n - skipped);
+			int l = encrypted.read(b, 0, len);
+			if (l < 0) {
+				break;
+			}
+			cipher.processInPlace(b, 0, l);
+			skipped += l;
+		}
+		return skipped;
+	}
+
+	private boolean fill() throws IOException
+	{
+		ensureOpen();
+		int n = encrypted.read(buf, 0, buf.length);
+		if (n <= 0) {
+			return false;
+		}
+		cipher.processInPlace(buf, 0, n);
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+	private void ensureOpen() throws IOException
+	{
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+}
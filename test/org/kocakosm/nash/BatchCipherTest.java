@@ -0,0 +1,173 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link BatchCipher}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class BatchCipherTest
+{
+	private static final int[] SIZES = {1, 2, 17, 64, 65, 300};
+
+	private final Random prng = new Random();
+
+	@Test
+	public void testEncryptionMatchesNashCipher()
+	{
+		for (int size : SIZES) {
+			assertMatchesNashCipher(size, Mode.ENCRYPTION);
+		}
+	}
+
+	@Test
+	public void testDecryptionMatchesNashCipher()
+	{
+		for (int size : SIZES) {
+			assertMatchesNashCipher(size, Mode.DECRYPTION);
+		}
+	}
+
+	@Test
+	public void testOpenClose()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(32));
+		BatchCipher batch = new BatchCipher(key, Mode.ENCRYPTION);
+		assertFalse(batch.isOpen(5));
+		batch.open(5, IV.create(32));
+		assertTrue(batch.isOpen(5));
+		assertFalse(batch.isOpen(4));
+		batch.close(5);
+		assertFalse(batch.isOpen(5));
+	}
+
+	@Test
+	public void testReopenResetsSession()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(32));
+		IV iv = IV.create(32);
+		byte[] data = randomBytes(100);
+		BatchCipher batch = new BatchCipher(key, Mode.ENCRYPTION);
+		batch.open(63, iv);
+		byte[][] out = new byte[64][];
+		byte[][] in = new byte[64][];
+		in[63] = data;
+		out[63] = new byte[100];
+		batch.process(in, out);
+		batch.open(63, iv);
+		out[63] = new byte[100];
+		batch.process(in, out);
+		NashCipher cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+		assertArrayEquals(cipher.process(data), out[63]);
+	}
+
+	@Test
+	public void testInPlace()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(32));
+		IV iv = IV.create(32);
+		byte[] data = randomBytes(100);
+		byte[] expected = new NashCipher(key, iv, Mode.DECRYPTION)
+			.process(data);
+		BatchCipher batch = new BatchCipher(key, Mode.DECRYPTION);
+		batch.open(0, iv);
+		byte[][] io = {data};
+		batch.process(io, io);
+		assertArrayEquals(expected, data);
+	}
+
+	@Test
+	public void testOpenWithInvalidLane()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(32));
+		BatchCipher batch = new BatchCipher(key, Mode.ENCRYPTION);
+		Executable toTest = () -> batch.open(64, IV.create(32));
+		assertThrows(IndexOutOfBoundsException.class, toTest);
+	}
+
+	@Test
+	public void testOpenWithIncompatibleIV()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(32));
+		BatchCipher batch = new BatchCipher(key, Mode.ENCRYPTION);
+		Executable toTest = () -> batch.open(0, IV.create(16));
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testProcessClosedLane()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(32));
+		BatchCipher batch = new BatchCipher(key, Mode.ENCRYPTION);
+		byte[][] in = {new byte[1]};
+		Executable toTest = () -> batch.process(in, new byte[][] {new byte[1]});
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testProcessWithShortOutput()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(32));
+		BatchCipher batch = new BatchCipher(key, Mode.ENCRYPTION);
+		batch.open(0, IV.create(32));
+		byte[][] in = {new byte[2]};
+		Executable toTest = () -> batch.process(in, new byte[][] {new byte[1]});
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	private void assertMatchesNashCipher(int size, Mode mode)
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(size));
+		BatchCipher batch = new BatchCipher(key, mode);
+		NashCipher[] ciphers = new NashCipher[BatchCipher.LANES];
+		for (int k = 0; k < ciphers.length; k++) {
+			if (prng.nextInt(4) != 0) {
+				IV iv = IV.create(size);
+				batch.open(k, iv);
+				ciphers[k] = new NashCipher(key, iv, mode);
+			}
+		}
+		for (int round = 0; round < 5; round++) {
+			byte[][] in = new byte[BatchCipher.LANES][];
+			byte[][] out = new byte[BatchCipher.LANES][];
+			for (int k = 0; k < ciphers.length; k++) {
+				if (ciphers[k] != null && prng.nextInt(5) != 0) {
+					in[k] = randomBytes(prng.nextInt(50));
+					out[k] = new byte[in[k].length];
+				}
+			}
+			batch.process(in, out);
+			for (int k = 0; k < ciphers.length; k++) {
+				if (in[k] != null) {
+					assertArrayEquals(ciphers[k].process(in[k]), out[k]);
+				}
+			}
+		}
+	}
+
+	private byte[] randomBytes(int n)
+	{
+		byte[] bytes = new byte[n];
+		prng.nextBytes(bytes);
+		return bytes;
+	}
+}
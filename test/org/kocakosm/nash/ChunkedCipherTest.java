@@ -0,0 +1,190 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link ChunkedCipher}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class ChunkedCipherTest
+{
+	private final ExecutorService executor = ForkJoinPool.commonPool();
+	private final CompiledKey key = CompiledKey.compile(Key.create(64));
+	private final IV iv = IV.create(64);
+	private final Random prng = new Random();
+
+	@Test
+	public void testConstructorWithInvalidChunkSize()
+	{
+		Executable toTest = () -> new ChunkedCipher(key, executor, 0);
+		assertThrows(IllegalArgumentException.class, toTest);
+		toTest = () -> new ChunkedCipher(key, executor,
+			ChunkedCipher.MAX_CHUNK_SIZE + 1);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testChunkIV()
+	{
+		Set<IV> ivs = new HashSet<>();
+		for (long k = 0; k < 1000; k++) {
+			IV chunkIV = ChunkedCipher.chunkIV(key, iv, k);
+			assertEquals(iv.getSize(), chunkIV.getSize());
+			assertEquals(chunkIV, ChunkedCipher.chunkIV(key, iv, k));
+			ivs.add(chunkIV);
+		}
+		assertEquals(1000, ivs.size());
+	}
+
+	@Test
+	public void testChunkIVWithNegativeIndex()
+	{
+		Executable toTest = () -> ChunkedCipher.chunkIV(key, iv, -1);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testChunkIVWithTooLargeIndex()
+	{
+		CompiledKey small = CompiledKey.compile(Key.create(8));
+		IV smallIV = IV.create(8);
+		Set<IV> ivs = new HashSet<>();
+		for (long k = 0; k < 256; k++) {
+			ivs.add(ChunkedCipher.chunkIV(small, smallIV, k));
+		}
+		assertEquals(256, ivs.size());
+		Executable toTest = () -> ChunkedCipher.chunkIV(small, smallIV, 256);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testMaxChunks()
+	{
+		assertEquals(2, ChunkedCipher.maxChunks(1));
+		assertEquals(16, ChunkedCipher.maxChunks(4));
+		assertEquals(1L << 62, ChunkedCipher.maxChunks(62));
+		assertEquals(Long.MAX_VALUE, ChunkedCipher.maxChunks(63));
+		assertEquals(Long.MAX_VALUE, ChunkedCipher.maxChunks(64));
+	}
+
+	@Test
+	public void testEncryptDecryptTooManyChunks()
+	{
+		CompiledKey small = CompiledKey.compile(Key.create(4));
+		IV smallIV = IV.create(4);
+		ChunkedCipher cipher = new ChunkedCipher(small, executor, 1);
+		byte[] framed = cipher.encrypt(smallIV, randomBytes(16));
+		assertEquals(16, cipher.decrypt(smallIV, framed).length);
+		Executable toTest = () -> cipher.encrypt(smallIV, randomBytes(17));
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testEncryptDecrypt()
+	{
+		for (int chunkSize : new int[] {1, 10, 1000, 1 << 20}) {
+			ChunkedCipher cipher = new ChunkedCipher(key, executor, chunkSize);
+			byte[] data = randomBytes(prng.nextInt(10000));
+			byte[] framed = cipher.encrypt(iv, data);
+			int chunks = (data.length + chunkSize - 1) / chunkSize;
+			assertEquals(data.length + 4 * (chunks + 1), framed.length);
+			assertArrayEquals(data, cipher.decrypt(iv, framed));
+		}
+	}
+
+	@Test
+	public void testEncryptEmpty()
+	{
+		ChunkedCipher cipher = new ChunkedCipher(key, executor);
+		byte[] framed = cipher.encrypt(iv, new byte[0]);
+		assertArrayEquals(new byte[4], framed);
+		assertArrayEquals(new byte[0], cipher.decrypt(iv, framed));
+	}
+
+	@Test
+	public void testChunksUseDerivedIVs()
+	{
+		ChunkedCipher cipher = new ChunkedCipher(key, executor, 100);
+		byte[] data = randomBytes(250);
+		byte[] framed = cipher.encrypt(iv, data);
+		for (int k = 0; k < 3; k++) {
+			IV chunkIV = ChunkedCipher.chunkIV(key, iv, k);
+			NashCipher c = new NashCipher(key, chunkIV, Mode.ENCRYPTION);
+			int len = Math.min(100, data.length - 100 * k);
+			byte[] expected = c.process(data, 100 * k, len);
+			int off = 104 * k + 4;
+			assertEquals(len, ChunkedCipher.readHeader(framed, off - 4));
+			assertArrayEquals(expected,
+				Arrays.copyOfRange(framed, off, off + len));
+		}
+	}
+
+	@Test
+	public void testDecryptTruncated()
+	{
+		ChunkedCipher cipher = new ChunkedCipher(key, executor, 100);
+		byte[] framed = cipher.encrypt(iv, randomBytes(250));
+		byte[] truncated = Arrays.copyOf(framed, framed.length - 4);
+		Executable toTest = () -> cipher.decrypt(iv, truncated);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testDecryptMalformed()
+	{
+		ChunkedCipher cipher = new ChunkedCipher(key, executor, 100);
+		byte[] framed = cipher.encrypt(iv, randomBytes(250));
+		ChunkedCipher.writeHeader(-1, framed, 0);
+		Executable toTest = () -> cipher.decrypt(iv, framed);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testDecryptTrailingData()
+	{
+		ChunkedCipher cipher = new ChunkedCipher(key, executor, 100);
+		byte[] framed = cipher.encrypt(iv, randomBytes(250));
+		byte[] padded = Arrays.copyOf(framed, framed.length + 1);
+		Executable toTest = () -> cipher.decrypt(iv, padded);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testEncryptWithIncompatibleIV()
+	{
+		ChunkedCipher cipher = new ChunkedCipher(key, executor);
+		Executable toTest = () -> cipher.encrypt(IV.create(32), new byte[1]);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	private byte[] randomBytes(int n)
+	{
+		byte[] bytes = new byte[n];
+		prng.nextBytes(bytes);
+		return bytes;
+	}
+}
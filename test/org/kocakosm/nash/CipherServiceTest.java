@@ -0,0 +1,299 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.CipherService.Session;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link CipherService}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class CipherServiceTest
+{
+	private final CompiledKey key = CompiledKey.compile(Key.create(64));
+	private final Random prng = new Random();
+
+	@Test
+	public void testCreateWithInvalidStripes()
+	{
+		Executable toTest = () -> new CipherService(0, 10);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testCreateWithInvalidCapacity()
+	{
+		Executable toTest = () -> new CipherService(2, 0);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testVirtualThreads()
+	{
+		if (CipherService.isVirtualThreadsAvailable()) {
+			try (CipherService service = CipherService.withVirtualThreads(2,
+				10)) {
+				assertEquals(2, service.getStripes());
+			}
+		} else {
+			Executable toTest = () -> CipherService.withVirtualThreads(2, 10);
+			assertThrows(UnsupportedOperationException.class, toTest);
+		}
+	}
+
+	@Test
+	public void testSessionsMatchNashCipher() throws Exception
+	{
+		int sessions = 50;
+		IV[] ivs = new IV[sessions];
+		ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[sessions];
+		byte[] data = randomBytes(1000);
+		try (CipherService service = new CipherService(3, 8)) {
+			List<Session> opened = new ArrayList<>();
+			for (int i = 0; i < sessions; i++) {
+				ivs[i] = IV.create(64);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				outputs[i] = out;
+				opened.add(service.open(key, ivs[i], Mode.ENCRYPTION,
+					out::write));
+			}
+			for (int off = 0; off < data.length; off += 100) {
+				for (Session session : opened) {
+					byte[] chunk = new byte[100];
+					System.arraycopy(data, off, chunk, 0, 100);
+					session.submit(chunk, 0, 100);
+				}
+			}
+			for (Session session : opened) {
+				session.close().get(10, TimeUnit.SECONDS);
+			}
+			assertEquals(0, service.getQueueDepth());
+		}
+		for (int i = 0; i < sessions; i++) {
+			NashCipher cipher = new NashCipher(key, ivs[i], Mode.ENCRYPTION);
+			assertArrayEquals(cipher.process(data), outputs[i].toByteArray());
+		}
+	}
+
+	@Test
+	public void testConcurrentSubmitters() throws Exception
+	{
+		IV iv = IV.create(64);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] data = randomBytes(4 * 500);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (CipherService service = new CipherService(2, 4)) {
+			Session session = service.open(key, iv, Mode.DECRYPTION,
+				out::write);
+			Object turn = new Object();
+			int[] next = new int[1];
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				int id = t;
+				futures.add(executor.submit(() -> {
+					for (int k = id; k < 500; k += 4) {
+						synchronized (turn) {
+							while (next[0] != k) {
+								turn.wait();
+							}
+							session.submit(data.clone(), 4 * k, 4);
+							next[0]++;
+							turn.notifyAll();
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			session.close().get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdown();
+		}
+		NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		assertArrayEquals(cipher.process(data), out.toByteArray());
+	}
+
+	@Test
+	public void testBackpressure() throws Exception
+	{
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		try (CipherService service = new CipherService(1, 2)) {
+			Session session = service.open(key, IV.create(64),
+				Mode.ENCRYPTION, (b, off, len) -> {
+					blocked.countDown();
+					await(release);
+				});
+			try {
+				assertTrue(session.offer(new byte[1], 0, 1));
+				assertTrue(blocked.await(10, TimeUnit.SECONDS));
+				assertTrue(session.offer(new byte[1], 0, 1));
+				assertFalse(session.offer(new byte[1], 0, 1));
+				assertEquals(2, session.getQueueDepth());
+				assertEquals(2, session.getCapacity());
+				assertEquals(1, service.getQueueDepth());
+			} finally {
+				release.countDown();
+			}
+			session.submit(new byte[1], 0, 1);
+			session.close().get(10, TimeUnit.SECONDS);
+			assertEquals(0, session.getQueueDepth());
+		}
+	}
+
+	@Test
+	public void testFailingSink() throws Exception
+	{
+		CountDownLatch release = new CountDownLatch(1);
+		try (CipherService service = new CipherService(1, 10)) {
+			Session session = service.open(key, IV.create(64),
+				Mode.ENCRYPTION, (b, off, len) -> {
+					await(release);
+					throw new IllegalArgumentException();
+				});
+			session.offer(new byte[10], 0, 10);
+			session.offer(new byte[10], 0, 10);
+			release.countDown();
+			ExecutionException e = assertThrows(ExecutionException.class,
+				() -> session.close().get(10, TimeUnit.SECONDS));
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+			assertSame(e.getCause(), session.getFailure());
+			assertEquals(0, session.getQueueDepth());
+			Executable toTest = () -> session.offer(new byte[1], 0, 1);
+			assertThrows(IllegalStateException.class, toTest);
+		}
+	}
+
+	@Test
+	public void testSubmitToClosedSession()
+	{
+		try (CipherService service = new CipherService(1, 10)) {
+			Session session = service.open(key, IV.create(64),
+				Mode.ENCRYPTION, (b, off, len) -> {});
+			assertSame(session.close(), session.close());
+			Executable toTest = () -> session.submit(new byte[1], 0, 1);
+			assertThrows(IllegalStateException.class, toTest);
+		}
+	}
+
+	@Test
+	public void testSubmitWithInvalidBounds()
+	{
+		try (CipherService service = new CipherService(1, 10)) {
+			Session session = service.open(key, IV.create(64),
+				Mode.ENCRYPTION, (b, off, len) -> {});
+			Executable toTest = () -> session.offer(new byte[10], 5, 6);
+			assertThrows(IndexOutOfBoundsException.class, toTest);
+		}
+	}
+
+	@Test
+	public void testCloseProcessesPendingChunks() throws Exception
+	{
+		IV iv = IV.create(64);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] data = randomBytes(1000);
+		CipherService service = new CipherService(2, 100);
+		Session session = service.open(key, iv, Mode.ENCRYPTION, out::write);
+		for (int off = 0; off < data.length; off += 10) {
+			session.submit(data.clone(), off, 10);
+		}
+		service.close();
+		Executable toTest = () -> service.open(key, iv, Mode.ENCRYPTION,
+			out::write);
+		assertThrows(IllegalStateException.class, toTest);
+		session.close().get(10, TimeUnit.SECONDS);
+		NashCipher cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+		assertArrayEquals(cipher.process(data), out.toByteArray());
+	}
+
+	@Test
+	public void testCloseSessionWhileServiceCloses() throws Exception
+	{
+		CountDownLatch release = new CountDownLatch(1);
+		IV iv = IV.create(64);
+		CipherService service = new CipherService(1, 10);
+		Session session = service.open(key, iv, Mode.ENCRYPTION,
+			(b, off, len) -> {
+				await(release);
+				throw new IllegalArgumentException();
+			});
+		session.offer(new byte[10], 0, 10);
+		Thread closer = new Thread(service::close);
+		closer.start();
+		while (true) {
+			try {
+				service.open(key, iv, Mode.ENCRYPTION, (b, off, len) -> {});
+			} catch (IllegalStateException e) {
+				break;
+			}
+			Thread.yield();
+		}
+		CompletableFuture<Void> done = session.close();
+		assertFalse(done.isDone());
+		release.countDown();
+		ExecutionException e = assertThrows(ExecutionException.class,
+			() -> done.get(10, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof IllegalArgumentException);
+		closer.join();
+		assertEquals(0, service.getQueueDepth());
+	}
+
+	@Test
+	public void testCloseSessionAfterServiceClosed() throws Exception
+	{
+		CipherService service = new CipherService(2, 10);
+		Session session = service.open(key, IV.create(64), Mode.ENCRYPTION,
+			(b, off, len) -> {});
+		session.offer(new byte[10], 0, 10);
+		service.close();
+		session.close().get(10, TimeUnit.SECONDS);
+		assertEquals(0, service.getQueueDepth());
+	}
+
+	private static void await(CountDownLatch latch)
+	{
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private byte[] randomBytes(int n)
+	{
+		byte[] bytes = new byte[n];
+		prng.nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,78 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link CompiledKey}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class CompiledKeyTest
+{
+	@Test
+	public void testCompile()
+	{
+		Key key = Key.create(100);
+		CompiledKey compiled = CompiledKey.compile(key);
+		assertSame(key, compiled.getKey());
+		assertEquals(100, compiled.getSize());
+	}
+
+	@Test
+	public void testCompileWithNullKey()
+	{
+		Executable toTest = () -> CompiledKey.compile(null);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
+	@Test
+	public void testFootprint()
+	{
+		/* Two int sources and two long complements per key bit. */
+		assertEquals(2 * (4 * 100 + 8 * 2),
+			CompiledKey.compile(Key.create(100)).footprint());
+		assertEquals(2 * (4 * 64 + 8),
+			CompiledKey.compile(Key.create(64)).footprint());
+		/* Plus two tables of 2^(size + width) ints. */
+		assertEquals(2 * (4 * 8 + 8) + (2 * 4 << 8 + 8),
+			CompiledKey.compile(Key.create(8)).footprint());
+		assertEquals(2 * (4 * 18 + 8) + (2 * 4 << 18 + 2),
+			CompiledKey.compile(Key.create(18)).footprint());
+		assertEquals(2 * (4 * 19 + 8),
+			CompiledKey.compile(Key.create(19)).footprint());
+	}
+
+	@Test
+	public void testSharedBetweenCiphers()
+	{
+		Key key = Key.create(64);
+		IV iv = IV.create(64);
+		CompiledKey compiled = CompiledKey.compile(key);
+		byte[] data = new byte[1024];
+		new Random().nextBytes(data);
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data);
+		NashCipher enc = new NashCipher(compiled, iv, Mode.ENCRYPTION);
+		NashCipher dec = new NashCipher(compiled, iv, Mode.DECRYPTION);
+		assertArrayEquals(expected, enc.process(data));
+		assertArrayEquals(data, dec.process(expected));
+	}
+}
@@ -0,0 +1,122 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link DependencyTracker}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class DependencyTrackerTest
+{
+	private final Random prng = new Random();
+
+	@Test
+	public void testHorizon()
+	{
+		for (int k = 0; k < 2000; k++) {
+			CompiledKey key = CompiledKey.compile(Key.create(2 + k % 14));
+			assertEquals(bruteForceHorizon(key),
+				key.getResynchronizationHorizon());
+		}
+	}
+
+	@Test
+	public void testHorizonResynchronizes()
+	{
+		int found = 0;
+		for (int k = 0; k < 5000 && found < 20; k++) {
+			CompiledKey key = CompiledKey.compile(Key.create(2 + k % 10));
+			int horizon = key.getResynchronizationHorizon();
+			if (horizon >= 0) {
+				byte[] ciphertext = new byte[(horizon + 7) / 8 + 32];
+				prng.nextBytes(ciphertext);
+				assertSameOutput(key, ciphertext, (horizon + 7) / 8);
+				found++;
+			}
+		}
+		assertTrue(found > 0);
+	}
+
+	@Test
+	public void testTrackerResynchronizes()
+	{
+		int synced = 0;
+		for (int k = 0; k < 50; k++) {
+			CompiledKey key = CompiledKey.compile(Key.create(64 + k));
+			byte[] ciphertext = new byte[key.getSize() + 32];
+			prng.nextBytes(ciphertext);
+			DependencyTracker tracker = new DependencyTracker(key);
+			for (int i = 0; i < key.getSize(); i++) {
+				if (tracker.update(ciphertext, i, 1)) {
+					assertTrue(tracker.isSynchronized());
+					assertSameOutput(key, ciphertext, i + 1);
+					synced++;
+					break;
+				}
+			}
+		}
+		assertTrue(synced > 0);
+	}
+
+	@Test
+	public void testNewTrackerIsNotSynchronized()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(32));
+		DependencyTracker tracker = new DependencyTracker(key);
+		assertFalse(tracker.isSynchronized());
+		assertFalse(tracker.update(new byte[0], 0, 0));
+	}
+
+	private void assertSameOutput(CompiledKey key, byte[] ciphertext, int warmup)
+	{
+		NashCipher c1 = new NashCipher(key, IV.create(key.getSize()),
+			Mode.DECRYPTION);
+		NashCipher c2 = new NashCipher(key, IV.create(key.getSize()),
+			Mode.DECRYPTION);
+		c1.process(ciphertext, 0, warmup);
+		c2.process(ciphertext, 0, warmup);
+		int len = ciphertext.length - warmup;
+		assertArrayEquals(c1.process(ciphertext, warmup, len),
+			c2.process(ciphertext, warmup, len));
+	}
+
+	private static int bruteForceHorizon(CompiledKey key)
+	{
+		int size = key.getSize();
+		boolean[] dependent = new boolean[size];
+		Arrays.fill(dependent, true);
+		for (int t = 0; t <= size; t++) {
+			boolean empty = true;
+			boolean[] next = new boolean[size];
+			for (int i = 1; i < size; i++) {
+				next[i] = dependent[key.redSources()[i]]
+					|| dependent[key.blueSources()[i]];
+				empty &= !dependent[i];
+			}
+			if (empty && !dependent[0]) {
+				return t;
+			}
+			dependent = next;
+		}
+		return -1;
+	}
+}
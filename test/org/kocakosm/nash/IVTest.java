@@ -13,6 +13,10 @@ package org.kocakosm.nash;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 
@@ -38,6 +42,22 @@ public final class IVTest
 		assertThrows(IllegalArgumentException.class, toTest);
 	}
 
+	@Test
+	public void testCreateWithRandom() throws Exception
+	{
+		IV iv = IV.create(100, seeded(42));
+		assertEquals(100, iv.getSize());
+		assertEquals(iv, IV.create(100, seeded(42)));
+		assertNotEquals(iv, IV.create(100, seeded(43)));
+	}
+
+	@Test
+	public void testCreateWithNullRandom()
+	{
+		Executable toTest = () -> IV.create(32, null);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
 	@Test
 	public void testEqualsAndHashCode()
 	{
@@ -57,4 +77,59 @@ public final class IVTest
 		assertNotSame(iv, decoded);
 		assertEquals(iv, decoded);
 	}
+
+	@Test
+	public void testBinaryEncodingRoundTrip()
+	{
+		for (int size : new int[] {1, 7, 8, 9, 64, 1000}) {
+			IV iv = IV.create(size);
+			byte[] bytes = iv.toBytes();
+			assertEquals(6 + (size + 7) / 8, bytes.length);
+			assertEquals(iv.getEncodedLength(), bytes.length);
+			assertEquals(iv, IV.fromBytes(bytes));
+		}
+	}
+
+	@Test
+	public void testReadAndWriteByteBuffer()
+	{
+		IV iv = IV.create(100);
+		ByteBuffer buffer = ByteBuffer.allocate(100);
+		iv.write(buffer);
+		iv.write(buffer);
+		buffer.flip();
+		assertEquals(iv, IV.read(buffer));
+		assertEquals(iv, IV.read(buffer));
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testReadInvalidEncodings()
+	{
+		byte[] bytes = IV.create(100).toBytes();
+		assertInvalid(Arrays.copyOf(bytes, 5));
+		assertInvalid(Arrays.copyOf(bytes, bytes.length - 1));
+		assertInvalid(Arrays.copyOf(bytes, bytes.length + 1));
+		assertInvalid(Key.create(100).toBytes());
+		byte[] size = bytes.clone();
+		size[5] = 0;
+		size[4] = 0;
+		assertInvalid(size);
+		byte[] padding = bytes.clone();
+		padding[padding.length - 1] ^= 0x80;
+		assertInvalid(padding);
+	}
+
+	private static void assertInvalid(byte[] bytes)
+	{
+		Executable toTest = () -> IV.fromBytes(bytes);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	private static SecureRandom seeded(long seed) throws Exception
+	{
+		SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+		random.setSeed(seed);
+		return random;
+	}
 }
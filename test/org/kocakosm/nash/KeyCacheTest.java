@@ -0,0 +1,187 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link KeyCache}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class KeyCacheTest
+{
+	@Test
+	public void testCreateWithInvalidCapacity()
+	{
+		Executable toTest = () -> new KeyCache(0);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testGetWithNullKey()
+	{
+		Executable toTest = () -> new KeyCache(100).get(null);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
+	@Test
+	public void testHitsAndMisses()
+	{
+		KeyCache cache = new KeyCache(10000);
+		Key key = Key.create(100);
+		CompiledKey compiled = cache.get(key);
+		assertEquals(key, compiled.getKey());
+		assertSame(compiled, cache.get(key));
+		assertSame(compiled, cache.get(Key.fromBytes(key.toBytes())));
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0, cache.getEvictions());
+		assertEquals(1, cache.size());
+		assertEquals(compiled.footprint(), cache.getWeight());
+		assertEquals(10000, cache.getCapacity());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction()
+	{
+		KeyCache cache = new KeyCache(3 * footprint(100));
+		Key k1 = Key.create(100);
+		Key k2 = Key.create(100);
+		Key k3 = Key.create(100);
+		CompiledKey c1 = cache.get(k1);
+		CompiledKey c2 = cache.get(k2);
+		cache.get(k3);
+		assertSame(c1, cache.get(k1));
+		cache.get(Key.create(150));
+		assertEquals(2, cache.getEvictions());
+		assertEquals(footprint(100) + footprint(150), cache.getWeight());
+		assertSame(c1, cache.get(k1));
+		assertNotSame(c2, cache.get(k2));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testKeyLargerThanCapacity()
+	{
+		KeyCache cache = new KeyCache(footprint(100));
+		Key key = Key.create(101);
+		assertNotSame(cache.get(key), cache.get(key));
+		assertEquals(0, cache.size());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testInvalidateAndClear()
+	{
+		KeyCache cache = new KeyCache(10000);
+		Key k1 = Key.create(100);
+		Key k2 = Key.create(200);
+		cache.get(k1);
+		cache.get(k2);
+		cache.invalidate(k1);
+		cache.invalidate(k1);
+		assertEquals(1, cache.size());
+		assertEquals(footprint(200), cache.getWeight());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	public void testSpecialize()
+	{
+		KeyCache cache = new KeyCache(1000, true);
+		assertTrue(cache.get(Key.create(64)).isSpecialized());
+		assertFalse(new KeyCache(1000).get(Key.create(64)).isSpecialized());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception
+	{
+		KeyCache cache = new KeyCache(20 * footprint(64));
+		List<Key> keys = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			keys.add(Key.create(64));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				int seed = t;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 1000; i++) {
+						Key key = keys.get((i * 7 + seed) % keys.size());
+						assertEquals(key, cache.get(key).getKey());
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(4000, cache.getHits() + cache.getMisses());
+		assertTrue(cache.getWeight() <= cache.getCapacity());
+		assertEquals(footprint(64) * cache.size(), cache.getWeight());
+	}
+
+	@Test
+	public void testTablesAreWeighed()
+	{
+		KeyCache cache = new KeyCache(1L << 20);
+		Key small = Key.create(8);
+		CompiledKey compiled = cache.get(small);
+		assertSame(compiled, cache.get(small));
+		assertEquals(compiled.footprint(), cache.getWeight());
+		assertTrue(cache.getWeight() > 1L << 19);
+		Key large = Key.create(16);
+		assertNotSame(cache.get(large), cache.get(large));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testEvictionReleasesTables() throws InterruptedException
+	{
+		Key key = Key.create(12);
+		KeyCache cache = new KeyCache(footprint(12));
+		int[] table = cache.get(key).table(Mode.ENCRYPTION);
+		WeakReference<int[]> ref = new WeakReference<>(table);
+		table = null;
+		cache.get(Key.create(12));
+		assertEquals(1, cache.getEvictions());
+		for (int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(ref.get());
+		assertNotNull(key);
+	}
+
+	private static long footprint(int size)
+	{
+		return CompiledKey.create(Key.create(size)).footprint();
+	}
+}
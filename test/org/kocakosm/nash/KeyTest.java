@@ -13,6 +13,12 @@ package org.kocakosm.nash;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 
@@ -41,6 +47,22 @@ public final class KeyTest
 		assertThrows(IllegalArgumentException.class, toTest);
 	}
 
+	@Test
+	public void testCreateWithRandom() throws Exception
+	{
+		Key k = Key.create(100, seeded(42));
+		assertEquals(100, k.getSize());
+		assertEquals(k, Key.create(100, seeded(42)));
+		assertNotEquals(k, Key.create(100, seeded(43)));
+	}
+
+	@Test
+	public void testCreateWithNullRandom()
+	{
+		Executable toTest = () -> Key.create(32, null);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
 	@Test
 	public void testEqualsAndHashCode()
 	{
@@ -52,6 +74,17 @@ public final class KeyTest
 		assertFalse(k.equals((Key) (null)));
 	}
 
+	@Test
+	public void testFingerprint()
+	{
+		Key k = Key.create(64);
+		Key copy = Key.fromBytes(k.toBytes());
+		assertEquals(k.getFingerprint(), k.getFingerprint());
+		assertEquals(k.getFingerprint(), copy.getFingerprint());
+		assertEquals(k.hashCode(), copy.hashCode());
+		assertNotEquals(k.getFingerprint(), Key.create(64).getFingerprint());
+	}
+
 	@Test
 	public void testSerializationDeserializationRoundTrip() throws Exception
 	{
@@ -60,4 +93,90 @@ public final class KeyTest
 		assertNotSame(k, decoded);
 		assertEquals(k, decoded);
 	}
+
+	@Test
+	public void testBinaryEncodingRoundTrip()
+	{
+		for (int size : new int[] {1, 2, 3, 8, 17, 64, 65, 1000, 4097}) {
+			Key k = Key.create(size);
+			byte[] bytes = k.toBytes();
+			assertEquals(k.getEncodedLength(), bytes.length);
+			assertEquals(k, Key.fromBytes(bytes));
+		}
+	}
+
+	@Test
+	public void testBinaryEncodingLength()
+	{
+		/* 6 bytes of header, 2 * 128 bits, 2 * 128 * 7 bits. */
+		assertEquals(6 + 32 + 224, Key.create(128).getEncodedLength());
+		assertEquals(6 + 2 + 0, Key.create(1).getEncodedLength());
+	}
+
+	@Test
+	public void testReadAndWriteByteBuffer()
+	{
+		Key k1 = Key.create(100);
+		Key k2 = Key.create(33);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1000)
+			.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(3);
+		k1.write(buffer);
+		k2.write(buffer);
+		assertEquals(3 + k1.getEncodedLength() + k2.getEncodedLength(),
+			buffer.position());
+		buffer.flip().position(3);
+		assertEquals(k1, Key.read(buffer));
+		assertEquals(k2, Key.read(buffer));
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testWriteWithoutRoom()
+	{
+		Key k = Key.create(100);
+		ByteBuffer buffer = ByteBuffer.allocate(k.getEncodedLength() - 1);
+		Executable toTest = () -> k.write(buffer);
+		assertThrows(BufferOverflowException.class, toTest);
+		assertEquals(0, buffer.position());
+	}
+
+	@Test
+	public void testReadInvalidEncodings()
+	{
+		byte[] bytes = Key.create(100).toBytes();
+		assertInvalid(new byte[0]);
+		assertInvalid(Arrays.copyOf(bytes, bytes.length - 1));
+		assertInvalid(Arrays.copyOf(bytes, bytes.length + 1));
+		assertInvalid(IV.create(100).toBytes());
+		byte[] version = bytes.clone();
+		version[0] = 2;
+		assertInvalid(version);
+		byte[] size = bytes.clone();
+		size[2] = (byte) 0x80;
+		assertInvalid(size);
+		byte[] permutations = bytes.clone();
+		permutations[permutations.length - 1] ^= 0x01;
+		assertInvalid(permutations);
+		byte[] padding = bytes.clone();
+		padding[padding.length - 1] ^= 0x10;
+		assertInvalid(padding);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, 50);
+		Executable toTest = () -> Key.read(buffer);
+		assertThrows(IllegalArgumentException.class, toTest);
+		assertEquals(0, buffer.position());
+	}
+
+	private static void assertInvalid(byte[] bytes)
+	{
+		Executable toTest = () -> Key.fromBytes(bytes);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	private static SecureRandom seeded(long seed) throws Exception
+	{
+		SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+		random.setSeed(seed);
+		return random;
+	}
 }
@@ -12,10 +12,15 @@
 package org.kocakosm.nash;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.kocakosm.nash.NashCipher.Mode;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
 import java.util.Random;
 
 import org.junit.jupiter.api.Test;
@@ -35,7 +40,16 @@ public final class NashCipherTest
 	@Test
 	public void testConstructorWithNullKey()
 	{
-		Executable toTest = () -> new NashCipher(null, iv, Mode.ENCRYPTION);
+		Key k = null;
+		Executable toTest = () -> new NashCipher(k, iv, Mode.ENCRYPTION);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
+	@Test
+	public void testConstructorWithNullCompiledKey()
+	{
+		CompiledKey k = null;
+		Executable toTest = () -> new NashCipher(k, iv, Mode.ENCRYPTION);
 		assertThrows(NullPointerException.class, toTest);
 	}
 
@@ -86,4 +100,234 @@ public final class NashCipherTest
 		prng.nextBytes(data);
 		assertArrayEquals(data, dec.process(enc.process(data)));
 	}
+
+	@Test
+	public void testProcessWithOffset()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		byte[] data = randomBytes(100);
+		byte[] expected = enc.process(Arrays.copyOfRange(data, 10, 60));
+		enc.reset(iv);
+		assertArrayEquals(expected, enc.process(data, 10, 50));
+	}
+
+	@Test
+	public void testProcessWithTooLargeLength()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		Executable toTest = () -> enc.process(new byte[10], 5, 6);
+		assertThrows(IndexOutOfBoundsException.class, toTest);
+	}
+
+	@Test
+	public void testProcessByte()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		byte[] data = randomBytes(32);
+		byte[] expected = enc.process(data);
+		enc.reset(iv);
+		byte[] actual = new byte[data.length];
+		for (int i = 0; i < data.length; i++) {
+			actual[i] = enc.processByte(data[i]);
+		}
+		assertArrayEquals(expected, actual);
+	}
+
+	@Test
+	public void testProcessToOutputArray()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		byte[] data = randomBytes(100);
+		byte[] expected = enc.process(data, 20, 70);
+		enc.reset(iv);
+		byte[] out = new byte[80];
+		assertEquals(70, enc.process(data, 20, 70, out, 5));
+		assertArrayEquals(expected, Arrays.copyOfRange(out, 5, 75));
+		assertArrayEquals(new byte[5], Arrays.copyOfRange(out, 0, 5));
+		assertArrayEquals(new byte[5], Arrays.copyOfRange(out, 75, 80));
+	}
+
+	@Test
+	public void testProcessToTooSmallOutputArray()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		byte[] data = randomBytes(10);
+		Executable toTest = () -> enc.process(data, 0, 10, new byte[12], 3);
+		assertThrows(IndexOutOfBoundsException.class, toTest);
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data);
+		assertArrayEquals(expected, enc.process(data));
+	}
+
+	@Test
+	public void testProcessToOverlappingOutputArray()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		byte[] data = randomBytes(100);
+		byte[] expected = enc.process(data, 0, 90);
+		enc.reset(iv);
+		enc.process(data, 0, 90, data, 10);
+		assertArrayEquals(expected, Arrays.copyOfRange(data, 10, 100));
+	}
+
+	@Test
+	public void testProcessInPlace()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		byte[] data = randomBytes(100);
+		byte[] expected = enc.process(data, 30, 40);
+		enc.reset(iv);
+		byte[] copy = data.clone();
+		enc.processInPlace(data, 30, 40);
+		assertArrayEquals(expected, Arrays.copyOfRange(data, 30, 70));
+		assertArrayEquals(Arrays.copyOf(copy, 30), Arrays.copyOf(data, 30));
+	}
+
+	@Test
+	public void testProcessHeapBuffers()
+	{
+		assertProcessBuffers(ByteBuffer.allocate(128),
+			ByteBuffer.allocate(128));
+	}
+
+	@Test
+	public void testProcessDirectBuffers()
+	{
+		assertProcessBuffers(ByteBuffer.allocateDirect(128),
+			ByteBuffer.allocateDirect(128));
+	}
+
+	@Test
+	public void testProcessMixedBuffers()
+	{
+		assertProcessBuffers(ByteBuffer.allocate(128).asReadOnlyBuffer(),
+			ByteBuffer.allocateDirect(128));
+	}
+
+	@Test
+	public void testProcessToTooSmallBuffer()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		ByteBuffer src = ByteBuffer.allocate(16);
+		ByteBuffer dst = ByteBuffer.allocate(15);
+		Executable toTest = () -> enc.process(src, dst);
+		assertThrows(BufferOverflowException.class, toTest);
+		assertEquals(0, src.position());
+		assertEquals(0, dst.position());
+	}
+
+	@Test
+	public void testProcessToReadOnlyBuffer()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		ByteBuffer src = ByteBuffer.allocate(16);
+		ByteBuffer dst = ByteBuffer.allocate(16).asReadOnlyBuffer();
+		Executable toTest = () -> enc.process(src, dst);
+		assertThrows(ReadOnlyBufferException.class, toTest);
+	}
+
+	@Test
+	public void testProcessBufferInPlace()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		byte[] data = randomBytes(64);
+		byte[] expected = enc.process(data, 8, 48);
+		for (ByteBuffer buffer : new ByteBuffer[] {
+			ByteBuffer.allocate(64), ByteBuffer.allocateDirect(64)}) {
+			enc.reset(iv);
+			buffer.put(data).position(8).limit(56);
+			assertEquals(48, enc.process(buffer));
+			assertEquals(56, buffer.position());
+			byte[] actual = new byte[48];
+			buffer.position(8);
+			buffer.get(actual);
+			assertArrayEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testSnapshotAndFork()
+	{
+		for (int size : new int[] {8, 64, 300}) {
+			CompiledKey k = CompiledKey.compile(Key.create(size));
+			IV v = IV.create(size);
+			for (CompiledKey c : new CompiledKey[] {k, k.specialize()}) {
+				for (Mode mode : Mode.values()) {
+					NashCipher cipher = new NashCipher(c, v, mode);
+					byte[] data = randomBytes(1000);
+					byte[] expected = cipher.process(data);
+					cipher.reset(v);
+					cipher.process(data, 0, 600);
+					NashCipher.Snapshot snapshot = cipher.snapshot();
+					byte[] suffix = Arrays.copyOfRange(expected, 600, 1000);
+					assertArrayEquals(suffix, snapshot.fork().process(data,
+						600, 400));
+					assertArrayEquals(suffix, cipher.process(data, 600, 400));
+					cipher.reset(snapshot);
+					assertArrayEquals(suffix, cipher.process(data, 600, 400));
+					assertEquals(mode, snapshot.getMode());
+					assertEquals(c, snapshot.getKey());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testResetWithSnapshotFromDifferentMode()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		NashCipher dec = new NashCipher(key, iv, Mode.DECRYPTION);
+		Executable toTest = () -> enc.reset(dec.snapshot());
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testResetWithSnapshotFromDifferentKey()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		NashCipher other = new NashCipher(Key.create(64), iv, Mode.ENCRYPTION);
+		Executable toTest = () -> enc.reset(other.snapshot());
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testResetWithSnapshotFromEqualKey()
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		NashCipher other = new NashCipher(Key.fromBytes(key.toBytes()), iv,
+			Mode.ENCRYPTION);
+		byte[] data = randomBytes(100);
+		other.process(data);
+		enc.reset(other.snapshot());
+		assertArrayEquals(other.process(data), enc.process(data));
+	}
+
+	private void assertProcessBuffers(ByteBuffer src, ByteBuffer dst)
+	{
+		NashCipher enc = new NashCipher(key, iv, Mode.ENCRYPTION);
+		byte[] data = randomBytes(100);
+		byte[] expected = enc.process(data, 0, 100);
+		enc.reset(iv);
+		ByteBuffer in = src.isReadOnly() ? ByteBuffer.allocate(128) : src;
+		in.position(7);
+		in.put(data);
+		in.position(7);
+		in.limit(107);
+		ByteBuffer input = src.isReadOnly() ? in.asReadOnlyBuffer() : in;
+		dst.position(3);
+		assertEquals(100, enc.process(input, dst));
+		assertEquals(107, input.position());
+		assertEquals(103, dst.position());
+		byte[] actual = new byte[100];
+		dst.position(3);
+		dst.get(actual);
+		assertArrayEquals(expected, actual);
+	}
+
+	private byte[] randomBytes(int n)
+	{
+		byte[] bytes = new byte[n];
+		prng.nextBytes(bytes);
+		return bytes;
+	}
 }
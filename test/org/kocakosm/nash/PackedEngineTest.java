@@ -0,0 +1,107 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link PackedEngine}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class PackedEngineTest
+{
+	private static final int[] SIZES = {1, 2, 7, 63, 64, 65, 128, 200};
+
+	private final Random prng = new Random();
+
+	@Test
+	public void testEncryptionMatchesReference()
+	{
+		for (int size : SIZES) {
+			assertMatchesReference(size, Mode.ENCRYPTION);
+		}
+	}
+
+	@Test
+	public void testDecryptionMatchesReference()
+	{
+		for (int size : SIZES) {
+			assertMatchesReference(size, Mode.DECRYPTION);
+		}
+	}
+
+	@Test
+	public void testReset()
+	{
+		Key key = Key.create(96);
+		IV iv = IV.create(96);
+		byte[] data = new byte[256];
+		prng.nextBytes(data);
+		PackedEngine engine = new PackedEngine(CompiledKey.compile(key), iv,
+			Mode.ENCRYPTION);
+		byte[] first = new byte[data.length];
+		engine.process(data, 0, data.length, first, 0);
+		engine.reset(iv);
+		byte[] second = new byte[data.length];
+		engine.process(data, 0, data.length, second, 0);
+		assertArrayEquals(first, second);
+	}
+
+	@Test
+	public void testLoadStore()
+	{
+		for (int size : SIZES) {
+			Key key = Key.create(size);
+			IV iv = IV.create(size);
+			CompiledKey compiled = CompiledKey.compile(key);
+			PackedEngine engine = new PackedEngine(compiled, iv,
+				Mode.DECRYPTION);
+			byte[] data = new byte[64];
+			prng.nextBytes(data);
+			engine.process(data, 0, data.length, data, 0);
+			int words = CompiledKey.words(size);
+			ByteBuffer buffer = ByteBuffer.allocate(8 + 8 * words);
+			engine.store(buffer, 8);
+			PackedEngine loaded = new PackedEngine(compiled,
+				IV.create(size), Mode.DECRYPTION);
+			loaded.load(buffer, 8);
+			assertArrayEquals(engine.state(), loaded.state());
+			byte[] expected = new byte[data.length];
+			engine.process(data, 0, data.length, expected, 0);
+			byte[] actual = new byte[data.length];
+			loaded.process(data, 0, data.length, actual, 0);
+			assertArrayEquals(expected, actual);
+		}
+	}
+
+	private void assertMatchesReference(int size, Mode mode)
+	{
+		Key key = Key.create(size);
+		IV iv = IV.create(size);
+		byte[] data = new byte[512];
+		prng.nextBytes(data);
+		byte[] expected = new ReferenceCipher(key, iv, mode).process(data);
+		CompiledKey compiled = CompiledKey.compile(key);
+		PackedEngine engine = new PackedEngine(compiled, iv, mode);
+		byte[] actual = new byte[data.length];
+		engine.process(data, 0, data.length, actual, 0);
+		assertArrayEquals(expected, actual);
+	}
+}
@@ -0,0 +1,206 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link ParallelDecryptor}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class ParallelDecryptorTest
+{
+	private static final int[] SIZES = {5, 17, 64, 128, 500};
+	private static final int[] CHUNK_SIZES = {1, 7, 100, 4096};
+
+	private final ForkJoinPool pool = ForkJoinPool.commonPool();
+	private final Random prng = new Random();
+
+	@Test
+	public void testConstructorWithInvalidChunkSize()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		Executable toTest = () -> new ParallelDecryptor(key, pool, 0);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testDecryptWithIncompatibleIV()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		ParallelDecryptor decryptor = new ParallelDecryptor(key, pool);
+		Executable toTest = () -> decryptor.decrypt(IV.create(32), new byte[8]);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testDecryptArray()
+	{
+		for (int size : SIZES) {
+			for (int chunkSize : CHUNK_SIZES) {
+				if (chunkSize < 8 && size > 64) {
+					/* Far too slow, each chunk re-reading a long prefix. */
+					continue;
+				}
+				CompiledKey key = CompiledKey.compile(Key.create(size));
+				IV iv = IV.create(size);
+				byte[] ciphertext = randomBytes(2000);
+				ParallelDecryptor decryptor = new ParallelDecryptor(key,
+					pool, chunkSize);
+				assertArrayEquals(decrypt(key, iv, ciphertext),
+					decryptor.decrypt(iv, ciphertext));
+			}
+		}
+	}
+
+	@Test
+	public void testDecryptKeyWithHorizon()
+	{
+		CompiledKey key = keyWithHorizon();
+		IV iv = IV.create(key.getSize());
+		byte[] ciphertext = randomBytes(5000);
+		ParallelDecryptor decryptor = new ParallelDecryptor(key, pool, 10);
+		assertArrayEquals(decrypt(key, iv, ciphertext),
+			decryptor.decrypt(iv, ciphertext));
+	}
+
+	@Test
+	public void testDecryptArrayRegion()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		IV iv = IV.create(64);
+		byte[] ciphertext = randomBytes(1000);
+		byte[] out = new byte[1010];
+		ParallelDecryptor decryptor = new ParallelDecryptor(key, pool, 64);
+		assertEquals(900, decryptor.decrypt(iv, ciphertext, 50, 900, out, 10));
+		byte[] expected = new byte[900];
+		new NashCipher(key, iv, Mode.DECRYPTION).process(ciphertext, 50, 900,
+			expected, 0);
+		byte[] actual = new byte[900];
+		System.arraycopy(out, 10, actual, 0, 900);
+		assertArrayEquals(expected, actual);
+	}
+
+	@Test
+	public void testDecryptInPlace()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(100));
+		IV iv = IV.create(100);
+		byte[] data = randomBytes(3000);
+		byte[] expected = decrypt(key, iv, data);
+		new ParallelDecryptor(key, pool, 256).decrypt(iv, data, 0,
+			data.length, data, 0);
+		assertArrayEquals(expected, data);
+	}
+
+	@Test
+	public void testDecryptArrayWithInvalidBounds()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		IV iv = IV.create(64);
+		ParallelDecryptor decryptor = new ParallelDecryptor(key, pool);
+		Executable toTest = () -> decryptor.decrypt(iv, new byte[10], 5, 6,
+			new byte[10], 0);
+		assertThrows(IndexOutOfBoundsException.class, toTest);
+	}
+
+	@Test
+	public void testDecryptBuffer()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(80));
+		IV iv = IV.create(80);
+		byte[] ciphertext = randomBytes(5000);
+		ByteBuffer src = ByteBuffer.allocateDirect(5000);
+		src.put(ciphertext).flip();
+		ByteBuffer dst = ByteBuffer.allocate(5010);
+		dst.position(10);
+		ParallelDecryptor decryptor = new ParallelDecryptor(key, pool, 333);
+		assertEquals(5000, decryptor.decrypt(iv, src, dst));
+		assertEquals(5000, src.position());
+		assertEquals(5010, dst.position());
+		byte[] actual = new byte[5000];
+		dst.position(10);
+		dst.get(actual);
+		assertArrayEquals(decrypt(key, iv, ciphertext), actual);
+	}
+
+	@Test
+	public void testDecryptBufferOverflow()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		IV iv = IV.create(64);
+		ParallelDecryptor decryptor = new ParallelDecryptor(key, pool);
+		Executable toTest = () -> decryptor.decrypt(iv,
+			ByteBuffer.allocate(10), ByteBuffer.allocate(9));
+		assertThrows(BufferOverflowException.class, toTest);
+	}
+
+	@Test
+	public void testDecryptFile() throws IOException
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(128));
+		IV iv = IV.create(128);
+		byte[] ciphertext = randomBytes(20000);
+		Path source = Files.createTempFile("nash", ".enc");
+		Path target = Files.createTempFile("nash", ".dec");
+		try {
+			Files.write(source, ciphertext);
+			Files.write(target, randomBytes(30000));
+			ParallelDecryptor decryptor = new ParallelDecryptor(key, pool,
+				1000);
+			assertEquals(20000, decryptor.decrypt(iv, source, target));
+			assertArrayEquals(decrypt(key, iv, ciphertext),
+				Files.readAllBytes(target));
+		} finally {
+			Files.delete(source);
+			Files.delete(target);
+		}
+	}
+
+	private CompiledKey keyWithHorizon()
+	{
+		while (true) {
+			CompiledKey key = CompiledKey.compile(Key.create(8));
+			if (key.getResynchronizationHorizon() >= 0) {
+				return key;
+			}
+		}
+	}
+
+	private byte[] decrypt(CompiledKey key, IV iv, byte[] ciphertext)
+	{
+		return new NashCipher(key, iv, Mode.DECRYPTION).process(ciphertext);
+	}
+
+	private byte[] randomBytes(int n)
+	{
+		byte[] bytes = new byte[n];
+		prng.nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,130 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link Pool}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class PoolTest
+{
+	@Test
+	public void testIVPool() throws Exception
+	{
+		try (Pool<IV> pool = Pool.ofIVs(64, 16)) {
+			assertEquals(16, pool.getCapacity());
+			awaitSize(pool, 16);
+			Set<IV> ivs = new HashSet<>();
+			for (int i = 0; i < 10; i++) {
+				IV iv = pool.take();
+				assertEquals(64, iv.getSize());
+				ivs.add(iv);
+			}
+			assertEquals(10, ivs.size());
+			assertEquals(10, pool.getHits());
+			assertEquals(0, pool.getMisses());
+			awaitSize(pool, 9);
+		}
+	}
+
+	@Test
+	public void testKeyPool() throws Exception
+	{
+		try (Pool<Key> pool = Pool.ofKeys(32, 4)) {
+			awaitSize(pool, 4);
+			assertEquals(32, pool.take().getSize());
+			assertEquals(1, pool.getHits());
+		}
+	}
+
+	@Test
+	public void testTakeFromClosedPool() throws Exception
+	{
+		Pool<IV> pool = Pool.ofIVs(16, 2);
+		awaitSize(pool, 2);
+		pool.close();
+		pool.close();
+		for (int i = 0; i < 5; i++) {
+			assertEquals(16, pool.take().getSize());
+		}
+		assertEquals(2, pool.getHits());
+		assertEquals(3, pool.getMisses());
+		assertEquals(0, pool.getSize());
+	}
+
+	@Test
+	public void testFillerFailure() throws Exception
+	{
+		AtomicInteger calls = new AtomicInteger();
+		SecureRandom random = new SecureRandom()
+		{
+			@Override
+			public void nextBytes(byte[] bytes)
+			{
+				if (calls.incrementAndGet() > 2) {
+					throw new ProviderException("Failed");
+				}
+				super.nextBytes(bytes);
+			}
+		};
+		try (Pool<IV> pool = Pool.ofIVs(16, 4, random)) {
+			long deadline = System.nanoTime() + 10_000_000_000L;
+			while (true) {
+				try {
+					assertEquals(16, pool.take().getSize());
+				} catch (ProviderException e) {
+					/* Synchronous generation, before the failure. */
+				} catch (IllegalStateException e) {
+					assertEquals("Failed", e.getCause().getMessage());
+					break;
+				}
+				assertTrue(System.nanoTime() < deadline);
+				Thread.sleep(1);
+			}
+			assertEquals(0, pool.getSize());
+			assertThrows(IllegalStateException.class, pool::take);
+		}
+	}
+
+	@Test
+	public void testCreateWithInvalidArguments()
+	{
+		Executable toTest = () -> Pool.ofIVs(0, 1);
+		assertThrows(IllegalArgumentException.class, toTest);
+		toTest = () -> Pool.ofKeys(8, 0);
+		assertThrows(IllegalArgumentException.class, toTest);
+		toTest = () -> Pool.ofIVs(8, 1, null);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
+	private static void awaitSize(Pool<?> pool, int size) throws Exception
+	{
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (pool.getSize() < size) {
+			assertTrue(System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+		assertTrue(pool.getSize() <= pool.getCapacity());
+	}
+}
@@ -0,0 +1,159 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.NashCipher.Mode;
+import org.kocakosm.nash.NashCipher.Snapshot;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link PrefixCache}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class PrefixCacheTest
+{
+	private final CompiledKey key = CompiledKey.compile(Key.create(64));
+	private final IV iv = IV.create(64);
+	private final Random prng = new Random();
+
+	@Test
+	public void testCreateWithInvalidCapacity()
+	{
+		Executable toTest = () -> new PrefixCache(0);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testGetWithNullPrefix()
+	{
+		PrefixCache cache = new PrefixCache(10);
+		Executable toTest = () -> cache.get(key, iv, Mode.ENCRYPTION, null);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
+	@Test
+	public void testForkWithTooSmallOutput()
+	{
+		PrefixCache cache = new PrefixCache(10);
+		byte[] prefix = new byte[10];
+		Executable toTest = () -> cache.fork(key, iv, Mode.ENCRYPTION,
+			prefix, new byte[12], 3);
+		assertThrows(IndexOutOfBoundsException.class, toTest);
+	}
+
+	@Test
+	public void testFork()
+	{
+		PrefixCache cache = new PrefixCache(10);
+		byte[] message = randomBytes(1000);
+		byte[] prefix = Arrays.copyOf(message, 300);
+		for (Mode mode : Mode.values()) {
+			byte[] expected = new NashCipher(key, iv, mode).process(message);
+			for (int i = 0; i < 2; i++) {
+				byte[] actual = new byte[1000];
+				NashCipher cipher = cache.fork(key, iv, mode, prefix, actual,
+					0);
+				cipher.process(message, 300, 700, actual, 300);
+				assertArrayEquals(expected, actual);
+			}
+		}
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testForksUseCallersKey()
+	{
+		PrefixCache cache = new PrefixCache(10);
+		byte[] message = randomBytes(100);
+		byte[] prefix = Arrays.copyOf(message, 40);
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(message);
+		CompiledKey specialized = key.specialize();
+		for (CompiledKey k : new CompiledKey[] {key, specialized, key}) {
+			byte[] actual = new byte[100];
+			NashCipher cipher = cache.fork(k, iv, Mode.ENCRYPTION, prefix,
+				actual, 0);
+			assertSame(k, cipher.snapshot().getKey());
+			assertSame(k, cache.get(k, iv, Mode.ENCRYPTION, prefix).getKey());
+			cipher.process(message, 40, 60, actual, 40);
+			assertArrayEquals(expected, actual);
+		}
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testHitsAndMisses()
+	{
+		PrefixCache cache = new PrefixCache(10);
+		byte[] prefix = randomBytes(100);
+		Snapshot s = cache.get(key, iv, Mode.ENCRYPTION, prefix);
+		assertSame(s, cache.get(key, iv, Mode.ENCRYPTION, prefix.clone()));
+		CompiledKey equal = CompiledKey.compile(key.getKey());
+		Snapshot t = cache.get(equal, IV.fromBytes(iv.toBytes()),
+			Mode.ENCRYPTION, prefix);
+		assertSame(s.getState(), t.getState());
+		assertSame(equal, t.getKey());
+		assertNotSame(s, cache.get(key, iv, Mode.DECRYPTION, prefix));
+		prefix[0]++;
+		assertNotSame(s, cache.get(key, iv, Mode.ENCRYPTION, prefix));
+		assertEquals(2, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		assertEquals(3, cache.size());
+		assertEquals(10, cache.getCapacity());
+	}
+
+	@Test
+	public void testCachedPrefixIsCopied()
+	{
+		PrefixCache cache = new PrefixCache(10);
+		byte[] prefix = randomBytes(100);
+		byte[] copy = prefix.clone();
+		Snapshot s = cache.get(key, iv, Mode.ENCRYPTION, prefix);
+		prefix[0]++;
+		assertSame(s, cache.get(key, iv, Mode.ENCRYPTION, copy));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction()
+	{
+		PrefixCache cache = new PrefixCache(2);
+		byte[] p1 = randomBytes(10);
+		byte[] p2 = randomBytes(10);
+		Snapshot s1 = cache.get(key, iv, Mode.ENCRYPTION, p1);
+		Snapshot s2 = cache.get(key, iv, Mode.ENCRYPTION, p2);
+		assertSame(s1, cache.get(key, iv, Mode.ENCRYPTION, p1));
+		cache.get(key, iv, Mode.ENCRYPTION, randomBytes(10));
+		assertEquals(1, cache.getEvictions());
+		assertSame(s1, cache.get(key, iv, Mode.ENCRYPTION, p1));
+		assertNotSame(s2, cache.get(key, iv, Mode.ENCRYPTION, p2));
+		assertEquals(2, cache.size());
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	private byte[] randomBytes(int n)
+	{
+		byte[] bytes = new byte[n];
+		prng.nextBytes(bytes);
+		return bytes;
+	}
+}
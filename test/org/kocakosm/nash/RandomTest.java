@@ -0,0 +1,96 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link Random}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class RandomTest
+{
+	@Test
+	public void testCreate()
+	{
+		assertNotNull(Random.create(null));
+		assertEquals("SHA1PRNG", Random.create("SHA1PRNG").getAlgorithm());
+		Executable toTest = () -> Random.create("Unknown");
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testGenerator()
+	{
+		assertSame(Random.generator(), Random.generator());
+	}
+
+	@Test
+	public void testNextBits()
+	{
+		assertEquals(0, Random.nextBits(Random.generator(), 0).length);
+		boolean[] bits = Random.nextBits(Random.generator(), 80001);
+		assertEquals(80001, bits.length);
+		int ones = 0;
+		for (boolean bit : bits) {
+			ones += bit ? 1 : 0;
+		}
+		assertTrue(Math.abs(ones - 40000) < 1000);
+	}
+
+	@Test
+	public void testShuffleKeepsValues()
+	{
+		int[] values = new int[10000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i % 100;
+		}
+		int[] shuffled = Random.shuffle(Random.generator(), values);
+		assertNotSame(values, shuffled);
+		assertFalse(Arrays.equals(values, shuffled));
+		Arrays.sort(shuffled);
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		assertArrayEquals(sorted, shuffled);
+	}
+
+	@Test
+	public void testShuffleIsUniform()
+	{
+		SecureRandom prng = Random.generator();
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 60000; i++) {
+			String p = Arrays.toString(Random.shuffle(prng, 0, 1, 2));
+			counts.merge(p, 1, Integer::sum);
+		}
+		assertEquals(6, counts.size());
+		for (int count : counts.values()) {
+			assertTrue(Math.abs(count - 10000) < 500);
+		}
+	}
+
+	@Test
+	public void testShuffleEdgeCases()
+	{
+		assertEquals(0, Random.shuffle(Random.generator()).length);
+		assertArrayEquals(new int[] {7}, Random.shuffle(Random.generator(), 7));
+	}
+}
@@ -0,0 +1,67 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+/**
+ * Straightforward, bit by bit, implementation of Nash's cipher, used as a
+ * reference by the engines' tests.
+ *
+ * @author Osman Koçak
+ */
+final class ReferenceCipher
+{
+	private final Key key;
+	private final Mode mode;
+	private final boolean[] state;
+
+	ReferenceCipher(Key key, IV iv, Mode mode)
+	{
+		this.key = key;
+		this.mode = mode;
+		this.state = iv.getBits();
+	}
+
+	byte[] process(byte... bytes)
+	{
+		byte[] processed = new byte[bytes.length];
+		for (int i = 0; i < bytes.length; i++) {
+			int val = 0;
+			for (int j = 0; j < 8; j++) {
+				boolean in = ((bytes[i] & 0xFF) & (1 << j)) > 0;
+				boolean out = in ^ state[state.length - 1];
+				val = (val >>> 1) | (out ? 0x80 : 0);
+				process(mode == Mode.DECRYPTION ? in : out);
+			}
+			processed[i] = (byte) val;
+		}
+		return processed;
+	}
+
+	private void process(boolean bit)
+	{
+		boolean[] bits;
+		int[] permutations;
+		if (bit) {
+			bits = key.getRedBits();
+			permutations = key.getRedPermutations();
+		} else {
+			bits = key.getBlueBits();
+			permutations = key.getBluePermutations();
+		}
+		for (int i = 1; i < state.length; i++) {
+			state[i] = state[permutations[i]] ^ bits[i];
+		}
+		state[0] = bit;
+	}
+}
@@ -0,0 +1,100 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.EOFException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link Resynchronizer}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class ResynchronizerTest
+{
+	private static final int[] SIZES = {3, 8, 64, 200};
+
+	private final Random prng = new Random();
+
+	@Test
+	public void testConstructorWithIncompatibleIV()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		Executable toTest = () -> new Resynchronizer(key, IV.create(32));
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testSeekWithNegativePosition()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		IV iv = IV.create(64);
+		NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		Resynchronizer r = new Resynchronizer(key, iv);
+		Executable toTest = () -> r.seek(cipher, 0, -1, (p, b, l) -> {});
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testSeekBeyondEnd()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		IV iv = IV.create(64);
+		byte[] ciphertext = new byte[100];
+		NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		Resynchronizer r = new Resynchronizer(key, iv);
+		Executable toTest = () -> r.seek(cipher, 0, 1000,
+			(p, b, l) -> read(ciphertext, p, b, l));
+		assertThrows(EOFException.class, toTest);
+	}
+
+	@Test
+	public void testSeek() throws Exception
+	{
+		for (int size : SIZES) {
+			CompiledKey key = CompiledKey.compile(Key.create(size));
+			IV iv = IV.create(size);
+			byte[] ciphertext = new byte[20000];
+			prng.nextBytes(ciphertext);
+			byte[] plaintext = new NashCipher(key, iv, Mode.DECRYPTION)
+				.process(ciphertext);
+			NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+			Resynchronizer r = new Resynchronizer(key, iv);
+			long pos = 0;
+			for (int k = 0; k < 50; k++) {
+				int to = prng.nextInt(ciphertext.length - 100);
+				r.seek(cipher, pos, to, (p, b, l) -> read(ciphertext, p, b, l));
+				byte[] expected = new byte[100];
+				System.arraycopy(plaintext, to, expected, 0, 100);
+				assertArrayEquals(expected, cipher.process(ciphertext, to, 100));
+				pos = to + 100;
+			}
+		}
+	}
+
+	private static void read(byte[] data, long pos, byte[] buf, int len)
+		throws EOFException
+	{
+		if (pos + len > data.length) {
+			throw new EOFException();
+		}
+		System.arraycopy(data, (int) pos, buf, 0, len);
+	}
+}
@@ -0,0 +1,292 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link SessionStore}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class SessionStoreTest
+{
+	private static final int[] SIZES = {8, 64, 65, 300};
+
+	private final Random prng = new Random();
+
+	@Test
+	public void testCreateWithTooSmallSlabs()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(65));
+		Executable toTest = () -> new SessionStore(key, Mode.ENCRYPTION,
+			15, 1);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testCreateWithInvalidStripes()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		Executable toTest = () -> new SessionStore(key, Mode.ENCRYPTION,
+			1024, 0);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testOpenWithWrongIVSize()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		SessionStore store = new SessionStore(key, Mode.ENCRYPTION);
+		Executable toTest = () -> store.open(IV.create(65));
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testProcessMatchesNashCipher()
+	{
+		for (int size : SIZES) {
+			CompiledKey key = CompiledKey.compile(Key.create(size));
+			for (CompiledKey k : new CompiledKey[] {key, key.specialize()}) {
+				for (Mode mode : Mode.values()) {
+					assertMatchesNashCipher(k, mode);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testProcessBuffers()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(100));
+		IV iv = IV.create(100);
+		SessionStore store = new SessionStore(key, Mode.ENCRYPTION);
+		long id = store.open(iv);
+		byte[] data = randomBytes(300);
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data);
+		ByteBuffer src = ByteBuffer.wrap(data);
+		ByteBuffer dst = ByteBuffer.allocateDirect(300);
+		src.limit(120);
+		assertEquals(120, store.process(id, src, dst));
+		src.limit(300);
+		assertEquals(180, store.process(id, src, dst));
+		byte[] actual = new byte[300];
+		dst.flip();
+		dst.get(actual);
+		assertArrayEquals(expected, actual);
+	}
+
+	@Test
+	public void testSuspendResume()
+	{
+		for (int size : SIZES) {
+			CompiledKey key = CompiledKey.compile(Key.create(size));
+			IV iv = IV.create(size);
+			SessionStore store = new SessionStore(key, Mode.DECRYPTION);
+			NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+			byte[] data = randomBytes(200);
+			byte[] expected = cipher.process(data);
+			cipher.reset(iv);
+			byte[] actual = new byte[200];
+			cipher.process(data, 0, 50, actual, 0);
+			long id = store.suspend(cipher);
+			store.process(id, data, 50, 100, actual, 50);
+			NashCipher resumed = store.resume(id);
+			assertFalse(store.isOpen(id));
+			resumed.process(data, 150, 50, actual, 150);
+			assertArrayEquals(expected, actual);
+			assertEquals(0, store.size());
+		}
+	}
+
+	@Test
+	public void testSuspendWithIncompatibleCipher()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		IV iv = IV.create(64);
+		SessionStore store = new SessionStore(key, Mode.ENCRYPTION);
+		NashCipher dec = new NashCipher(key, iv, Mode.DECRYPTION);
+		NashCipher other = new NashCipher(Key.create(64), iv,
+			Mode.ENCRYPTION);
+		assertThrows(IllegalArgumentException.class, () -> store.suspend(dec));
+		assertThrows(IllegalArgumentException.class,
+			() -> store.suspend(other));
+		NashCipher equal = new NashCipher(Key.fromBytes(
+			key.getKey().toBytes()), iv, Mode.ENCRYPTION);
+		assertTrue(store.isOpen(store.suspend(equal)));
+	}
+
+	@Test
+	public void testClosedSessions()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		SessionStore store = new SessionStore(key, Mode.ENCRYPTION);
+		long id = store.open(IV.create(64));
+		store.close(id);
+		byte[] data = new byte[10];
+		assertThrows(IllegalArgumentException.class,
+			() -> store.process(id, data, 0, 10, data, 0));
+		assertThrows(IllegalArgumentException.class, () -> store.close(id));
+		assertThrows(IllegalArgumentException.class, () -> store.resume(id));
+		assertThrows(IllegalArgumentException.class, () -> store.close(-1));
+		assertThrows(IllegalArgumentException.class,
+			() -> store.resume(Integer.MAX_VALUE));
+		assertFalse(store.isOpen(-1));
+		assertFalse(store.isOpen(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testStaleIdsAreRejected()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(64));
+		IV iv = IV.create(64);
+		SessionStore store = new SessionStore(key, Mode.ENCRYPTION);
+		long stale = store.open(IV.create(64));
+		store.close(stale);
+		long id = store.open(iv);
+		assertEquals((int) stale, (int) id);
+		assertNotEquals(stale, id);
+		assertFalse(store.isOpen(stale));
+		assertTrue(store.isOpen(id));
+		byte[] data = randomBytes(10);
+		assertThrows(IllegalArgumentException.class,
+			() -> store.process(stale, data, 0, 10, new byte[10], 0));
+		assertThrows(IllegalArgumentException.class,
+			() -> store.process(stale, ByteBuffer.wrap(data),
+			ByteBuffer.allocate(10)));
+		assertThrows(IllegalArgumentException.class,
+			() -> store.close(stale));
+		assertThrows(IllegalArgumentException.class,
+			() -> store.resume(stale));
+		byte[] actual = new byte[10];
+		store.process(id, data, 0, 10, actual, 0);
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data);
+		assertArrayEquals(expected, actual);
+		assertEquals(1, store.size());
+	}
+
+	@Test
+	public void testSlotsAreReused()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(100));
+		SessionStore store = new SessionStore(key, Mode.ENCRYPTION, 16 * 5,
+			3);
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 15; i++) {
+			ids.add(store.open(IV.create(100)));
+		}
+		assertEquals(15, store.size());
+		assertEquals(3 * 16 * 5, store.getAllocatedBytes());
+		store.close(ids.get(3));
+		store.resume(ids.get(7));
+		assertEquals(13, store.size());
+		int a = (int) store.open(IV.create(100));
+		int b = (int) store.open(IV.create(100));
+		int c = (int) (long) ids.get(3);
+		int d = (int) (long) ids.get(7);
+		assertTrue(a == c && b == d || a == d && b == c);
+		assertEquals(3 * 16 * 5, store.getAllocatedBytes());
+		store.open(IV.create(100));
+		assertEquals(4 * 16 * 5, store.getAllocatedBytes());
+	}
+
+	@Test
+	public void testConcurrentSessions() throws Exception
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(80));
+		SessionStore store = new SessionStore(key, Mode.ENCRYPTION, 1024, 4);
+		int sessions = 500;
+		IV[] ivs = new IV[sessions];
+		long[] ids = new long[sessions];
+		for (int i = 0; i < sessions; i++) {
+			ivs[i] = IV.create(80);
+			ids[i] = store.open(ivs[i]);
+		}
+		byte[] data = randomBytes(40);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				int first = t * sessions / 4;
+				int last = (t + 1) * sessions / 4;
+				futures.add(executor.submit(() -> {
+					for (int round = 0; round < 4; round++) {
+						for (int i = first; i < last; i++) {
+							store.process(ids[i], data, round * 10, 10,
+								new byte[10], 0);
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		byte[] next = randomBytes(16);
+		for (int i = 0; i < sessions; i++) {
+			NashCipher cipher = new NashCipher(key, ivs[i], Mode.ENCRYPTION);
+			cipher.process(data);
+			byte[] actual = new byte[16];
+			store.process(ids[i], next, 0, 16, actual, 0);
+			assertArrayEquals(cipher.process(next), actual);
+		}
+	}
+
+	private void assertMatchesNashCipher(CompiledKey key, Mode mode)
+	{
+		int size = key.getSize();
+		SessionStore store = new SessionStore(key, mode, 64, 2);
+		IV[] ivs = new IV[20];
+		long[] ids = new long[ivs.length];
+		byte[][] expected = new byte[ivs.length][];
+		byte[][] actual = new byte[ivs.length][];
+		byte[] data = randomBytes(256);
+		for (int i = 0; i < ivs.length; i++) {
+			ivs[i] = IV.create(size);
+			ids[i] = store.open(ivs[i]);
+			expected[i] = new NashCipher(key, ivs[i], mode).process(data);
+			actual[i] = new byte[data.length];
+		}
+		for (int off = 0; off < data.length; off += 32) {
+			for (int i = 0; i < ivs.length; i++) {
+				store.process(ids[i], data, off, 32, actual[i], off);
+			}
+		}
+		for (int i = 0; i < ivs.length; i++) {
+			assertArrayEquals(expected[i], actual[i]);
+		}
+	}
+
+	private byte[] randomBytes(int n)
+	{
+		byte[] bytes = new byte[n];
+		prng.nextBytes(bytes);
+		return bytes;
+	}
+}
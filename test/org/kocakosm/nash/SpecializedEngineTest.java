@@ -0,0 +1,90 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link SpecializedEngine}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class SpecializedEngineTest
+{
+	private static final int[] SIZES = {19, 63, 64, 65, 130, 300};
+
+	private final Random prng = new Random();
+
+	@Test
+	public void testEncryptionMatchesReference()
+	{
+		for (int size : SIZES) {
+			assertMatchesReference(size, Mode.ENCRYPTION);
+		}
+	}
+
+	@Test
+	public void testDecryptionMatchesReference()
+	{
+		for (int size : SIZES) {
+			assertMatchesReference(size, Mode.DECRYPTION);
+		}
+	}
+
+	@Test
+	public void testSpecialize()
+	{
+		CompiledKey compiled = CompiledKey.compile(Key.create(128));
+		assertFalse(compiled.isSpecialized());
+		CompiledKey specialized = compiled.specialize();
+		assertTrue(specialized.isSpecialized());
+		assertSame(compiled.getKey(), specialized.getKey());
+		assertSame(specialized, specialized.specialize());
+	}
+
+	@Test
+	public void testSpecializeLargeKey()
+	{
+		CompiledKey compiled = CompiledKey.compile(Key.create(4096));
+		assertSame(compiled, compiled.specialize());
+		assertFalse(compiled.isSpecialized());
+	}
+
+	@Test
+	public void testEngineSelection()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(100)).specialize();
+		IV iv = IV.create(100);
+		assertTrue(Engine.create(key, iv, Mode.DECRYPTION)
+			instanceof SpecializedEngine);
+	}
+
+	private void assertMatchesReference(int size, Mode mode)
+	{
+		Key key = Key.create(size);
+		IV iv = IV.create(size);
+		byte[] data = new byte[512];
+		prng.nextBytes(data);
+		byte[] expected = new ReferenceCipher(key, iv, mode).process(data);
+		CompiledKey compiled = CompiledKey.compile(key).specialize();
+		Engine engine = new SpecializedEngine(compiled, iv, mode);
+		byte[] actual = new byte[data.length];
+		engine.process(data, 0, data.length, actual, 0);
+		assertArrayEquals(expected, actual);
+	}
+}
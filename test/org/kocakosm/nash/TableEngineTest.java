@@ -0,0 +1,158 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link TableEngine}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class TableEngineTest
+{
+	private static final int[] SIZES = {1, 2, 3, 8, 12, 13, 16, 17, 18};
+
+	private final Random prng = new Random();
+
+	@Test
+	public void testWidth()
+	{
+		assertEquals(8, TableEngine.width(1));
+		assertEquals(8, TableEngine.width(12));
+		assertEquals(4, TableEngine.width(13));
+		assertEquals(4, TableEngine.width(16));
+		assertEquals(2, TableEngine.width(18));
+	}
+
+	@Test
+	public void testEncryptionMatchesReference()
+	{
+		for (int size : SIZES) {
+			assertMatchesReference(size, Mode.ENCRYPTION);
+		}
+	}
+
+	@Test
+	public void testDecryptionMatchesReference()
+	{
+		for (int size : SIZES) {
+			assertMatchesReference(size, Mode.DECRYPTION);
+		}
+	}
+
+	@Test
+	public void testSingleByteProcessing()
+	{
+		for (int size : new int[] {5, 14}) {
+			Key key = Key.create(size);
+			IV iv = IV.create(size);
+			byte[] data = new byte[256];
+			prng.nextBytes(data);
+			byte[] expected = new ReferenceCipher(key, iv, Mode.ENCRYPTION)
+				.process(data);
+			CompiledKey compiled = CompiledKey.compile(key);
+			Engine engine = new TableEngine(compiled, iv, Mode.ENCRYPTION);
+			byte[] actual = new byte[data.length];
+			for (int i = 0; i < data.length; i++) {
+				actual[i] = (byte) engine.process(data[i]);
+			}
+			assertArrayEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testLoadStore()
+	{
+		for (int size : SIZES) {
+			CompiledKey key = CompiledKey.compile(Key.create(size));
+			IV iv = IV.create(size);
+			TableEngine engine = new TableEngine(key, iv, Mode.ENCRYPTION);
+			byte[] data = new byte[64];
+			prng.nextBytes(data);
+			engine.process(data, 0, data.length, data, 0);
+			ByteBuffer buffer = ByteBuffer.allocate(8);
+			engine.store(buffer, 0);
+			PackedEngine packed = new PackedEngine(key, iv, Mode.ENCRYPTION);
+			packed.load(buffer, 0);
+			assertArrayEquals(engine.state(), packed.state());
+			packed.store(buffer, 0);
+			TableEngine loaded = new TableEngine(key, IV.create(size),
+				Mode.ENCRYPTION);
+			loaded.load(buffer, 0);
+			assertArrayEquals(engine.state(), loaded.state());
+		}
+	}
+
+	@Test
+	public void testTablesAreSharedPerMode()
+	{
+		CompiledKey key = CompiledKey.compile(Key.create(10));
+		int[] table = key.table(Mode.ENCRYPTION);
+		assertSame(table, key.table(Mode.ENCRYPTION));
+		assertTrue(table != key.table(Mode.DECRYPTION));
+	}
+
+	@Test
+	public void testTablesAreSharedPerKey()
+	{
+		Key key = Key.create(12);
+		CompiledKey compiled = CompiledKey.compile(key);
+		int[] table = compiled.table(Mode.DECRYPTION);
+		assertSame(table, CompiledKey.compile(key).table(Mode.DECRYPTION));
+		assertSame(table, compiled.specialize().table(Mode.DECRYPTION));
+		Key copy = Key.fromBytes(key.toBytes());
+		CompiledKey other = CompiledKey.compile(copy);
+		assertSame(copy, other.getKey());
+		assertSame(table, other.table(Mode.DECRYPTION));
+		assertTrue(table != CompiledKey.create(key).table(Mode.DECRYPTION));
+	}
+
+	@Test
+	public void testEngineSelection()
+	{
+		int max = TableEngine.MAX_KEY_SIZE;
+		CompiledKey small = CompiledKey.compile(Key.create(max));
+		CompiledKey large = CompiledKey.compile(Key.create(max + 1));
+		IV smallIV = IV.create(max);
+		IV largeIV = IV.create(max + 1);
+		assertTrue(Engine.create(small, smallIV, Mode.ENCRYPTION)
+			instanceof TableEngine);
+		assertFalse(Engine.create(large, largeIV, Mode.ENCRYPTION)
+			instanceof TableEngine);
+	}
+
+	private void assertMatchesReference(int size, Mode mode)
+	{
+		Key key = Key.create(size);
+		IV iv = IV.create(size);
+		byte[] data = new byte[512];
+		prng.nextBytes(data);
+		byte[] expected = new ReferenceCipher(key, iv, mode).process(data);
+		CompiledKey compiled = CompiledKey.compile(key);
+		Engine engine = new TableEngine(compiled, iv, mode);
+		byte[] actual = new byte[data.length];
+		engine.process(data, 0, data.length, actual, 0);
+		assertArrayEquals(expected, actual);
+	}
+}
@@ -0,0 +1,128 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link VectorSupport}'s unit tests. The Vector API engine is only tested
+ * when it is available, that is, on Java 17 or later with the
+ * {@code jdk.incubator.vector} module.
+ *
+ * @author Osman Koçak
+ */
+public final class VectorSupportTest
+{
+	private static final int[] SIZES = {19, 63, 64, 65, 130, 1000};
+
+	private final Random prng = new Random();
+
+	@Test
+	public void testUnavailable()
+	{
+		if (!VectorSupport.isAvailable()) {
+			CompiledKey key = CompiledKey.compile(Key.create(64));
+			IV iv = IV.create(64);
+			assertNull(VectorSupport.create(key, iv, Mode.ENCRYPTION));
+		}
+	}
+
+	@Test
+	public void testEngineSelection()
+	{
+		if (VectorSupport.isAvailable()) {
+			int size = VectorSupport.MIN_KEY_SIZE;
+			CompiledKey key = CompiledKey.compile(Key.create(size));
+			IV iv = IV.create(size);
+			Engine engine = Engine.create(key, iv, Mode.ENCRYPTION);
+			assertEquals("VectorEngine", engine.getClass().getSimpleName());
+			engine = Engine.create(key.specialize(), iv, Mode.ENCRYPTION);
+			assertTrue(engine instanceof SpecializedEngine);
+		}
+	}
+
+	@Test
+	public void testEncryptionMatchesReference()
+	{
+		if (VectorSupport.isAvailable()) {
+			for (int size : SIZES) {
+				assertMatchesReference(size, Mode.ENCRYPTION);
+			}
+		}
+	}
+
+	@Test
+	public void testDecryptionMatchesReference()
+	{
+		if (VectorSupport.isAvailable()) {
+			for (int size : SIZES) {
+				assertMatchesReference(size, Mode.DECRYPTION);
+			}
+		}
+	}
+
+	@Test
+	public void testLoadStore()
+	{
+		if (VectorSupport.isAvailable()) {
+			for (int size : SIZES) {
+				CompiledKey key = CompiledKey.compile(Key.create(size));
+				IV iv = IV.create(size);
+				Engine engine = VectorSupport.create(key, iv,
+					Mode.ENCRYPTION);
+				byte[] data = new byte[64];
+				prng.nextBytes(data);
+				engine.process(data, 0, data.length, data, 0);
+				ByteBuffer buffer = ByteBuffer.allocateDirect(8 * size)
+					.order(ByteOrder.LITTLE_ENDIAN);
+				engine.store(buffer, 0);
+				PackedEngine packed = new PackedEngine(key, iv,
+					Mode.ENCRYPTION);
+				packed.load(buffer, 0);
+				assertArrayEquals(engine.state(), packed.state());
+				packed.store(buffer, 0);
+				Engine loaded = VectorSupport.create(key, IV.create(size),
+					Mode.ENCRYPTION);
+				loaded.load(buffer, 0);
+				assertArrayEquals(engine.state(), loaded.state());
+			}
+		}
+	}
+
+	private void assertMatchesReference(int size, Mode mode)
+	{
+		Key key = Key.create(size);
+		IV iv = IV.create(size);
+		byte[] data = new byte[512];
+		prng.nextBytes(data);
+		byte[] expected = new ReferenceCipher(key, iv, mode).process(data);
+		Engine engine = VectorSupport.create(CompiledKey.compile(key), iv,
+			mode);
+		byte[] actual = new byte[data.length];
+		engine.process(data, 0, data.length, actual, 0);
+		assertArrayEquals(expected, actual);
+		engine.reset(iv);
+		engine.process(data, 0, data.length, actual, 0);
+		assertArrayEquals(expected, actual);
+	}
+}
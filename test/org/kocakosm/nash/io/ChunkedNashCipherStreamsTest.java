@@ -0,0 +1,181 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.ChunkedCipher;
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link ChunkedNashCipherOutputStream} and
+ * {@link ChunkedNashCipherInputStream} tests.
+ *
+ * @author Osman Koçak
+ */
+public final class ChunkedNashCipherStreamsTest
+{
+	private final ExecutorService executor = ForkJoinPool.commonPool();
+	private final CompiledKey key = CompiledKey.compile(Key.create(64));
+	private final IV iv = IV.create(64);
+	private final Random prng = new Random();
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		byte[] data = randomBytes(100000);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (OutputStream out = new ChunkedNashCipherOutputStream(key, iv,
+				baos, executor, 1000)) {
+			for (int i = 0; i < data.length; ) {
+				int n = Math.min(data.length - i, prng.nextInt(3000));
+				out.write(data, i, n);
+				i += n;
+			}
+		}
+		byte[] framed = baos.toByteArray();
+		ChunkedCipher cipher = new ChunkedCipher(key, executor, 1000);
+		assertArrayEquals(cipher.encrypt(iv, data), framed);
+		assertArrayEquals(data, readAll(framed));
+	}
+
+	@Test
+	public void testFlushEndsChunk() throws IOException
+	{
+		byte[] data = randomBytes(300);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (OutputStream out = new ChunkedNashCipherOutputStream(key, iv,
+				baos, executor, 1000)) {
+			out.write(data, 0, 100);
+			out.flush();
+			assertEquals(104, baos.size());
+			out.write(data[100]);
+			out.write(data, 101, 199);
+		}
+		byte[] framed = baos.toByteArray();
+		assertEquals(200, ByteBuffer.wrap(framed).getInt(104));
+		assertArrayEquals(data, readAll(framed));
+		assertArrayEquals(data, new ChunkedCipher(key, executor)
+			.decrypt(iv, framed));
+	}
+
+	@Test
+	public void testWriteAfterClose() throws IOException
+	{
+		OutputStream out = new ChunkedNashCipherOutputStream(key, iv,
+			new ByteArrayOutputStream(), executor);
+		out.close();
+		out.close();
+		Executable toTest = () -> out.write(1);
+		assertThrows(IOException.class, toTest);
+	}
+
+	@Test
+	public void testTooManyChunks() throws IOException
+	{
+		CompiledKey small = CompiledKey.compile(Key.create(4));
+		OutputStream out = new ChunkedNashCipherOutputStream(small,
+			IV.create(4), new ByteArrayOutputStream(), executor, 1);
+		out.write(new byte[16]);
+		Executable toTest = () -> out.write(1);
+		assertThrows(IOException.class, toTest);
+	}
+
+	@Test
+	public void testReadSingleBytes() throws IOException
+	{
+		byte[] data = randomBytes(1000);
+		byte[] framed = new ChunkedCipher(key, executor, 64).encrypt(iv,
+			data);
+		InputStream in = new ChunkedNashCipherInputStream(key, iv,
+			new ByteArrayInputStream(framed), executor);
+		for (byte b : data) {
+			assertEquals(b & 0xFF, in.read());
+		}
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void testReadTruncated()
+	{
+		byte[] framed = new ChunkedCipher(key, executor, 64).encrypt(iv,
+			randomBytes(1000));
+		byte[] truncated = Arrays.copyOf(framed, framed.length - 4);
+		Executable toTest = () -> readAll(truncated);
+		assertThrows(EOFException.class, toTest);
+	}
+
+	@Test
+	public void testReadLargeChunks() throws IOException
+	{
+		byte[] data = randomBytes(1000000);
+		byte[] framed = new ChunkedCipher(key, executor, 300000).encrypt(iv,
+			data);
+		assertArrayEquals(data, readAll(framed));
+	}
+
+	@Test
+	public void testReadTruncatedLargeChunk()
+	{
+		byte[] framed = new byte[100];
+		ByteBuffer.wrap(framed).putInt(ChunkedCipher.MAX_CHUNK_SIZE);
+		Executable toTest = () -> readAll(framed);
+		assertThrows(EOFException.class, toTest);
+	}
+
+	@Test
+	public void testReadMalformed()
+	{
+		byte[] framed = new ChunkedCipher(key, executor, 64).encrypt(iv,
+			randomBytes(1000));
+		ByteBuffer.wrap(framed).putInt(-5);
+		Executable toTest = () -> readAll(framed);
+		assertThrows(IOException.class, toTest);
+	}
+
+	private byte[] readAll(byte[] framed) throws IOException
+	{
+		InputStream in = new ChunkedNashCipherInputStream(key, iv,
+			new ByteArrayInputStream(framed), executor);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[777];
+		for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+			out.write(buf, 0, n);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+
+	private byte[] randomBytes(int n)
+	{
+		byte[] bytes = new byte[n];
+		prng.nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,210 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link NashCipherFiles}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherFilesTest
+{
+	private final CompiledKey key = CompiledKey.compile(Key.create(64));
+	private final IV iv = IV.create(64);
+	private final Random prng = new Random();
+	private final ExecutorService executor = Executors.newFixedThreadPool(2);
+	private byte[] data;
+	private Path source;
+	private Path target;
+
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		data = new byte[100000];
+		prng.nextBytes(data);
+		source = Files.createTempFile("nash", ".src");
+		target = Files.createTempFile("nash", ".dst");
+		Files.write(source, data);
+		Files.write(target, new byte[200000]);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException
+	{
+		Files.deleteIfExists(source);
+		Files.deleteIfExists(target);
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testEncryptDecrypt() throws IOException
+	{
+		assertEquals(data.length, NashCipherFiles.encrypt(key, iv, source,
+			target));
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data);
+		assertArrayEquals(expected, Files.readAllBytes(target));
+		assertEquals(data.length, NashCipherFiles.decrypt(key, iv, target,
+			source));
+		assertArrayEquals(data, Files.readAllBytes(source));
+	}
+
+	@Test
+	public void testEncryptDecryptInPlace() throws IOException
+	{
+		assertEquals(data.length, NashCipherFiles.encrypt(key, iv, source));
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data);
+		assertArrayEquals(expected, Files.readAllBytes(source));
+		assertEquals(data.length, NashCipherFiles.decrypt(key, iv, source,
+			source));
+		assertArrayEquals(data, Files.readAllBytes(source));
+	}
+
+	@Test
+	public void testEncryptToNewFile() throws IOException
+	{
+		Files.delete(target);
+		NashCipherFiles.encrypt(key, iv, source, target);
+		NashCipherFiles.decrypt(key, iv, target);
+		assertArrayEquals(data, Files.readAllBytes(target));
+	}
+
+	@Test
+	public void testEncryptEmptyFile() throws IOException
+	{
+		Files.write(source, new byte[0]);
+		assertEquals(0, NashCipherFiles.encrypt(key, iv, source, target));
+		assertEquals(0, Files.size(target));
+	}
+
+	@Test
+	public void testProcessRegionsWithSmallWindows() throws IOException
+	{
+		NashCipher cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+		try (FileChannel in = FileChannel.open(source,
+				StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(target,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			NashCipherFiles.process(cipher, in, 100, 50000, out, 7, 4096);
+			NashCipherFiles.process(cipher, out, 7, 1000, 333);
+		}
+		NashCipher reference = new NashCipher(key, iv, Mode.ENCRYPTION);
+		byte[] expected = reference.process(data, 100, 50000);
+		byte[] head = reference.process(Arrays.copyOf(expected, 1000));
+		System.arraycopy(head, 0, expected, 0, 1000);
+		byte[] actual = Files.readAllBytes(target);
+		assertArrayEquals(expected, Arrays.copyOfRange(actual, 7, 50007));
+	}
+
+	@Test
+	public void testProcessRegionBeyondEnd() throws IOException
+	{
+		NashCipher cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+		try (FileChannel channel = FileChannel.open(source,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			Executable toTest = () -> NashCipherFiles.process(cipher,
+				channel, 1, data.length);
+			assertThrows(EOFException.class, toTest);
+		}
+	}
+
+	@Test
+	public void testProcessNegativeRegion() throws IOException
+	{
+		NashCipher cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+		try (FileChannel channel = FileChannel.open(source,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			Executable toTest = () -> NashCipherFiles.process(cipher,
+				channel, -1, 10);
+			assertThrows(IllegalArgumentException.class, toTest);
+		}
+	}
+
+	@Test
+	public void testEncryptDecryptAsync() throws Exception
+	{
+		assertEquals(data.length, (long) NashCipherFiles.encryptAsync(key,
+			iv, source, target, executor, 4096, 3).get());
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data);
+		assertArrayEquals(expected, Files.readAllBytes(target));
+		assertEquals(data.length, (long) NashCipherFiles.decryptAsync(key,
+			iv, target, source, executor, 1000, 1).get());
+		assertArrayEquals(data, Files.readAllBytes(source));
+	}
+
+	@Test
+	public void testEncryptDecryptAsyncInPlace() throws Exception
+	{
+		NashCipherFiles.encryptAsync(key, iv, source, source, executor,
+			3000, 8).get();
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data);
+		assertArrayEquals(expected, Files.readAllBytes(source));
+		NashCipherFiles.decryptAsync(key, iv, source, source, executor).get();
+		assertArrayEquals(data, Files.readAllBytes(source));
+	}
+
+	@Test
+	public void testEncryptEmptyFileAsync() throws Exception
+	{
+		Files.write(source, new byte[0]);
+		assertEquals(0L, (long) NashCipherFiles.encryptAsync(key, iv, source,
+			target, executor).get());
+		assertEquals(0, Files.size(target));
+	}
+
+	@Test
+	public void testEncryptMissingFileAsync() throws Exception
+	{
+		Files.delete(source);
+		Executable toTest = () -> NashCipherFiles.encryptAsync(key, iv,
+			source, target, executor).get();
+		ExecutionException e = assertThrows(ExecutionException.class,
+			toTest);
+		assertTrue(e.getCause() instanceof IOException);
+	}
+
+	@Test
+	public void testEncryptAsyncWithInvalidBuffers()
+	{
+		Executable toTest = () -> NashCipherFiles.encryptAsync(key, iv,
+			source, target, executor, 1024, 0);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+}
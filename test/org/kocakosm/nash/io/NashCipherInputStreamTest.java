@@ -15,15 +15,18 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
+import org.kocakosm.nash.CompiledKey;
 import org.kocakosm.nash.IV;
 import org.kocakosm.nash.Key;
 import org.kocakosm.nash.NashCipher;
 import org.kocakosm.nash.NashCipher.Mode;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
@@ -91,10 +94,15 @@ public final class NashCipherInputStreamTest
 	@Test
 	public void testSkip() throws Exception
 	{
-		InputStream in = mock(InputStream.class);
+		byte[] data = "Hello World".getBytes(StandardCharsets.UTF_8);
+		NashCipher cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+		InputStream in = new ByteArrayInputStream(cipher.process(data));
 		InputStream nash = new NashCipherInputStream(key, iv, in);
-		Executable toTest = () -> nash.skip(16);
-		assertThrows(IOException.class, toTest);
+		assertEquals(0, nash.skip(-1));
+		assertEquals(6, nash.skip(6));
+		assertEquals('W', nash.read());
+		assertEquals(4, nash.skip(16));
+		assertEquals(-1, nash.read());
 	}
 
 	@Test
@@ -124,4 +132,42 @@ public final class NashCipherInputStreamTest
 		NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
 		assertArrayEquals(cipher.process(data), decrypted);
 	}
+
+	@Test
+	public void testReadAllBytes() throws Exception
+	{
+		byte[] data = "Hello World".getBytes(StandardCharsets.UTF_8);
+		InputStream in = new ByteArrayInputStream(data);
+		NashCipherInputStream nash = new NashCipherInputStream(
+			CompiledKey.compile(key), iv, in, 0);
+		NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		assertArrayEquals(cipher.process(data), nash.readAllBytes());
+	}
+
+	@Test
+	public void testReadNBytes() throws Exception
+	{
+		byte[] data = "Hello World".getBytes(StandardCharsets.UTF_8);
+		InputStream in = new ByteArrayInputStream(data);
+		NashCipherInputStream nash = new NashCipherInputStream(key, iv, in);
+		byte[] plaintext = new NashCipher(key, iv, Mode.DECRYPTION)
+			.process(data);
+		assertArrayEquals(Arrays.copyOf(plaintext, 5), nash.readNBytes(5));
+		byte[] buf = new byte[10];
+		assertEquals(6, nash.readNBytes(buf, 0, 10));
+		assertArrayEquals(Arrays.copyOfRange(plaintext, 5, 11),
+			Arrays.copyOf(buf, 6));
+	}
+
+	@Test
+	public void testTransferTo() throws Exception
+	{
+		byte[] data = "Hello World".getBytes(StandardCharsets.UTF_8);
+		InputStream in = new ByteArrayInputStream(data);
+		NashCipherInputStream nash = new NashCipherInputStream(key, iv, in);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(data.length, nash.transferTo(out));
+		NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		assertArrayEquals(cipher.process(data), out.toByteArray());
+	}
 }
@@ -0,0 +1,250 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link NashCipherPipeline}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherPipelineTest
+{
+	private final CompiledKey key = CompiledKey.compile(Key.create(64));
+	private final IV iv = IV.create(64);
+	private final Random prng = new Random();
+
+	@Test
+	public void testEncryptDecrypt() throws IOException
+	{
+		byte[] data = random(500000);
+		ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+		assertEquals(data.length, NashCipherPipeline.encrypt(key, iv,
+			new ByteArrayInputStream(data), encrypted));
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data);
+		assertArrayEquals(expected, encrypted.toByteArray());
+		ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+		assertEquals(data.length, NashCipherPipeline.decrypt(key, iv,
+			new ByteArrayInputStream(expected), decrypted));
+		assertArrayEquals(data, decrypted.toByteArray());
+	}
+
+	@Test
+	public void testProcessWithVariousBlocks() throws IOException
+	{
+		int[][] configurations = {{1, 1}, {7, 2}, {1000, 3}, {4096, 16}};
+		for (int[] c : configurations) {
+			for (int len : new int[] {0, 1, c[0], 3 * c[0], 3 * c[0] + 1}) {
+				byte[] data = random(len);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				NashCipher cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+				assertEquals(len, NashCipherPipeline.process(cipher,
+					new ByteArrayInputStream(data), out, c[0], c[1]));
+				byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+					.process(data);
+				assertArrayEquals(expected, out.toByteArray());
+			}
+		}
+	}
+
+	@Test
+	public void testProcessSlowStream() throws IOException
+	{
+		byte[] data = random(20000);
+		InputStream in = new ByteArrayInputStream(data)
+		{
+			@Override
+			public synchronized int read(byte[] b, int off, int len)
+			{
+				return super.read(b, off, Math.min(len, 3));
+			}
+		};
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NashCipherPipeline.encrypt(key, iv, in, out);
+		byte[] expected = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data);
+		assertArrayEquals(expected, out.toByteArray());
+	}
+
+	@Test
+	public void testProcessWithFailingInput()
+	{
+		InputStream in = new InputStream()
+		{
+			private int count;
+
+			@Override
+			public int read() throws IOException
+			{
+				if (++count > 100000) {
+					throw new IOException("Failed");
+				}
+				return 0;
+			}
+		};
+		OutputStream out = new ByteArrayOutputStream();
+		Executable toTest = () -> NashCipherPipeline.encrypt(key, iv, in,
+			out);
+		IOException e = assertThrows(IOException.class, toTest);
+		assertEquals("Failed", e.getMessage());
+		assertFalse(Thread.currentThread().isInterrupted());
+	}
+
+	@Test
+	public void testProcessWithFailingOutput()
+	{
+		InputStream in = new ByteArrayInputStream(random(1000000));
+		OutputStream out = new OutputStream()
+		{
+			@Override
+			public void write(int b) throws IOException
+			{
+				throw new IOException("Failed");
+			}
+		};
+		Executable toTest = () -> NashCipherPipeline.encrypt(key, iv, in,
+			out);
+		IOException e = assertThrows(IOException.class, toTest);
+		assertEquals("Failed", e.getMessage());
+		assertFalse(Thread.currentThread().isInterrupted());
+	}
+
+	@Test
+	public void testNoReadAfterFailure() throws Exception
+	{
+		CountDownLatch failed = new CountDownLatch(1);
+		AtomicInteger reads = new AtomicInteger();
+		InputStream in = new InputStream()
+		{
+			@Override
+			public int read()
+			{
+				return 0;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len)
+			{
+				/* The fifth read blocks, ignoring interrupts. */
+				if (reads.incrementAndGet() == 5) {
+					while (failed.getCount() > 0) {
+						try {
+							failed.await();
+						} catch (InterruptedException e) {
+							/* Ignored. */
+						}
+					}
+				}
+				b[off] = 0;
+				return 1;
+			}
+		};
+		OutputStream out = new OutputStream()
+		{
+			@Override
+			public void write(int b) throws IOException
+			{
+				throw new IOException("Failed");
+			}
+		};
+		NashCipher cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+		Executable toTest = () -> NashCipherPipeline.process(cipher, in,
+			out, 4, 2);
+		assertThrows(IOException.class, toTest);
+		failed.countDown();
+		Thread.sleep(100);
+		assertEquals(5, reads.get());
+	}
+
+	@Test
+	public void testNoInterruptAfterReturn() throws Exception
+	{
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch released = new CountDownLatch(1);
+		AtomicReference<Thread> reader = new AtomicReference<>();
+		InputStream in = new InputStream()
+		{
+			@Override
+			public int read() throws IOException
+			{
+				/* Blocks, ignoring interrupts, then fails. */
+				reader.set(Thread.currentThread());
+				blocked.countDown();
+				while (released.getCount() > 0) {
+					try {
+						released.await();
+					} catch (InterruptedException e) {
+						/* Ignored. */
+					}
+				}
+				throw new IOException("Failed");
+			}
+		};
+		Thread caller = Thread.currentThread();
+		new Thread(() -> {
+			try {
+				blocked.await();
+			} catch (InterruptedException e) {
+				return;
+			}
+			caller.interrupt();
+		}).start();
+		Executable toTest = () -> NashCipherPipeline.encrypt(key, iv, in,
+			new ByteArrayOutputStream());
+		assertThrows(InterruptedIOException.class, toTest);
+		assertTrue(Thread.interrupted());
+		released.countDown();
+		reader.get().join(10000);
+		assertFalse(reader.get().isAlive());
+		assertFalse(Thread.interrupted());
+	}
+
+	@Test
+	public void testProcessWithInvalidBlocks()
+	{
+		NashCipher cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+		InputStream in = new ByteArrayInputStream(new byte[0]);
+		OutputStream out = new ByteArrayOutputStream();
+		Executable toTest = () -> NashCipherPipeline.process(cipher, in, out,
+			0, 4);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	private byte[] random(int len)
+	{
+		byte[] data = new byte[len];
+		prng.nextBytes(data);
+		return data;
+	}
+}
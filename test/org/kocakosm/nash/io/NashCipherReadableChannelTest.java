@@ -0,0 +1,198 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link NashCipherReadableChannel}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherReadableChannelTest
+{
+	private final IV iv = IV.create(96);
+	private final Key key = Key.create(96);
+	private final Random prng = new Random();
+
+	@Test
+	public void testConstructorWithNullChannel()
+	{
+		Executable toTest = () -> new NashCipherReadableChannel(key, iv, null);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
+	@Test
+	public void testRead() throws IOException
+	{
+		byte[] ciphertext = random(50000);
+		for (boolean isDirect : new boolean[] {false, true}) {
+			ScatteringByteChannel nash = open(ciphertext);
+			ByteBuffer dst = allocate(1000, isDirect);
+			byte[] decrypted = new byte[ciphertext.length];
+			int pos = 0;
+			for (int n = nash.read(dst); n >= 0; n = nash.read(dst)) {
+				dst.flip();
+				dst.get(decrypted, pos, n);
+				dst.clear();
+				pos += n;
+			}
+			assertEquals(ciphertext.length, pos);
+			assertArrayEquals(decrypt(ciphertext), decrypted);
+		}
+	}
+
+	@Test
+	public void testReadIntoBufferWithOffset() throws IOException
+	{
+		byte[] ciphertext = random(100);
+		ScatteringByteChannel nash = open(ciphertext);
+		ByteBuffer dst = ByteBuffer.allocate(300);
+		dst.position(50).limit(150);
+		assertEquals(100, nash.read(dst));
+		assertEquals(150, dst.position());
+		byte[] decrypted = new byte[100];
+		dst.position(50);
+		dst.get(decrypted);
+		assertArrayEquals(decrypt(ciphertext), decrypted);
+		assertEquals(0, dst.array()[49]);
+		assertEquals(0, dst.array()[150]);
+	}
+
+	@Test
+	public void testScatteringRead() throws IOException
+	{
+		byte[] ciphertext = random(1000);
+		Path file = Files.createTempFile("nash", ".enc");
+		try {
+			Files.write(file, ciphertext);
+			for (boolean isDirect : new boolean[] {false, true}) {
+				try (FileChannel channel = FileChannel.open(file)) {
+					assertScatteringRead(ciphertext,
+						new NashCipherReadableChannel(key, iv, channel),
+						isDirect);
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testScatteringReadOnNonScatteringChannel() throws IOException
+	{
+		byte[] ciphertext = random(1000);
+		ReadableByteChannel channel = Channels.newChannel(
+			new ByteArrayInputStream(ciphertext));
+		assertScatteringRead(ciphertext,
+			new NashCipherReadableChannel(key, iv, channel), false);
+	}
+
+	@Test
+	public void testScatteringReadWithInvalidBounds() throws IOException
+	{
+		ScatteringByteChannel nash = open(random(10));
+		ByteBuffer[] dsts = new ByteBuffer[2];
+		Executable toTest = () -> nash.read(dsts, 1, 2);
+		assertThrows(IndexOutOfBoundsException.class, toTest);
+	}
+
+	@Test
+	public void testTransferFrom() throws IOException
+	{
+		byte[] ciphertext = random(100000);
+		Path file = Files.createTempFile("nash", ".dec");
+		try (FileChannel out = FileChannel.open(file,
+			StandardOpenOption.WRITE)) {
+			assertEquals(ciphertext.length,
+				out.transferFrom(open(ciphertext), 0, Long.MAX_VALUE));
+			out.force(false);
+			assertArrayEquals(decrypt(ciphertext), Files.readAllBytes(file));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testClose() throws IOException
+	{
+		ScatteringByteChannel nash = open(random(10));
+		assertTrue(nash.isOpen());
+		nash.close();
+		assertFalse(nash.isOpen());
+	}
+
+	private void assertScatteringRead(byte[] ciphertext,
+		ScatteringByteChannel nash, boolean isDirect) throws IOException
+	{
+		ByteBuffer[] dsts = {
+			allocate(100, isDirect), allocate(300, isDirect),
+			allocate(1000, isDirect)
+		};
+		dsts[0].position(90);
+		assertEquals(310, nash.read(dsts, 0, 2));
+		assertEquals(690, nash.read(dsts, 2, 1));
+		assertEquals(-1, nash.read(dsts, 2, 1));
+		byte[] decrypted = new byte[ciphertext.length];
+		dsts[0].position(90);
+		dsts[0].get(decrypted, 0, 10);
+		dsts[1].flip();
+		dsts[1].get(decrypted, 10, 300);
+		dsts[2].flip();
+		dsts[2].get(decrypted, 310, 690);
+		assertArrayEquals(decrypt(ciphertext), decrypted);
+	}
+
+	private ScatteringByteChannel open(byte[] ciphertext)
+	{
+		return new NashCipherReadableChannel(key, iv, Channels.newChannel(
+			new ByteArrayInputStream(ciphertext)));
+	}
+
+	private byte[] decrypt(byte[] ciphertext)
+	{
+		return new NashCipher(key, iv, Mode.DECRYPTION).process(ciphertext);
+	}
+
+	private byte[] random(int len)
+	{
+		byte[] data = new byte[len];
+		prng.nextBytes(data);
+		return data;
+	}
+
+	private static ByteBuffer allocate(int capacity, boolean isDirect)
+	{
+		return isDirect ? ByteBuffer.allocateDirect(capacity)
+			: ByteBuffer.allocate(capacity);
+	}
+}
@@ -0,0 +1,169 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link NashCipherSeekableChannel}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherSeekableChannelTest
+{
+	private static final byte[] HEADER = {1, 2, 3};
+
+	private final IV iv = IV.create(96);
+	private final Key key = Key.create(96);
+	private final Random prng = new Random();
+	private byte[] plaintext;
+	private Path file;
+
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		plaintext = new byte[50000];
+		prng.nextBytes(plaintext);
+		byte[] ciphertext = new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(plaintext);
+		file = Files.createTempFile("nash", ".enc");
+		Files.write(file, HEADER);
+		Files.write(file, ciphertext, java.nio.file.StandardOpenOption.APPEND);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException
+	{
+		Files.delete(file);
+	}
+
+	@Test
+	public void testConstructorWithNullChannel()
+	{
+		Executable toTest = () -> new NashCipherSeekableChannel(key, iv, null);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
+	@Test
+	public void testSequentialRead() throws IOException
+	{
+		try (SeekableByteChannel nash = open()) {
+			assertEquals(plaintext.length, nash.size());
+			ByteBuffer dst = ByteBuffer.allocate(plaintext.length);
+			while (dst.hasRemaining() && nash.read(dst) >= 0) {
+				/* ... */
+			}
+			assertArrayEquals(plaintext, dst.array());
+			assertEquals(plaintext.length, nash.position());
+			assertEquals(-1, nash.read(ByteBuffer.allocate(1)));
+		}
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException
+	{
+		try (SeekableByteChannel nash = open()) {
+			for (int k = 0; k < 100; k++) {
+				int pos = prng.nextInt(plaintext.length);
+				int len = Math.min(plaintext.length - pos, prng.nextInt(200));
+				ByteBuffer dst = k % 2 == 0
+					? ByteBuffer.allocate(len)
+					: ByteBuffer.allocateDirect(len);
+				nash.position(pos);
+				assertEquals(pos, nash.position());
+				while (dst.hasRemaining()) {
+					nash.read(dst);
+				}
+				for (int i = 0; i < len; i++) {
+					assertEquals(plaintext[pos + i], dst.get(i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPositionBeyondEnd() throws IOException
+	{
+		try (SeekableByteChannel nash = open()) {
+			nash.position(plaintext.length + 10);
+			assertEquals(-1, nash.read(ByteBuffer.allocate(1)));
+			nash.position(plaintext.length - 1);
+			ByteBuffer dst = ByteBuffer.allocate(1);
+			assertEquals(1, nash.read(dst));
+			assertEquals(plaintext[plaintext.length - 1], dst.get(0));
+		}
+	}
+
+	@Test
+	public void testNegativePosition() throws IOException
+	{
+		try (SeekableByteChannel nash = open()) {
+			Executable toTest = () -> nash.position(-1);
+			assertThrows(IllegalArgumentException.class, toTest);
+		}
+	}
+
+	@Test
+	public void testWrite() throws IOException
+	{
+		try (SeekableByteChannel nash = open()) {
+			Executable toTest = () -> nash.write(ByteBuffer.allocate(1));
+			assertThrows(NonWritableChannelException.class, toTest);
+		}
+	}
+
+	@Test
+	public void testTruncate() throws IOException
+	{
+		try (SeekableByteChannel nash = open()) {
+			Executable toTest = () -> nash.truncate(0);
+			assertThrows(NonWritableChannelException.class, toTest);
+		}
+	}
+
+	@Test
+	public void testClose() throws IOException
+	{
+		SeekableByteChannel nash = open();
+		assertTrue(nash.isOpen());
+		nash.close();
+		assertFalse(nash.isOpen());
+		Executable toTest = () -> nash.position(0);
+		assertThrows(ClosedChannelException.class, toTest);
+	}
+
+	private SeekableByteChannel open() throws IOException
+	{
+		SeekableByteChannel encrypted = Files.newByteChannel(file);
+		encrypted.position(HEADER.length);
+		return new NashCipherSeekableChannel(key, iv, encrypted);
+	}
+}
@@ -13,6 +13,7 @@ package org.kocakosm.nash.io;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
+import org.kocakosm.nash.CompiledKey;
 import org.kocakosm.nash.IV;
 import org.kocakosm.nash.Key;
 
@@ -52,4 +53,27 @@ public final class NashCipherStreamsTest
 
 		assertArrayEquals(data, decrypted);
 	}
+
+	@Test
+	public void testEncryptionDecryptionRoundTripWithCompiledKey()
+		throws Exception
+	{
+		Random prng = new Random();
+		byte[] data = new byte[prng.nextInt(4096)];
+		prng.nextBytes(data);
+		IV iv = IV.create(64);
+		CompiledKey secret = CompiledKey.compile(Key.create(64));
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		OutputStream out = new NashCipherOutputStream(secret, iv, baos);
+		out.write(data);
+		out.flush();
+
+		InputStream bais = new ByteArrayInputStream(baos.toByteArray());
+		InputStream in = new NashCipherInputStream(secret, iv, bais);
+		byte[] decrypted = new byte[data.length];
+		in.read(decrypted);
+
+		assertArrayEquals(data, decrypted);
+	}
 }
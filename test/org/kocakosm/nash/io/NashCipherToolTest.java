@@ -0,0 +1,149 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link NashCipherTool}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherToolTest
+{
+	private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+	private Path dir;
+
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		dir = Files.createTempDirectory("nash");
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException
+	{
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(dir);
+	}
+
+	@Test
+	public void testEncryptDecryptFiles() throws IOException
+	{
+		byte[] data = new byte[300000];
+		new Random().nextBytes(data);
+		Files.write(dir.resolve("plain"), data);
+		assertEquals(0, run("key", "128", file("key")));
+		assertEquals(0, run("iv", "128", file("iv")));
+		assertEquals(0, run("encrypt", file("key"), file("iv"), file("plain"),
+			file("enc")));
+		assertEquals(0, run("decrypt", file("key"), file("iv"), file("enc"),
+			file("dec")));
+		Key key = Key.fromBytes(Files.readAllBytes(dir.resolve("key")));
+		IV iv = IV.fromBytes(Files.readAllBytes(dir.resolve("iv")));
+		assertEquals(128, key.getSize());
+		assertArrayEquals(new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data), Files.readAllBytes(dir.resolve("enc")));
+		assertArrayEquals(data, Files.readAllBytes(dir.resolve("dec")));
+	}
+
+	@Test
+	public void testEncryptStandardStreams() throws IOException
+	{
+		byte[] data = "Hello World".getBytes(StandardCharsets.UTF_8);
+		run("key", "32", file("key"));
+		run("iv", "32", file("iv"));
+		assertEquals(0, NashCipherTool.run(new String[] {"encrypt",
+			file("key"), file("iv")}, new ByteArrayInputStream(data), stdout,
+			new PrintStream(stderr)));
+		Key key = Key.fromBytes(Files.readAllBytes(dir.resolve("key")));
+		IV iv = IV.fromBytes(Files.readAllBytes(dir.resolve("iv")));
+		assertArrayEquals(new NashCipher(key, iv, Mode.ENCRYPTION)
+			.process(data), stdout.toByteArray());
+	}
+
+	@Test
+	public void testInvalidArguments()
+	{
+		assertEquals(2, run());
+		assertEquals(2, run("encrypt", "key"));
+		assertEquals(2, run("compress", "a", "b"));
+		assertEquals(2, run("key", "abc", file("key")));
+		assertEquals(2, run("iv", "0", file("iv")));
+		assertFalse(Files.exists(dir.resolve("key")));
+		assertTrue(stderr.toString().startsWith("Usage"));
+	}
+
+	@Test
+	public void testErrors() throws IOException
+	{
+		assertEquals(1, run("encrypt", file("missing"), file("iv")));
+		Files.write(dir.resolve("key"), new byte[] {1, 2, 3});
+		assertEquals(1, run("decrypt", file("key"), file("key")));
+		assertTrue(stderr.toString().startsWith("Error"));
+		assertEquals(0, stdout.size());
+	}
+
+	@Test
+	public void testUnexpectedError() throws IOException
+	{
+		run("key", "32", file("key"));
+		run("iv", "32", file("iv"));
+		InputStream stdin = new InputStream()
+		{
+			@Override
+			public int read()
+			{
+				throw new IllegalStateException("Unexpected");
+			}
+		};
+		assertEquals(1, NashCipherTool.run(new String[] {"encrypt",
+			file("key"), file("iv")}, stdin, stdout, new PrintStream(stderr)));
+		assertTrue(stderr.toString().contains("Unexpected"));
+	}
+
+	private int run(String... args)
+	{
+		return NashCipherTool.run(args, new ByteArrayInputStream(new byte[0]),
+			stdout, new PrintStream(stderr));
+	}
+
+	private String file(String name)
+	{
+		return dir.resolve(name).toString();
+	}
+}
@@ -0,0 +1,211 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link NashCipherWritableChannel}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class NashCipherWritableChannelTest
+{
+	private final IV iv = IV.create(96);
+	private final Key key = Key.create(96);
+	private final Random prng = new Random();
+
+	@Test
+	public void testConstructorWithNullChannel()
+	{
+		Executable toTest = () -> new NashCipherWritableChannel(key, iv, null);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
+	@Test
+	public void testConstructorWithInvalidBufferSize()
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Executable toTest = () -> new NashCipherWritableChannel(
+			CompiledKey.compile(key), iv, Channels.newChannel(out), 0);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testWrite() throws IOException
+	{
+		byte[] plaintext = random(50000);
+		for (boolean isDirect : new boolean[] {false, true}) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			GatheringByteChannel nash = new NashCipherWritableChannel(key, iv,
+				Channels.newChannel(out));
+			ByteBuffer src = wrap(plaintext, isDirect).asReadOnlyBuffer();
+			while (src.hasRemaining()) {
+				ByteBuffer chunk = src.duplicate();
+				chunk.limit(Math.min(src.limit(), src.position() + 777));
+				int n = chunk.remaining();
+				assertEquals(n, nash.write(chunk));
+				assertFalse(chunk.hasRemaining());
+				src.position(src.position() + n);
+			}
+			assertArrayEquals(encrypt(plaintext), out.toByteArray());
+		}
+	}
+
+	@Test
+	public void testWriteDoesNotModifySource() throws IOException
+	{
+		byte[] plaintext = random(1000);
+		byte[] copy = plaintext.clone();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GatheringByteChannel nash = new NashCipherWritableChannel(key, iv,
+			Channels.newChannel(out));
+		nash.write(ByteBuffer.wrap(plaintext));
+		assertArrayEquals(copy, plaintext);
+	}
+
+	@Test
+	public void testGatheringWrite() throws IOException
+	{
+		byte[] plaintext = random(30000);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GatheringByteChannel nash = new NashCipherWritableChannel(
+			CompiledKey.compile(key), iv, Channels.newChannel(out), 4096);
+		ByteBuffer[] srcs = {
+			ByteBuffer.allocate(0),
+			wrap(Arrays.copyOfRange(plaintext, 0, 100), false),
+			wrap(Arrays.copyOfRange(plaintext, 100, 10000), true),
+			wrap(Arrays.copyOfRange(plaintext, 10000, 10001), false),
+			wrap(Arrays.copyOfRange(plaintext, 10001, 30000), false)
+		};
+		assertEquals(0L, nash.write(srcs, 0, 1));
+		assertEquals(plaintext.length, nash.write(srcs, 1, 4));
+		for (ByteBuffer src : srcs) {
+			assertFalse(src.hasRemaining());
+		}
+		assertArrayEquals(encrypt(plaintext), out.toByteArray());
+	}
+
+	@Test
+	public void testGatheringWriteWithInvalidBounds() throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GatheringByteChannel nash = new NashCipherWritableChannel(key, iv,
+			Channels.newChannel(out));
+		ByteBuffer[] srcs = new ByteBuffer[2];
+		Executable toTest = () -> nash.write(srcs, -1, 1);
+		assertThrows(IndexOutOfBoundsException.class, toTest);
+	}
+
+	@Test
+	public void testNonBlockingWrite() throws IOException
+	{
+		byte[] plaintext = random(1000000);
+		Pipe pipe = Pipe.open();
+		pipe.sink().configureBlocking(false);
+		pipe.source().configureBlocking(false);
+		NashCipherWritableChannel nash = new NashCipherWritableChannel(key,
+			iv, pipe.sink());
+		ByteBuffer src = ByteBuffer.wrap(plaintext);
+		ByteBuffer dst = ByteBuffer.allocate(plaintext.length + 1);
+		boolean flushed = false;
+		while (src.hasRemaining() || !flushed) {
+			if (src.hasRemaining()) {
+				nash.write(src);
+			} else {
+				flushed = nash.flush();
+			}
+			pipe.source().read(dst);
+		}
+		nash.close();
+		while (pipe.source().read(dst) >= 0) {
+			/* ... */
+		}
+		assertEquals(plaintext.length, dst.position());
+		assertArrayEquals(encrypt(plaintext),
+			Arrays.copyOf(dst.array(), plaintext.length));
+	}
+
+	@Test
+	public void testTransferTo() throws IOException
+	{
+		byte[] plaintext = random(100000);
+		Path file = Files.createTempFile("nash", ".dec");
+		try (FileChannel in = FileChannel.open(file)) {
+			Files.write(file, plaintext);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			GatheringByteChannel nash = new NashCipherWritableChannel(key,
+				iv, Channels.newChannel(out));
+			assertEquals(plaintext.length, in.transferTo(0, Long.MAX_VALUE,
+				nash));
+			assertArrayEquals(encrypt(plaintext), out.toByteArray());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testWriteAfterClose() throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GatheringByteChannel nash = new NashCipherWritableChannel(key, iv,
+			Channels.newChannel(out));
+		nash.close();
+		assertFalse(nash.isOpen());
+		Executable toTest = () -> nash.write(ByteBuffer.allocate(1));
+		assertThrows(ClosedChannelException.class, toTest);
+	}
+
+	private byte[] encrypt(byte[] plaintext)
+	{
+		return new NashCipher(key, iv, Mode.ENCRYPTION).process(plaintext);
+	}
+
+	private byte[] random(int len)
+	{
+		byte[] data = new byte[len];
+		prng.nextBytes(data);
+		return data;
+	}
+
+	private static ByteBuffer wrap(byte[] data, boolean isDirect)
+	{
+		if (!isDirect) {
+			return ByteBuffer.wrap(data);
+		}
+		ByteBuffer buf = ByteBuffer.allocateDirect(data.length);
+		buf.put(data).flip();
+		return buf;
+	}
+}
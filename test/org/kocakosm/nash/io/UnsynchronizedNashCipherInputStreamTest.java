@@ -0,0 +1,288 @@
+/*----------------------------------------------------------------------------*
+ * This file is part of Nash-Cipher.                                          *
+ * Copyright © 2012-2020 Osman Koçak <kocakosm@gmail.com>                     *
+ *                                                                            *
+ * This program is free software. It comes without any warranty, to the       *
+ * extent permitted by applicable law. You can redistribute it and/or modify  *
+ * it under the terms of the Do What The Fuck You Want To Public License,     *
+ * Version 2, as published by Sam Hocevar. You should have received a copy of *
+ * the license along with this program. If not, see <http://www.wtfpl.net/>.  *
+ *----------------------------------------------------------------------------*/
+
+package org.kocakosm.nash.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.kocakosm.nash.CompiledKey;
+import org.kocakosm.nash.IV;
+import org.kocakosm.nash.Key;
+import org.kocakosm.nash.NashCipher;
+import org.kocakosm.nash.NashCipher.Mode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * {@link UnsynchronizedNashCipherInputStream}'s unit tests.
+ *
+ * @author Osman Koçak
+ */
+public final class UnsynchronizedNashCipherInputStreamTest
+{
+	private final IV iv = IV.create(8);
+	private final Key key = Key.create(8);
+
+	@Test
+	public void testConstructorWithNullStream()
+	{
+		Executable toTest = () -> new UnsynchronizedNashCipherInputStream(key,
+			iv, null);
+		assertThrows(NullPointerException.class, toTest);
+	}
+
+	@Test
+	public void testConstructorWithNegativeBufferSize()
+	{
+		InputStream in = mock(InputStream.class);
+		Executable toTest = () -> new UnsynchronizedNashCipherInputStream(
+			CompiledKey.compile(key), iv, in, -1);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testAvailable() throws Exception
+	{
+		byte[] data = "Hello".getBytes(StandardCharsets.UTF_8);
+		InputStream in = new ByteArrayInputStream(data);
+		InputStream nash = new UnsynchronizedNashCipherInputStream(key, iv, in);
+		assertEquals(in.available(), nash.available());
+	}
+
+	@Test
+	public void testClose() throws Exception
+	{
+		InputStream in = mock(InputStream.class);
+		new UnsynchronizedNashCipherInputStream(key, iv, in).close();
+		verify(in).close();
+	}
+
+	@Test
+	public void testMarkSupported() throws Exception
+	{
+		InputStream in = mock(InputStream.class);
+		InputStream nash = new UnsynchronizedNashCipherInputStream(key, iv, in);
+		assertFalse(nash.markSupported());
+	}
+
+	@Test
+	public void testMark() throws Exception
+	{
+		InputStream in = mock(InputStream.class);
+		InputStream nash = new UnsynchronizedNashCipherInputStream(key, iv, in);
+		Executable toTest = () -> nash.mark(100);
+		assertThrows(UnsupportedOperationException.class, toTest);
+	}
+
+	@Test
+	public void testReset() throws Exception
+	{
+		InputStream in = mock(InputStream.class);
+		InputStream nash = new UnsynchronizedNashCipherInputStream(key, iv, in);
+		Executable toTest = () -> nash.reset();
+		assertThrows(IOException.class, toTest);
+	}
+
+	@Test
+	public void testSkip() throws Exception
+	{
+		byte[] data = "Hello World".getBytes(StandardCharsets.UTF_8);
+		NashCipher cipher = new NashCipher(key, iv, Mode.ENCRYPTION);
+		InputStream in = new ByteArrayInputStream(cipher.process(data));
+		InputStream nash = new UnsynchronizedNashCipherInputStream(key, iv, in);
+		assertEquals(0, nash.skip(-1));
+		assertEquals(6, nash.skip(6));
+		assertEquals('W', nash.read());
+		assertEquals(4, nash.skip(16));
+		assertEquals(-1, nash.read());
+	}
+
+	@Test
+	public void testRead() throws Exception
+	{
+		byte[] data = "Hello".getBytes(StandardCharsets.UTF_8);
+		InputStream in = new ByteArrayInputStream(data);
+		InputStream nash = new UnsynchronizedNashCipherInputStream(key, iv, in);
+		byte[] decrypted = new byte[data.length];
+		for (int i = 0; i < data.length; i++) {
+			decrypted[i] = (byte) nash.read();
+		}
+		assertEquals(-1, nash.read());
+		NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		assertArrayEquals(cipher.process(data), decrypted);
+	}
+
+	@Test
+	public void testReadArray() throws Exception
+	{
+		byte[] data = "Hello".getBytes(StandardCharsets.UTF_8);
+		InputStream in = new ByteArrayInputStream(data);
+		InputStream nash = new UnsynchronizedNashCipherInputStream(key, iv, in);
+		byte[] decrypted = new byte[data.length];
+		nash.read(decrypted);
+		assertEquals(-1, nash.read(new byte[data.length]));
+		NashCipher cipher = new NashCipher(key, iv, Mode.DECRYPTION);
+		assertArrayEquals(cipher.process(data), decrypted);
+	}
+
+	@Test
+	public void testMixedReadsAndSkips() throws Exception
+	{
+		Random prng = new Random();
+		byte[] data = new byte[100000];
+		prng.nextBytes(data);
+		byte[] plaintext = new NashCipher(key, iv, Mode.DECRYPTION)
+			.process(data);
+		InputStream in = new ByteArrayInputStream(data);
+		InputStream nash = new UnsynchronizedNashCipherInputStream(key, iv, in);
+		int pos = 0;
+		while (pos < data.length) {
+			int op = prng.nextInt(3);
+			if (op == 0) {
+				assertEquals(plaintext[pos++] & 0xFF, nash.read());
+			} else if (op == 1) {
+				byte[] buf = new byte[prng.nextInt(20000) + 1];
+				int n = nash.read(buf, 0, buf.length);
+				assertArrayEquals(Arrays.copyOfRange(plaintext, pos, pos + n),
+					Arrays.copyOf(buf, n));
+				pos += n;
+			} else {
+				pos += (int) nash.skip(prng.nextInt(10000));
+			}
+		}
+		assertEquals(-1, nash.read());
+		assertEquals(0, nash.skip(10));
+	}
+
+	@Test
+	public void testReadAfterClose() throws Exception
+	{
+		InputStream in = new ByteArrayInputStream(new byte[10]);
+		InputStream nash = new UnsynchronizedNashCipherInputStream(key, iv, in);
+		nash.close();
+		Executable toTest = () -> nash.read();
+		assertThrows(IOException.class, toTest);
+	}
+
+	@Test
+	public void testReadBufferedDataAfterClose() throws Exception
+	{
+		InputStream in = new ByteArrayInputStream(new byte[100]);
+		InputStream nash = new UnsynchronizedNashCipherInputStream(key, iv, in);
+		nash.read();
+		nash.close();
+		Executable toTest = () -> nash.read();
+		assertThrows(IOException.class, toTest);
+		toTest = () -> nash.read(new byte[10], 0, 10);
+		assertThrows(IOException.class, toTest);
+	}
+
+	@Test
+	public void testMixedReadsAndSkipsWithBufferSizes() throws Exception
+	{
+		Random prng = new Random();
+		byte[] data = new byte[20000];
+		prng.nextBytes(data);
+		byte[] plaintext = new NashCipher(key, iv, Mode.DECRYPTION)
+			.process(data);
+		for (int size : new int[] {0, 1, 7, 4096}) {
+			InputStream nash = new UnsynchronizedNashCipherInputStream(
+				CompiledKey.compile(key), iv, new ByteArrayInputStream(data),
+				size);
+			int pos = 0;
+			while (pos < data.length) {
+				int op = prng.nextInt(3);
+				if (op == 0) {
+					assertEquals(plaintext[pos++] & 0xFF, nash.read());
+				} else if (op == 1) {
+					byte[] buf = new byte[prng.nextInt(5000) + 1];
+					int n = nash.read(buf, 0, buf.length);
+					assertArrayEquals(Arrays.copyOfRange(plaintext, pos,
+						pos + n), Arrays.copyOf(buf, n));
+					pos += n;
+				} else {
+					pos += (int) nash.skip(prng.nextInt(2000));
+				}
+			}
+			assertEquals(-1, nash.read());
+		}
+	}
+
+	@Test
+	public void testReadAllBytes() throws Exception
+	{
+		byte[] data = new byte[50000];
+		new Random().nextBytes(data);
+		byte[] plaintext = new NashCipher(key, iv, Mode.DECRYPTION)
+			.process(data);
+		InputStream in = new ByteArrayInputStream(data);
+		UnsynchronizedNashCipherInputStream nash =
+			new UnsynchronizedNashCipherInputStream(key, iv, in);
+		assertEquals(plaintext[0] & 0xFF, nash.read());
+		assertArrayEquals(Arrays.copyOfRange(plaintext, 1, data.length),
+			nash.readAllBytes());
+		assertEquals(0, nash.readAllBytes().length);
+	}
+
+	@Test
+	public void testReadNBytes() throws Exception
+	{
+		byte[] data = new byte[50000];
+		new Random().nextBytes(data);
+		byte[] plaintext = new NashCipher(key, iv, Mode.DECRYPTION)
+			.process(data);
+		InputStream in = new ByteArrayInputStream(data);
+		UnsynchronizedNashCipherInputStream nash =
+			new UnsynchronizedNashCipherInputStream(key, iv, in);
+		assertArrayEquals(Arrays.copyOf(plaintext, 10), nash.readNBytes(10));
+		byte[] buf = new byte[30000];
+		assertEquals(20000, nash.readNBytes(buf, 5000, 20000));
+		assertArrayEquals(Arrays.copyOfRange(plaintext, 10, 20010),
+			Arrays.copyOfRange(buf, 5000, 25000));
+		assertArrayEquals(Arrays.copyOfRange(plaintext, 20010, data.length),
+			nash.readNBytes(100000));
+		assertEquals(0, nash.readNBytes(buf, 0, buf.length));
+		Executable toTest = () -> nash.readNBytes(-1);
+		assertThrows(IllegalArgumentException.class, toTest);
+	}
+
+	@Test
+	public void testTransferTo() throws Exception
+	{
+		byte[] data = new byte[50000];
+		new Random().nextBytes(data);
+		byte[] plaintext = new NashCipher(key, iv, Mode.DECRYPTION)
+			.process(data);
+		for (int size : new int[] {0, 100, 8192}) {
+			InputStream in = new ByteArrayInputStream(data);
+			UnsynchronizedNashCipherInputStream nash =
+				new UnsynchronizedNashCipherInputStream(
+					CompiledKey.compile(key), iv, in, size);
+			assertEquals(plaintext[0] & 0xFF, nash.read());
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			assertEquals(data.length - 1, nash.transferTo(out));
+			assertArrayEquals(Arrays.copyOfRange(plaintext, 1, data.length),
+				out.toByteArray());
+			assertEquals(0, nash.transferTo(out));
+		}
+	}
+}